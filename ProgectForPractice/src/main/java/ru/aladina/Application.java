@@ -1,7 +1,15 @@
 package ru.aladina;
 
+import ru.aladina.database.dsprovider.DataSourceProvider;
+import ru.aladina.database.dsprovider.H2Provider;
+import ru.aladina.database.dsprovider.HikariProvider;
 import ru.aladina.database.dsprovider.PostgreSQLProvider;
+import ru.aladina.database.hash.HashCache;
+import ru.aladina.database.metrics.MetricsRegistry;
 import ru.aladina.database.property.PropertyContainer;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.impl.H2FileRepository;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
 import ru.aladina.database.repository.impl.PostgreSQLFileRepository;
 import ru.aladina.database.service.FileService;
 
@@ -19,19 +27,45 @@ public class Application {
         PropertyContainer.loadProperties();
         File masterDirectory = new File(PropertyContainer.getProperty("filesystem.path"));
 
-        var dataSourceProvider = new PostgreSQLProvider();
+        // По умолчанию соединения берутся из пула HikariCP, database.pool=simple - прежний PGPoolingDataSource
+        DataSourceProvider dataSourceProvider = "simple".equals(PropertyContainer.getProperty("database.pool"))
+                ? new PostgreSQLProvider()
+                : new HikariProvider();
 
-        var fileRepository = new PostgreSQLFileRepository(
-                dataSourceProvider.getDataSource());
+        // В режиме memory таблица хранится в памяти процесса, база данных не используется,
+        // в режиме embedded - во встроенной базе данных H2, сервер PostgreSQL не нужен
+        var engineMode = PropertyContainer.getProperty("engine.mode");
+        boolean inMemory = "memory".equals(engineMode);
+        FileRepository fileRepository;
+        if (inMemory) {
+            fileRepository = new InMemoryFileRepository();
+        } else if ("embedded".equals(engineMode)) {
+            fileRepository = new H2FileRepository(new H2Provider().getDataSource());
+        } else {
+            fileRepository = new PostgreSQLFileRepository(dataSourceProvider.getDataSource());
+        }
         var fileService = new FileService(fileRepository);
 
 
-        fileService.findFilesSizeSum(masterDirectory);
+        var statistics = fileService.insertAllFiles(masterDirectory);
+        fileService.findAllFilesMother();
+        // Итог формируется до замены, а затем дополняется местом, которое освободила замена
+        var scanReport = fileService.createScanReport(statistics);
+        // Итог разбиения на блоки, как и итог сканирования, относится к файлам до замены дубликатов
+        if (Boolean.parseBoolean(PropertyContainer.getProperty("chunk.enabled"))) {
+            fileService.chunkFiles();
+        }
+        scanReport = fileService.replaceDuplicateFilesWithLinks(scanReport);
+
+        if (inMemory && Boolean.parseBoolean(PropertyContainer.getProperty("engine.memory.dump"))) {
+            ((InMemoryFileRepository) fileRepository).dumpTo(
+                    new PostgreSQLFileRepository(dataSourceProvider.getDataSource()));
+        }
 
-        fileService.insertAllFiles(masterDirectory);
-        fileService.findAllFilesMother(fileRepository.findAll());
-        fileService.replaceDuplicateFilesWithLinks(fileRepository.findAll());
+        // Изменения кэша хэш-сумм записываются на диск до выхода из программы
+        HashCache.shared().close();
 
-        fileService.findFilesSizeSum(masterDirectory);
+        fileService.printScanReport(scanReport);
+        MetricsRegistry.printSummary();
         }
     }
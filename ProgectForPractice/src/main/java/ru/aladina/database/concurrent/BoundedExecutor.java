@@ -0,0 +1,82 @@
+package ru.aladina.database.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполнение задач с ограниченным количеством одновременно выполняемых задач.
+ * На потоках операционной системы задачи выполняет пул потоков с ограниченной очередью
+ * (если очередь заполнена, задачу выполняет передающий её поток). На виртуальных потоках каждая задача
+ * выполняется в своём потоке, а передающий поток ждёт, пока одновременных задач станет меньше заданного
+ * количества.
+ */
+public class BoundedExecutor implements Executor, AutoCloseable {
+    /** Потоки выполнения задач. */
+    private final ExecutorService executor;
+    /** Разрешения на выполнение задач (только для виртуальных потоков). */
+    private final Semaphore permits;
+
+    /**
+     * Конструктор для {@link BoundedExecutor}.
+     *
+     * @param executionMode вид потоков
+     * @param prefix начало имени потоков
+     * @param workers количество одновременно выполняемых задач
+     * @param queueSize ёмкость очереди задач пула потоков
+     */
+    public BoundedExecutor(ExecutionMode executionMode, String prefix, int workers, int queueSize) {
+        ThreadFactory threadFactory = executionMode.threadFactory(prefix);
+        // Для виртуальных потоков ограничивается количество одновременных задач, а не потоков
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            this.permits = new Semaphore(workers);
+            this.executor = Executors.newThreadPerTaskExecutor(threadFactory);
+        } else {
+            this.permits = null;
+            this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * Передаёт задачу на выполнение, при необходимости дожидаясь освобождения места.
+     *
+     * @param task задача
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (permits == null) {
+            executor.execute(task);
+            return;
+        }
+        permits.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Дожидается выполнения всех переданных задач и останавливает потоки.
+     *
+     * @throws IllegalStateException ожидание прервано
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание выполнения задач прервано", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.aladina.database.concurrent;
+
+import ru.aladina.database.property.PropertyContainer;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Вид потоков, в которых выполняется работа с отдельными файлами (чтение атрибутов,
+ * вычисление хэш-сумм, замена дубликатов ссылками).
+ */
+public enum ExecutionMode {
+    /**
+     * Потоки операционной системы. Количество потоков каждой стадии задаётся её настройкой
+     * (walk.threads, pipeline.hash.workers, dedup.workers).
+     */
+    PLATFORM("platform") {
+        @Override
+        Thread.Builder threadBuilder() {
+            return Thread.ofPlatform().daemon(true);
+        }
+    },
+    /**
+     * Виртуальные потоки. Ожидающая ввода-вывода операция не занимает поток операционной системы,
+     * поэтому одновременно выполняется столько операций, сколько разрешает execution.virtual.concurrency,
+     * например, чтобы скрыть задержки сетевой файловой системы.
+     */
+    VIRTUAL("virtual") {
+        @Override
+        Thread.Builder threadBuilder() {
+            return Thread.ofVirtual();
+        }
+    };
+
+    /** Название вида потоков. */
+    private final String name;
+
+    ExecutionMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Построитель потоков этого вида. Потоки не мешают завершению программы.
+     *
+     * @return построитель потоков
+     */
+    abstract Thread.Builder threadBuilder();
+
+    /**
+     * Фабрика потоков этого вида. Потоки нумеруются с нуля.
+     *
+     * @param namePrefix начало имени потока
+     *
+     * @return фабрика потоков
+     */
+    public ThreadFactory threadFactory(String namePrefix) {
+        return threadBuilder().name(namePrefix, 0).factory();
+    }
+
+    /**
+     * Создаёт незапущенный поток этого вида.
+     *
+     * @param name имя потока
+     * @param task задача потока
+     *
+     * @return поток
+     */
+    public Thread newThread(String name, Runnable task) {
+        return threadBuilder().name(name).unstarted(task);
+    }
+
+    /**
+     * Количество одновременно работающих потоков стадии.
+     * Для виртуальных потоков настройка стадии заменяется общим ограничением execution.virtual.concurrency.
+     *
+     * @param platformThreads количество потоков стадии для потоков операционной системы
+     *
+     * @return количество потоков стадии
+     */
+    public int concurrency(int platformThreads) {
+        return this == VIRTUAL
+                ? PropertyContainer.getIntProperty("execution.virtual.concurrency", 256)
+                : platformThreads;
+    }
+
+    /**
+     * Находит вид потоков по названию.
+     *
+     * @param name название вида потоков
+     *
+     * @return вид потоков
+     *
+     * @throws IllegalArgumentException вид потоков с таким названием не найден
+     */
+    public static ExecutionMode forName(String name) {
+        for (ExecutionMode mode : values()) {
+            if (mode.name.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный вид потоков: " + name);
+    }
+
+    /**
+     * Вид потоков, выбранный в настройках программы.
+     *
+     * @return вид потоков из настройки execution.mode или {@link #PLATFORM}, если настройка не задана
+     */
+    public static ExecutionMode configured() {
+        var name = PropertyContainer.getProperty("execution.mode").trim();
+        return name.isEmpty() ? PLATFORM : forName(name);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.aladina.database.dsprovider;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import ru.aladina.database.property.PropertyContainer;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Провайдер встроенной базы данных H2.
+ * База данных хранится в файле database.embedded.path (без расширения) и открывается в том же процессе,
+ * соединения берутся из пула H2 размером database.pool.size.
+ */
+public class H2Provider implements DataSourceProvider {
+    /** Пул соединений со встроенной базой данных. */
+    private JdbcConnectionPool dataSource;
+
+    /**
+     * Метод получения пула соединений со встроенной базой данных.
+     *
+     * @return пул соединений
+     */
+    @Override
+    public DataSource getDataSource() {
+        if (Objects.isNull(dataSource)) {
+            var path = PropertyContainer.getProperty("database.embedded.path");
+            var file = Path.of(path.isEmpty() ? PropertyContainer.getProperty("database.name") : path).toAbsolutePath();
+            dataSource = JdbcConnectionPool.create("jdbc:h2:file:" + file, "", "");
+            dataSource.setMaxConnections(PropertyContainer.getIntProperty("database.pool.size", 10));
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.aladina.database.dsprovider;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import ru.aladina.database.property.PropertyContainer;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+
+/**
+ * Провайдер пула соединений HikariCP для PostgreSQL.
+ * Размер пула, время жизни соединений и кэш подготовленных запросов драйвера задаются настройками
+ * database.pool.* и database.prepare.threshold, database.statement.cache.*.
+ * (Показатели занятости пула передаются в {@link ru.aladina.database.metrics.MetricsRegistry})
+ */
+public class HikariProvider implements DataSourceProvider {
+    /** Пул соединений. */
+    private HikariDataSource dataSource;
+
+    /**
+     * Метод получения пула соединений с PostgreSQL.
+     *
+     * @return пул соединений
+     */
+    @Override
+    public DataSource getDataSource() {
+        if (Objects.isNull(dataSource)) {
+            var config = new HikariConfig();
+            config.setPoolName("practice");
+            config.setDataSourceClassName("org.postgresql.ds.PGSimpleDataSource");
+            config.addDataSourceProperty("databaseName", PropertyContainer.getProperty("database.name"));
+            var host = PropertyContainer.getProperty("database.host");
+            if (!host.isEmpty()) {
+                config.addDataSourceProperty("serverNames", new String[] {host});
+            }
+            var username = PropertyContainer.getProperty("database.username");
+            var password = PropertyContainer.getProperty("database.password");
+            if (!username.isEmpty() && !password.isEmpty()) {
+                config.setUsername(username);
+                config.setPassword(password);
+            }
+
+            config.setMaximumPoolSize(PropertyContainer.getIntProperty("database.pool.size", 10));
+            config.setMinimumIdle(PropertyContainer.getIntProperty("database.pool.min.idle", 2));
+            config.setConnectionTimeout(PropertyContainer.getIntProperty("database.pool.connection.timeout.ms", 30000));
+            config.setIdleTimeout(PropertyContainer.getIntProperty("database.pool.idle.timeout.ms", 600000));
+            config.setMaxLifetime(PropertyContainer.getIntProperty("database.pool.max.lifetime.ms", 1800000));
+
+            // Запрос готовится на сервере после prepareThreshold выполнений и кэшируется драйвером
+            config.addDataSourceProperty("prepareThreshold",
+                    PropertyContainer.getIntProperty("database.prepare.threshold", 5));
+            config.addDataSourceProperty("preparedStatementCacheQueries",
+                    PropertyContainer.getIntProperty("database.statement.cache.queries", 256));
+            config.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                    PropertyContainer.getIntProperty("database.statement.cache.mb", 5));
+
+            config.setMetricsTrackerFactory(PoolMetricsTracker.FACTORY);
+            dataSource = new HikariDataSource(config);
+        }
+        return dataSource;
+    }
+}
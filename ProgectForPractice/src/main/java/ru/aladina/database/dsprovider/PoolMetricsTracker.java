@@ -0,0 +1,62 @@
+package ru.aladina.database.dsprovider;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import ru.aladina.database.metrics.MetricsRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Передаёт показатели пула соединений HikariCP в {@link MetricsRegistry}:
+ * pool.acquire - ожидание соединения, pool.usage - время использования соединения,
+ * pool.create - открытие нового соединения, pool.timeouts - соединение не получено за отведённое время,
+ * pool.active, pool.idle, pool.pending, pool.total - текущее состояние пула,
+ * pool.active.peak и pool.pending.peak - наибольшая занятость пула за время работы.
+ */
+class PoolMetricsTracker implements IMetricsTracker {
+    /** Состояние пула. */
+    private final PoolStats poolStats;
+    /** Наибольшее количество занятых соединений. */
+    private final LongAccumulator activePeak = new LongAccumulator(Math::max, 0);
+    /** Наибольшее количество потоков, ожидающих соединение. */
+    private final LongAccumulator pendingPeak = new LongAccumulator(Math::max, 0);
+
+    PoolMetricsTracker(PoolStats poolStats) {
+        this.poolStats = poolStats;
+        MetricsRegistry.gauge("pool.active", poolStats::getActiveConnections);
+        MetricsRegistry.gauge("pool.idle", poolStats::getIdleConnections);
+        MetricsRegistry.gauge("pool.pending", poolStats::getPendingThreads);
+        MetricsRegistry.gauge("pool.total", poolStats::getTotalConnections);
+        MetricsRegistry.gauge("pool.active.peak", activePeak::get);
+        MetricsRegistry.gauge("pool.pending.peak", pendingPeak::get);
+    }
+
+    /**
+     * Фабрика, которую принимает {@link com.zaxxer.hikari.HikariConfig#setMetricsTrackerFactory}.
+     */
+    static final MetricsTrackerFactory FACTORY = (poolName, poolStats) -> new PoolMetricsTracker(poolStats);
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        MetricsRegistry.timer("pool.create").record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        MetricsRegistry.timer("pool.acquire").record(elapsedAcquiredNanos);
+        activePeak.accumulate(poolStats.getActiveConnections());
+        pendingPeak.accumulate(poolStats.getPendingThreads());
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        MetricsRegistry.timer("pool.usage").record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        MetricsRegistry.counter("pool.timeouts").increment();
+    }
+}
@@ -0,0 +1,69 @@
+package ru.aladina.database.hash;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий для всех потоков ограниченный набор буферов чтения.
+ * Буфер берётся на время чтения одного файла и возвращается после него, поэтому количество буферов
+ * не зависит от количества потоков (на виртуальных потоках каждый файл читается в новом потоке).
+ * Если все буферы заняты, выдаётся временный буфер в куче по размеру файла, который освобождается
+ * сборщиком мусора и в набор не возвращается.
+ */
+final class BufferPool {
+    /** Наименьший размер временного буфера (в байтах). */
+    private static final int MIN_TEMPORARY_SIZE = 8 * 1024;
+    /** Размер буфера набора (в байтах). */
+    private final int bufferSize;
+    /** Буферы набора размещаются вне кучи. */
+    private final boolean direct;
+    /** Свободные буферы. */
+    private final BlockingQueue<ByteBuffer> free;
+    /** Количество ещё не созданных буферов набора. */
+    private final AtomicInteger remaining;
+
+    /**
+     * Конструктор для {@link BufferPool}.
+     *
+     * @param bufferSize размер буфера (в байтах)
+     * @param capacity наибольшее количество буферов набора
+     * @param direct размещать буферы набора вне кучи
+     */
+    BufferPool(int bufferSize, int capacity, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.remaining = new AtomicInteger(Math.max(1, capacity));
+    }
+
+    /**
+     * Выдаёт свободный буфер набора, а если все заняты - временный буфер в куче.
+     *
+     * @param expectedSize ожидаемый объём чтения (в байтах), по нему выбирается размер временного буфера
+     *
+     * @return очищенный буфер
+     */
+    ByteBuffer acquire(long expectedSize) {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer.clear();
+        }
+        if (remaining.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        return ByteBuffer.allocate((int) Math.max(MIN_TEMPORARY_SIZE, Math.min(bufferSize, expectedSize)));
+    }
+
+    /**
+     * Возвращает буфер в набор. (Временные буферы не возвращаются)
+     *
+     * @param buffer буфер, выданный {@link #acquire(long)}
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+            free.offer(buffer);
+        }
+    }
+}
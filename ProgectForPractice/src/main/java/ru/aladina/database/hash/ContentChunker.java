@@ -0,0 +1,158 @@
+package ru.aladina.database.hash;
+
+import ru.aladina.database.metrics.Measurement;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.property.PropertyContainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Разбиение содержимого файла на блоки, границы которых определяются самим содержимым
+ * (алгоритм FastCDC: скользящая хэш-сумма Gear и нормализация размера блока).
+ * Вставка или удаление байт сдвигает границы только соседних блоков, поэтому у частично
+ * совпадающих файлов совпадает большинство блоков. Файл читается один раз, хэш-сумма каждого блока
+ * вычисляется по ходу чтения.
+ * (Объект потокобезопасен: состояние разбиения хранится в локальных переменных, а буфер чтения берётся
+ * на время чтения файла из общего набора {@link BufferPool})
+ */
+public final class ContentChunker {
+    /** Размер буфера чтения (в байтах). */
+    private static final int BUFFER_SIZE = PropertyContainer.getIntProperty("hash.buffer.kb", 1024) * 1024;
+    /** Случайные значения для скользящей хэш-суммы Gear (одинаковые при каждом запуске). */
+    private static final long[] GEAR = new SplittableRandom(0x5EED_C0DEL).longs(256).toArray();
+    /** Буферы чтения (в куче: разбиение обращается к байтам буфера напрямую). */
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE,
+            PropertyContainer.getIntProperty("hash.buffer.count", 2 * Runtime.getRuntime().availableProcessors()), false);
+    /** Наименьший размер блока (в байтах). */
+    private final int minSize;
+    /** Средний размер блока (в байтах). */
+    private final int averageSize;
+    /** Наибольший размер блока (в байтах). */
+    private final int maxSize;
+    /** Маска границы до среднего размера (больше бит - граница реже). */
+    private final long smallMask;
+    /** Маска границы после среднего размера (меньше бит - граница чаще). */
+    private final long largeMask;
+    /** Алгоритм вычисления хэш-сумм блоков. */
+    private final FingerprintAlgorithm algorithm;
+
+    /**
+     * Обработчик блока файла.
+     */
+    public interface ChunkConsumer {
+        /**
+         * Обрабатывает очередной блок файла.
+         *
+         * @param offset смещение блока от начала файла
+         * @param size размер блока
+         * @param digest хэш-сумма блока
+         */
+        void accept(long offset, int size, byte[] digest);
+    }
+
+    /**
+     * Конструктор для {@link ContentChunker}.
+     *
+     * @param minSize наименьший размер блока (в байтах)
+     * @param averageSize средний размер блока (в байтах, округляется до степени двойки)
+     * @param maxSize наибольший размер блока (в байтах)
+     * @param algorithm алгоритм вычисления хэш-сумм блоков
+     */
+    public ContentChunker(int minSize, int averageSize, int maxSize, FingerprintAlgorithm algorithm) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize) {
+            throw new IllegalArgumentException("Размеры блока должны удовлетворять условию 0 < min <= avg <= max");
+        }
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.algorithm = algorithm;
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        // Нормализация второго уровня: до среднего размера граница в 4 раза реже, после - в 4 раза чаще
+        this.smallMask = highBits(bits + 2);
+        this.largeMask = highBits(Math.max(bits - 2, 1));
+    }
+
+    /**
+     * Разбиение с размерами блоков из настроек chunk.min.kb, chunk.avg.kb, chunk.max.kb
+     * и алгоритмом из настройки hash.algorithm.
+     *
+     * @return разбиение на блоки
+     */
+    public static ContentChunker configured() {
+        return new ContentChunker(PropertyContainer.getIntProperty("chunk.min.kb", 2) * 1024,
+                PropertyContainer.getIntProperty("chunk.avg.kb", 8) * 1024,
+                PropertyContainer.getIntProperty("chunk.max.kb", 64) * 1024,
+                FingerprintAlgorithms.configured());
+    }
+
+    /**
+     * Маска из заданного количества старших бит. Старшие биты хэш-суммы Gear зависят
+     * от последних 64 байт, поэтому проверяются именно они.
+     *
+     * @param count количество бит
+     *
+     * @return маска
+     */
+    private static long highBits(int count) {
+        return -1L << (Long.SIZE - count);
+    }
+
+    /**
+     * Разбивает файл на блоки и передаёт обработчику каждый блок по порядку.
+     *
+     * @param path путь к файлу
+     * @param consumer обработчик блоков
+     *
+     * @return размер файла (в байтах)
+     *
+     * @throws IOException ошибка при чтении файла
+     */
+    public long chunk(Path path, ChunkConsumer consumer) throws IOException {
+        Fingerprint fingerprint = algorithm.newFingerprint();
+        long chunkOffset = 0;
+        int chunkSize = 0;
+        long hash = 0;
+        ByteBuffer wrapped = null;
+        try (Measurement measurement = MetricsRegistry.hash("chunk", path.toString(), algorithm.getName());
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            wrapped = BUFFERS.acquire(channel.size());
+            byte[] buffer = wrapped.array();
+            int read;
+            while ((read = channel.read(wrapped.clear())) != -1) {
+                // Начало ещё не добавленной в хэш-сумму части блока внутри буфера
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    chunkSize++;
+                    if (chunkSize < minSize) {
+                        continue;
+                    }
+                    if ((hash & (chunkSize < averageSize ? smallMask : largeMask)) == 0 || chunkSize >= maxSize) {
+                        fingerprint.update(ByteBuffer.wrap(buffer, start, i + 1 - start));
+                        consumer.accept(chunkOffset, chunkSize, fingerprint.finish());
+                        chunkOffset += chunkSize;
+                        chunkSize = 0;
+                        hash = 0;
+                        start = i + 1;
+                    }
+                }
+                fingerprint.update(ByteBuffer.wrap(buffer, start, read - start));
+            }
+            if (chunkSize > 0) {
+                consumer.accept(chunkOffset, chunkSize, fingerprint.finish());
+            }
+            long size = chunkOffset + chunkSize;
+            measurement.setAmount(size);
+            return size;
+        } finally {
+            if (wrapped != null) {
+                BUFFERS.release(wrapped);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package ru.aladina.database.hash;
+
+import ru.aladina.database.metrics.Measurement;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.property.PropertyContainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Вычисление хэш-сумм содержимого файлов выбранным алгоритмом {@link FingerprintAlgorithm}.
+ * (Каждый поток использует собственное состояние {@link Fingerprint} для каждого алгоритма, а буфер чтения
+ * берёт на время чтения файла из общего набора {@link BufferPool}, поэтому методы класса можно вызывать
+ * из нескольких потоков одновременно, в том числе из виртуальных)
+ * Длительность и объём прочитанных данных учитываются в {@link MetricsRegistry} (hash.full, hash.partial).
+ */
+public final class FileHasher {
+    /** Размер буфера чтения одного потока (в байтах). */
+    private static final int BUFFER_SIZE = PropertyContainer.getIntProperty("hash.buffer.kb", 1024) * 1024;
+    /** Размер файла, начиная с которого он отображается в память вместо чтения в буфер (в байтах). */
+    private static final long MAPPED_THRESHOLD = PropertyContainer.getIntProperty("hash.mmap.threshold.mb", 64) * 1024L * 1024L;
+    /** Размер одного отображаемого в память фрагмента файла (в байтах). */
+    private static final long MAPPED_CHUNK_SIZE = 256L * 1024L * 1024L;
+    /** Символы шестнадцатеричной записи. */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+    /** Количество буферов чтения вне кучи, общих для всех потоков. */
+    private static final int BUFFER_COUNT = PropertyContainer.getIntProperty("hash.buffer.count",
+            2 * Runtime.getRuntime().availableProcessors());
+    /** Буферы чтения. */
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, BUFFER_COUNT, true);
+    /** Состояния вычисления отпечатка для каждого потока и алгоритма. */
+    private static final ThreadLocal<Map<FingerprintAlgorithm, Fingerprint>> FINGERPRINTS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    private FileHasher() {
+    }
+
+    /**
+     * Вычисляет хэш-сумму SHA-256 всего содержимого файла.
+     *
+     * @param path путь к файлу
+     *
+     * @return хэш-сумма
+     *
+     * @throws IOException ошибка при чтении файла
+     */
+    public static byte[] digest(Path path) throws IOException {
+        return digest(path, FingerprintAlgorithms.SHA_256);
+    }
+
+    /**
+     * Вычисляет хэш-сумму всего содержимого файла заданным алгоритмом.
+     *
+     * @param path путь к файлу
+     * @param algorithm алгоритм вычисления хэш-суммы
+     *
+     * @return хэш-сумма
+     *
+     * @throws IOException ошибка при чтении файла
+     */
+    public static byte[] digest(Path path, FingerprintAlgorithm algorithm) throws IOException {
+        Fingerprint md = fingerprint(algorithm);
+        try (Measurement measurement = MetricsRegistry.hash("full", path.toString(), algorithm.getName());
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            measurement.setAmount(size);
+            if (size >= MAPPED_THRESHOLD) {
+                for (long position = 0; position < size; position += MAPPED_CHUNK_SIZE) {
+                    md.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAPPED_CHUNK_SIZE, size - position)));
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.acquire(size);
+                try {
+                    while (channel.read(buffer) != -1) {
+                        buffer.flip();
+                        md.update(buffer);
+                        buffer.clear();
+                    }
+                } finally {
+                    BUFFERS.release(buffer);
+                }
+            }
+        }
+        return md.finish();
+    }
+
+    /**
+     * Вычисляет хэш-сумму первых и последних sampleSize байт файла. Если файл не длиннее
+     * двух таких фрагментов, хэш-сумма считается по всему содержимому и совпадает
+     * с {@link #digest(Path, FingerprintAlgorithm)}.
+     *
+     * @param path путь к файлу
+     * @param sampleSize размер фрагмента в начале и в конце файла (в байтах)
+     * @param algorithm алгоритм вычисления хэш-суммы
+     *
+     * @return частичная хэш-сумма
+     *
+     * @throws IOException ошибка при чтении файла
+     */
+    public static byte[] digestSample(Path path, int sampleSize, FingerprintAlgorithm algorithm) throws IOException {
+        Fingerprint md = fingerprint(algorithm);
+        try (Measurement measurement = MetricsRegistry.hash("partial", path.toString(), algorithm.getName());
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            measurement.setAmount(Math.min(size, 2L * sampleSize));
+            ByteBuffer buffer = BUFFERS.acquire(Math.min(size, 2L * sampleSize));
+            try {
+                if (size <= 2L * sampleSize) {
+                    update(md, channel, buffer, 0, size);
+                } else {
+                    update(md, channel, buffer, 0, sampleSize);
+                    update(md, channel, buffer, size - sampleSize, sampleSize);
+                }
+            } finally {
+                BUFFERS.release(buffer);
+            }
+        }
+        return md.finish();
+    }
+
+    /**
+     * Возвращает сброшенное состояние вычисления отпечатка текущего потока для заданного алгоритма.
+     *
+     * @param algorithm алгоритм вычисления хэш-суммы
+     *
+     * @return состояние вычисления отпечатка
+     */
+    private static Fingerprint fingerprint(FingerprintAlgorithm algorithm) {
+        Fingerprint fingerprint = FINGERPRINTS.get().computeIfAbsent(algorithm, FingerprintAlgorithm::newFingerprint);
+        fingerprint.reset();
+        return fingerprint;
+    }
+
+    /**
+     * Добавляет в хэш-сумму заданный фрагмент файла.
+     *
+     * @param md состояние вычисления отпечатка
+     * @param channel канал чтения файла
+     * @param buffer буфер чтения
+     * @param position начало фрагмента
+     * @param length длина фрагмента
+     *
+     * @throws IOException ошибка при чтении файла
+     */
+    private static void update(Fingerprint md, FileChannel channel, ByteBuffer buffer, long position, long length)
+            throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            md.update(buffer);
+        }
+    }
+
+    /**
+     * Переводит хэш-сумму в шестнадцатеричную строку без промежуточных объектов для каждого байта.
+     *
+     * @param bytes хэш-сумма
+     *
+     * @return шестнадцатеричная строка
+     */
+    public static String toHex(byte[] bytes) {
+        byte[] hex = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Переводит шестнадцатеричную строку обратно в массив байт.
+     *
+     * @param hex шестнадцатеричная строка
+     *
+     * @return массив байт
+     */
+    public static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4) | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.aladina.database.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Состояние вычисления отпечатка содержимого файла.
+ * (Объект не потокобезопасен и используется повторно после {@link #finish()})
+ */
+public interface Fingerprint {
+
+    /**
+     * Добавляет в отпечаток все оставшиеся байты буфера.
+     *
+     * @param data буфер с содержимым файла
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * Завершает вычисление и возвращает отпечаток. После вызова состояние сбрасывается.
+     *
+     * @return отпечаток
+     */
+    byte[] finish();
+
+    /**
+     * Сбрасывает состояние без вычисления отпечатка.
+     */
+    void reset();
+}
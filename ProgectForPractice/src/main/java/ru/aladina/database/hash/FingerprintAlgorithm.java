@@ -0,0 +1,29 @@
+package ru.aladina.database.hash;
+
+/**
+ * Интерфейс алгоритма вычисления отпечатка (хэш-суммы) содержимого файла.
+ */
+public interface FingerprintAlgorithm {
+
+    /**
+     * Название алгоритма, под которым он указывается в настройках и в таблице.
+     *
+     * @return название алгоритма
+     */
+    String getName();
+
+    /**
+     * Является ли алгоритм криптографически стойким. Совпадение отпечатков некриптографического
+     * алгоритма перед заменой файла на ссылку подтверждается хэш-суммой SHA-256.
+     *
+     * @return true, если совпадение отпечатков можно считать совпадением содержимого
+     */
+    boolean isCryptographic();
+
+    /**
+     * Создаёт новое состояние вычисления отпечатка.
+     *
+     * @return состояние вычисления отпечатка
+     */
+    Fingerprint newFingerprint();
+}
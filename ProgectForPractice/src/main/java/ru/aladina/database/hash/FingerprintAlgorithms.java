@@ -0,0 +1,72 @@
+package ru.aladina.database.hash;
+
+import ru.aladina.database.property.PropertyContainer;
+
+import java.util.function.Supplier;
+
+/**
+ * Доступные алгоритмы вычисления отпечатка содержимого файла.
+ * (Алгоритм выбирается настройкой hash.algorithm, по умолчанию используется быстрый {@link #MURMUR3_128})
+ */
+public enum FingerprintAlgorithms implements FingerprintAlgorithm {
+    /** Криптографическая хэш-функция SHA-256. */
+    SHA_256("sha-256", true, Sha256Fingerprint::new),
+    /** Быстрая некриптографическая 128-битная хэш-функция MurmurHash3. */
+    MURMUR3_128("murmur3-128", false, Murmur3Fingerprint::new);
+
+    /** Название алгоритма. */
+    private final String name;
+    /** Является ли алгоритм криптографически стойким. */
+    private final boolean cryptographic;
+    /** Создание состояния вычисления отпечатка. */
+    private final Supplier<Fingerprint> factory;
+
+    FingerprintAlgorithms(String name, boolean cryptographic, Supplier<Fingerprint> factory) {
+        this.name = name;
+        this.cryptographic = cryptographic;
+        this.factory = factory;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isCryptographic() {
+        return cryptographic;
+    }
+
+    @Override
+    public Fingerprint newFingerprint() {
+        return factory.get();
+    }
+
+    /**
+     * Находит алгоритм по названию.
+     *
+     * @param name название алгоритма
+     *
+     * @return алгоритм
+     *
+     * @throws IllegalArgumentException алгоритм с таким названием не найден
+     */
+    public static FingerprintAlgorithms forName(String name) {
+        for (FingerprintAlgorithms algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный алгоритм хэш-суммы: " + name);
+    }
+
+    /**
+     * Алгоритм, выбранный в настройках программы.
+     *
+     * @return алгоритм из настройки hash.algorithm или {@link #MURMUR3_128}, если настройка не задана
+     */
+    public static FingerprintAlgorithms configured() {
+        var name = PropertyContainer.getProperty("hash.algorithm").trim();
+        return name.isEmpty() ? MURMUR3_128 : forName(name);
+    }
+}
@@ -0,0 +1,366 @@
+package ru.aladina.database.hash;
+
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.property.PropertyContainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Постоянный кэш хэш-сумм файлов в локальном файле, отображённом в память.
+ * Запись кэша находится по идентификатору файла в файловой системе (устройство и inode, а если файловая
+ * система их не предоставляет - путь), алгоритму и размеру фрагмента частичной хэш-суммы и действительна,
+ * пока не изменились размер и время изменения файла. Поэтому один и тот же файл не перечитывается ни при
+ * повторных запусках, ни при пересекающихся filesystem.path, ни после очистки таблицы в базе данных.
+ * Кэш состоит из групп по {@link #WAYS} записей; если в группе нет места, вытесняется запись, к которой
+ * дольше всех не обращались (алгоритм часов: при обращении у записи ставится отметка, стрелка группы
+ * снимает отметки и останавливается на первой записи без отметки).
+ * Попадания и промахи учитываются в {@link MetricsRegistry} (hash.cache.hit, hash.cache.miss, hash.cache.evicted).
+ * (Файл кэша блокируется: второй процесс с тем же файлом работает без кэша)
+ */
+public final class HashCache implements AutoCloseable {
+    /** Признак файла кэша. */
+    private static final int MAGIC = 0x48434143;
+    /** Версия формата файла кэша. */
+    private static final int VERSION = 1;
+    /** Размер заголовка файла (в байтах). */
+    private static final int HEADER_SIZE = 64;
+    /** Количество записей в группе. */
+    private static final int WAYS = 8;
+    /** Наибольший размер хэш-суммы (в байтах). */
+    private static final int MAX_DIGEST_SIZE = 32;
+    /** Размер записи (в байтах). */
+    private static final int SLOT_SIZE = 80;
+    /** Смещения полей записи. */
+    private static final int KEY_HIGH = 0;
+    private static final int KEY_LOW = 8;
+    private static final int SIZE = 16;
+    private static final int MODIFIED = 24;
+    private static final int CHECKSUM = 32;
+    private static final int STATE = 40;
+    private static final int REFERENCED = 41;
+    private static final int DIGEST_LENGTH = 42;
+    private static final int DIGEST = 48;
+    /** Состояние записи: запись заполнена. */
+    private static final byte OCCUPIED = 1;
+    /** Количество блокировок групп. */
+    private static final int LOCK_STRIPES = 64;
+    /** Состояние вычисления ключа для каждого потока. */
+    private static final ThreadLocal<Fingerprint> KEY_FINGERPRINT =
+            ThreadLocal.withInitial(FingerprintAlgorithms.MURMUR3_128::newFingerprint);
+    /** Общий кэш программы. */
+    private static volatile HashCache shared;
+
+    /** Канал файла кэша (null - кэш отключён). */
+    private final FileChannel channel;
+    /** Блокировка файла кэша. */
+    private final FileLock fileLock;
+    /** Содержимое файла кэша. */
+    private final MappedByteBuffer buffer;
+    /** Количество групп. */
+    private final int groupCount;
+    /** Положение стрелки часов в каждой группе. */
+    private final byte[] hands;
+    /** Блокировки групп. */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    /** Признак закрытия кэша. */
+    private volatile boolean closed;
+
+    /**
+     * Вычисление хэш-суммы при промахе кэша.
+     */
+    public interface Digester {
+        byte[] digest() throws IOException;
+    }
+
+    /**
+     * Конструктор для {@link HashCache}.
+     * Если файл кэша создан с другим форматом или размером, он заполняется заново.
+     *
+     * @param path путь к файлу кэша
+     * @param entries наибольшее количество записей (округляется вверх до кратного {@link #WAYS})
+     *
+     * @throws IOException ошибка при открытии файла кэша или файл занят другим процессом
+     */
+    public HashCache(Path path, int entries) throws IOException {
+        int maxGroups = (Integer.MAX_VALUE - HEADER_SIZE) / (SLOT_SIZE * WAYS);
+        this.groupCount = Math.min(Math.max(1, (entries + WAYS - 1) / WAYS), maxGroups);
+        this.hands = new byte[groupCount];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        long fileSize = HEADER_SIZE + (long) groupCount * WAYS * SLOT_SIZE;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.fileLock = tryLock(channel);
+            if (fileLock == null) {
+                throw new IOException("Файл кэша хэш-сумм " + path + " используется другим процессом");
+            }
+            boolean valid = channel.size() == fileSize;
+            if (!valid) {
+                channel.truncate(0);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            if (!valid || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != groupCount) {
+                for (int position = 0; position < fileSize; position += Long.BYTES) {
+                    buffer.putLong(position, 0);
+                }
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, groupCount);
+                buffer.putInt(0, MAGIC);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Пытается заблокировать файл кэша.
+     * (Если файл уже открыт в этом же процессе, {@link FileChannel#tryLock()} не возвращает null,
+     * а выбрасывает {@link OverlappingFileLockException}; этот случай обрабатывается так же, как занятость
+     * файла другим процессом)
+     *
+     * @return блокировка или null, если файл уже заблокирован
+     *
+     * @throws IOException ошибка при блокировке файла
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Отключённый кэш: хэш-суммы всегда вычисляются заново.
+     */
+    private HashCache() {
+        this.channel = null;
+        this.fileLock = null;
+        this.buffer = null;
+        this.groupCount = 0;
+        this.hands = null;
+    }
+
+    /**
+     * Общий кэш программы с файлом из настройки hash.cache.path и размером из настройки hash.cache.entries.
+     * Если настройка не задана или файл не удалось открыть, возвращается отключённый кэш.
+     *
+     * @return кэш хэш-сумм
+     */
+    public static HashCache shared() {
+        HashCache cache = shared;
+        if (cache == null) {
+            synchronized (HashCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = open();
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Открывает кэш по настройкам программы.
+     *
+     * @return кэш хэш-сумм
+     */
+    private static HashCache open() {
+        var path = PropertyContainer.getProperty("hash.cache.path").trim();
+        if (path.isEmpty()) {
+            return new HashCache();
+        }
+        try {
+            return new HashCache(Paths.get(path), PropertyContainer.getIntProperty("hash.cache.entries", 262144));
+        } catch (IOException e) {
+            System.out.println("Кэш хэш-сумм отключён: " + e.getMessage());
+            return new HashCache();
+        }
+    }
+
+    /**
+     * Возвращает хэш-сумму файла из кэша, а при промахе вычисляет её и заносит в кэш.
+     *
+     * @param fileIdentity идентификатор файла в файловой системе (или путь к файлу)
+     * @param size размер файла
+     * @param modifiedMillis время последнего изменения файла (в миллисекундах)
+     * @param sampleSize размер фрагмента частичной хэш-суммы (0 - хэш-сумма всего файла)
+     * @param algorithm алгоритм вычисления хэш-суммы
+     * @param digester вычисление хэш-суммы
+     *
+     * @return хэш-сумма
+     *
+     * @throws IOException ошибка при вычислении хэш-суммы
+     */
+    public byte[] digest(String fileIdentity, long size, long modifiedMillis, int sampleSize,
+                         FingerprintAlgorithm algorithm, Digester digester) throws IOException {
+        if (buffer == null || closed) {
+            return digester.digest();
+        }
+        Fingerprint keyFingerprint = KEY_FINGERPRINT.get();
+        keyFingerprint.update(ByteBuffer.wrap((algorithm.getName() + '\0' + sampleSize + '\0' + fileIdentity)
+                .getBytes(StandardCharsets.UTF_8)));
+        ByteBuffer key = ByteBuffer.wrap(keyFingerprint.finish());
+        long keyHigh = key.getLong();
+        long keyLow = key.getLong();
+        int group = (int) Long.remainderUnsigned(keyHigh, groupCount);
+
+        byte[] digest = find(group, keyHigh, keyLow, size, modifiedMillis);
+        if (digest != null) {
+            MetricsRegistry.counter("hash.cache.hit").increment();
+            return digest;
+        }
+        MetricsRegistry.counter("hash.cache.miss").increment();
+        digest = digester.digest();
+        if (digest.length <= MAX_DIGEST_SIZE) {
+            put(group, keyHigh, keyLow, size, modifiedMillis, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Ищет действительную запись в группе.
+     *
+     * @return хэш-сумма или null, если записи нет или файл изменился
+     */
+    private byte[] find(int group, long keyHigh, long keyLow, long size, long modifiedMillis) {
+        synchronized (locks[group % LOCK_STRIPES]) {
+            int slot = findSlot(group, keyHigh, keyLow);
+            if (slot < 0 || buffer.getLong(slot + SIZE) != size || buffer.getLong(slot + MODIFIED) != modifiedMillis) {
+                return null;
+            }
+            byte[] digest = new byte[buffer.get(slot + DIGEST_LENGTH)];
+            buffer.get(slot + DIGEST, digest);
+            if (buffer.getLong(slot + CHECKSUM) != checksum(keyHigh, keyLow, size, modifiedMillis, digest)) {
+                // Запись не дописана (например, процесс был прерван): считается отсутствующей
+                buffer.put(slot + STATE, (byte) 0);
+                return null;
+            }
+            buffer.put(slot + REFERENCED, (byte) 1);
+            return digest;
+        }
+    }
+
+    /**
+     * Заносит хэш-сумму в группу: на место прежней записи о том же файле, в свободную запись
+     * или вместо записи, выбранной стрелкой часов.
+     */
+    private void put(int group, long keyHigh, long keyLow, long size, long modifiedMillis, byte[] digest) {
+        synchronized (locks[group % LOCK_STRIPES]) {
+            int slot = findSlot(group, keyHigh, keyLow);
+            if (slot < 0) {
+                slot = freeSlot(group);
+            }
+            if (slot < 0) {
+                slot = evict(group);
+                MetricsRegistry.counter("hash.cache.evicted").increment();
+            }
+            // Запись сначала отмечается свободной, чтобы недописанная запись не была найдена
+            buffer.put(slot + STATE, (byte) 0);
+            buffer.putLong(slot + KEY_HIGH, keyHigh);
+            buffer.putLong(slot + KEY_LOW, keyLow);
+            buffer.putLong(slot + SIZE, size);
+            buffer.putLong(slot + MODIFIED, modifiedMillis);
+            buffer.put(slot + DIGEST_LENGTH, (byte) digest.length);
+            buffer.put(slot + DIGEST, digest);
+            buffer.putLong(slot + CHECKSUM, checksum(keyHigh, keyLow, size, modifiedMillis, digest));
+            buffer.put(slot + REFERENCED, (byte) 1);
+            buffer.put(slot + STATE, OCCUPIED);
+        }
+    }
+
+    /**
+     * Смещение записи с заданным ключом в группе или -1, если такой записи нет.
+     */
+    private int findSlot(int group, long keyHigh, long keyLow) {
+        for (int way = 0; way < WAYS; way++) {
+            int slot = slotOffset(group, way);
+            if (buffer.get(slot + STATE) == OCCUPIED
+                    && buffer.getLong(slot + KEY_HIGH) == keyHigh && buffer.getLong(slot + KEY_LOW) == keyLow) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Смещение свободной записи в группе или -1, если группа заполнена.
+     */
+    private int freeSlot(int group) {
+        for (int way = 0; way < WAYS; way++) {
+            int slot = slotOffset(group, way);
+            if (buffer.get(slot + STATE) != OCCUPIED) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Выбирает вытесняемую запись группы алгоритмом часов.
+     *
+     * @return смещение вытесняемой записи
+     */
+    private int evict(int group) {
+        while (true) {
+            int way = hands[group];
+            hands[group] = (byte) ((way + 1) % WAYS);
+            int slot = slotOffset(group, way);
+            if (buffer.get(slot + REFERENCED) == 0) {
+                return slot;
+            }
+            buffer.put(slot + REFERENCED, (byte) 0);
+        }
+    }
+
+    /**
+     * Смещение записи в файле кэша.
+     */
+    private static int slotOffset(int group, int way) {
+        return HEADER_SIZE + (group * WAYS + way) * SLOT_SIZE;
+    }
+
+    /**
+     * Контрольная сумма записи.
+     */
+    private static long checksum(long keyHigh, long keyLow, long size, long modifiedMillis, byte[] digest) {
+        long checksum = keyHigh;
+        checksum = checksum * 0x9E3779B97F4A7C15L + keyLow;
+        checksum = checksum * 0x9E3779B97F4A7C15L + size;
+        checksum = checksum * 0x9E3779B97F4A7C15L + modifiedMillis;
+        for (byte b : digest) {
+            checksum = checksum * 0x9E3779B97F4A7C15L + b;
+        }
+        return checksum ^ (checksum >>> 31);
+    }
+
+    /**
+     * Записывает изменения кэша на диск и освобождает файл кэша. (После закрытия хэш-суммы вычисляются заново)
+     */
+    @Override
+    public synchronized void close() {
+        if (channel == null || closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            fileLock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии кэша хэш-сумм: " + e.getMessage());
+        }
+    }
+}
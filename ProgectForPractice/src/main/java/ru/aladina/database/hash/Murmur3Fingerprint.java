@@ -0,0 +1,107 @@
+package ru.aladina.database.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Вычисление 128-битного некриптографического отпечатка MurmurHash3 (вариант x64_128, seed = 0).
+ * Содержимое обрабатывается блоками по 16 байт, неполный блок между вызовами {@link #update(ByteBuffer)}
+ * накапливается во внутреннем буфере.
+ */
+final class Murmur3Fingerprint implements Fingerprint {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    /** Неполный блок, оставшийся с прошлого вызова. */
+    private final ByteBuffer tail = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    private long h1;
+    private long h2;
+    /** Количество обработанных байт. */
+    private long length;
+
+    @Override
+    public void update(ByteBuffer data) {
+        ByteOrder order = data.order();
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        length += data.remaining();
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && data.hasRemaining()) {
+                tail.put(data.get());
+            }
+            if (tail.hasRemaining()) {
+                data.order(order);
+                return;
+            }
+            mixBlock(tail.getLong(0), tail.getLong(8));
+            tail.clear();
+        }
+        while (data.remaining() >= 16) {
+            mixBlock(data.getLong(), data.getLong());
+        }
+        tail.put(data);
+        data.order(order);
+    }
+
+    @Override
+    public byte[] finish() {
+        int remaining = tail.position();
+        if (remaining > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (tail.get(i) & 0xffL);
+            }
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (tail.get(i) & 0xffL);
+            }
+            h2 ^= mixK2(k2);
+            h1 ^= mixK1(k1);
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        byte[] result = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+        reset();
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+        tail.clear();
+    }
+
+    private void mixBlock(long k1, long k2) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
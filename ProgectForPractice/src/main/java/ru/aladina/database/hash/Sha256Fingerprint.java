@@ -0,0 +1,36 @@
+package ru.aladina.database.hash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Вычисление хэш-суммы SHA-256.
+ */
+final class Sha256Fingerprint implements Fingerprint {
+    /** Хэш-функция. */
+    private final MessageDigest md;
+
+    Sha256Fingerprint() {
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        md.update(data);
+    }
+
+    @Override
+    public byte[] finish() {
+        return md.digest();
+    }
+
+    @Override
+    public void reset() {
+        md.reset();
+    }
+}
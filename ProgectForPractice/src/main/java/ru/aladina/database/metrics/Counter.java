@@ -0,0 +1,39 @@
+package ru.aladina.database.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчик (можно увеличивать из нескольких потоков одновременно без блокировок).
+ */
+public final class Counter {
+    /** Значение счётчика. */
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Увеличивает счётчик на единицу.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Увеличивает счётчик на заданное значение.
+     *
+     * @param amount значение
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Текущее значение счётчика.
+     *
+     * @return значение счётчика
+     */
+    public long get() {
+        return value.sum();
+    }
+}
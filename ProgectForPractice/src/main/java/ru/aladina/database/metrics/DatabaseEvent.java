@@ -0,0 +1,29 @@
+package ru.aladina.database.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: запрос к базе данных (в запись попадают запросы дольше 1 мс).
+ */
+@Name("ru.aladina.Database")
+@Label("Database Round Trip")
+@Category({"Practice", "Database"})
+@Description("Запрос к базе данных")
+@Threshold("1 ms")
+class DatabaseEvent extends MeasuredEvent {
+    /** Название операции. */
+    @Label("Operation")
+    String operation;
+    /** Количество обработанных строк. */
+    @Label("Rows")
+    long rows;
+
+    @Override
+    void setAmount(long amount) {
+        rows = amount;
+    }
+}
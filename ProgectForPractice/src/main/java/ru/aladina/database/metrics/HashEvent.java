@@ -0,0 +1,35 @@
+package ru.aladina.database.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: вычисление хэш-суммы файла (в запись попадают вычисления дольше 10 мс,
+ * чтобы не замедлять обработку множества маленьких файлов).
+ */
+@Name("ru.aladina.Hash")
+@Label("File Hash")
+@Category({"Practice", "Hashing"})
+@Description("Вычисление хэш-суммы файла")
+@Threshold("10 ms")
+class HashEvent extends MeasuredEvent {
+    /** Путь к файлу. */
+    @Label("Path")
+    String path;
+    /** Количество прочитанных байт. */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    /** Название алгоритма. */
+    @Label("Algorithm")
+    String algorithm;
+
+    @Override
+    void setAmount(long amount) {
+        bytes = amount;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.aladina.database.metrics;
+
+import jdk.jfr.Event;
+
+/**
+ * Событие JFR, которое создаётся в начале измеряемой операции и сохраняется по её окончании.
+ */
+abstract class MeasuredEvent extends Event {
+
+    /**
+     * Устанавливает количественный результат операции (строки, байты).
+     *
+     * @param amount количественный результат операции
+     */
+    abstract void setAmount(long amount);
+}
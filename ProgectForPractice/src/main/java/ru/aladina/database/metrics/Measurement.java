@@ -0,0 +1,49 @@
+package ru.aladina.database.metrics;
+
+/**
+ * Измерение одной операции: длительность попадает в {@link Timer}, количественный результат -
+ * в {@link Counter}, а по окончании сохраняется событие JFR (если запись JFR включена).
+ * (Используется в try-with-resources)
+ */
+public final class Measurement implements AutoCloseable {
+    /** Измеритель длительности. */
+    private final Timer timer;
+    /** Счётчик количественного результата (или null). */
+    private final Counter amountCounter;
+    /** Событие JFR. */
+    private final MeasuredEvent event;
+    /** Момент начала операции. */
+    private final long startNanos;
+    /** Количественный результат операции. */
+    private long amount;
+
+    Measurement(Timer timer, Counter amountCounter, MeasuredEvent event) {
+        this.timer = timer;
+        this.amountCounter = amountCounter;
+        this.event = event;
+        event.begin();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Устанавливает количественный результат операции (строки, байты).
+     *
+     * @param amount количественный результат операции
+     */
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public void close() {
+        timer.recordSince(startNanos);
+        if (amountCounter != null) {
+            amountCounter.add(amount);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.setAmount(amount);
+            event.commit();
+        }
+    }
+}
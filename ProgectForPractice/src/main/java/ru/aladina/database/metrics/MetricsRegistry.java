@@ -0,0 +1,140 @@
+package ru.aladina.database.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр показателей работы программы: счётчики и измерители длительности по именам.
+ * Основные показатели:
+ * phase.* - длительность этапов работы программы;
+ * hash.full, hash.partial, hash.bytes - вычисление хэш-сумм;
+ * db.* - запросы к базе данных, db.connection.wait - ожидание соединения, db.rows - обработанные строки;
+ * link.* - замена дубликатов ссылками;
+ * pool.* - пул соединений с базой данных.
+ * Те же операции сохраняются как события JFR (ru.aladina.*), если программа запущена с записью JFR.
+ */
+public final class MetricsRegistry {
+    /** Счётчики по именам. */
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    /** Измерители длительности по именам. */
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    /** Показатели текущего состояния по именам. */
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Счётчик с заданным именем (создаётся при первом обращении).
+     *
+     * @param name имя счётчика
+     *
+     * @return счётчик
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Измеритель длительности с заданным именем (создаётся при первом обращении).
+     *
+     * @param name имя измерителя
+     *
+     * @return измеритель длительности
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Регистрирует показатель текущего состояния (значение читается при выводе сводки).
+     *
+     * @param name имя показателя
+     * @param value источник значения
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Начинает измерение этапа работы программы.
+     *
+     * @param phase название этапа
+     *
+     * @return измерение (закрывается по окончании этапа)
+     */
+    public static Measurement phase(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        return new Measurement(timer("phase." + phase), null, event);
+    }
+
+    /**
+     * Начинает измерение запроса к базе данных.
+     *
+     * @param operation название операции
+     *
+     * @return измерение (количество обработанных строк задаётся через {@link Measurement#setAmount(long)})
+     */
+    public static Measurement database(String operation) {
+        DatabaseEvent event = new DatabaseEvent();
+        event.operation = operation;
+        return new Measurement(timer("db." + operation), counter("db.rows"), event);
+    }
+
+    /**
+     * Начинает измерение вычисления хэш-суммы файла.
+     *
+     * @param kind вид хэш-суммы (full или partial)
+     * @param path путь к файлу
+     * @param algorithm название алгоритма
+     *
+     * @return измерение (количество прочитанных байт задаётся через {@link Measurement#setAmount(long)})
+     */
+    public static Measurement hash(String kind, String path, String algorithm) {
+        HashEvent event = new HashEvent();
+        event.path = path;
+        event.algorithm = algorithm;
+        return new Measurement(timer("hash." + kind), counter("hash.bytes"), event);
+    }
+
+    /**
+     * Выводит сводку по всем показателям.
+     */
+    public static void printSummary() {
+        System.out.println("Показатели работы:");
+        Timer scan = TIMERS.get("phase.scan");
+        if (scan != null && scan.getTotalNanos() > 0) {
+            double seconds = scan.getTotalNanos() / 1e9;
+            long hashedFiles = timer("hash.full").getCount() + timer("hash.partial").getCount();
+            System.out.printf("  hash: %.0f файлов/с, %.1f МБ/с%n",
+                    hashedFiles / seconds, counter("hash.bytes").get() / seconds / (1024 * 1024));
+        }
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(TIMERS).entrySet()) {
+            Timer timer = entry.getValue();
+            System.out.printf("  %s: count=%d total=%d мс p50=%s p95=%s p99=%s max=%s%n",
+                    entry.getKey(), timer.getCount(), TimeUnit.NANOSECONDS.toMillis(timer.getTotalNanos()),
+                    formatNanos(timer.getPercentileNanos(50)), formatNanos(timer.getPercentileNanos(95)),
+                    formatNanos(timer.getPercentileNanos(99)), formatNanos(timer.getMaxNanos()));
+        }
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(GAUGES).entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue().getAsLong());
+        }
+    }
+
+    /**
+     * Переводит длительность в строку с подходящей единицей измерения.
+     */
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) {
+            return (nanos / 1000) + "мкс";
+        }
+        return (nanos / 1_000_000) + "мс";
+    }
+}
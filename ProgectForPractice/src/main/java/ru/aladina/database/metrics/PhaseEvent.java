@@ -0,0 +1,23 @@
+package ru.aladina.database.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: выполнение этапа работы программы (обход, поиск исходных файлов, замена дубликатов).
+ */
+@Name("ru.aladina.Phase")
+@Label("Phase")
+@Category({"Practice", "Phases"})
+@Description("Этап работы программы")
+class PhaseEvent extends MeasuredEvent {
+    /** Название этапа. */
+    @Label("Phase")
+    String phase;
+
+    @Override
+    void setAmount(long amount) {
+    }
+}
@@ -0,0 +1,103 @@
+package ru.aladina.database.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Измеритель длительности операций с гистограммой задержек.
+ * Гистограмма хранит количество операций по степеням двойки длительности в микросекундах,
+ * поэтому процентили приблизительные (с точностью до верхней границы интервала).
+ */
+public final class Timer {
+    /** Количество интервалов гистограммы. */
+    private static final int BUCKET_COUNT = 40;
+    /** Количество операций. */
+    private final LongAdder count = new LongAdder();
+    /** Суммарная длительность (в наносекундах). */
+    private final LongAdder totalNanos = new LongAdder();
+    /** Максимальная длительность (в наносекундах). */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    /** Количество операций в каждом интервале гистограммы. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    Timer() {
+    }
+
+    /**
+     * Учитывает операцию, начавшуюся в заданный момент и закончившуюся сейчас.
+     *
+     * @param startNanos момент начала операции ({@link System#nanoTime()})
+     *
+     * @return длительность операции (в наносекундах)
+     */
+    public long recordSince(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        record(nanos);
+        return nanos;
+    }
+
+    /**
+     * Учитывает операцию заданной длительности.
+     *
+     * @param nanos длительность операции (в наносекундах)
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+    }
+
+    /**
+     * Количество операций.
+     *
+     * @return количество операций
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Суммарная длительность операций.
+     *
+     * @return суммарная длительность (в наносекундах)
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Максимальная длительность операции.
+     *
+     * @return максимальная длительность (в наносекундах)
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Приблизительный процентиль длительности операций.
+     *
+     * @param percentile процентиль (от 0 до 100)
+     *
+     * @return верхняя граница интервала гистограммы, в который попадает процентиль (в наносекундах)
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min((1L << i) * 1000, getMaxNanos());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.aladina.database.model;
+
+/**
+ * Сводка по таблице {@link MyFile#TABLE_NAME}: количество и суммарный размер всех файлов и дубликатов.
+ * (Неизменяемый объект: значения вычисляются одним запросом к таблице)
+ */
+public final class CatalogSummary {
+    /** Количество файлов. */
+    private final long fileCount;
+    /** Суммарный размер файлов (в байтах). */
+    private final long totalSize;
+    /** Количество дублирующихся файлов. */
+    private final long duplicateCount;
+    /** Суммарный размер дублирующихся файлов (в байтах). */
+    private final long duplicateSize;
+
+    /**
+     * Конструктор для {@link CatalogSummary}.
+     *
+     * @param fileCount количество файлов
+     * @param totalSize суммарный размер файлов
+     * @param duplicateCount количество дублирующихся файлов
+     * @param duplicateSize суммарный размер дублирующихся файлов
+     */
+    public CatalogSummary(long fileCount, long totalSize, long duplicateCount, long duplicateSize) {
+        this.fileCount = fileCount;
+        this.totalSize = totalSize;
+        this.duplicateCount = duplicateCount;
+        this.duplicateSize = duplicateSize;
+    }
+
+    /**
+     * Количество файлов.
+     *
+     * @return количество файлов
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Суммарный размер файлов.
+     *
+     * @return суммарный размер файлов (в байтах)
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Количество дублирующихся файлов.
+     *
+     * @return количество дублирующихся файлов
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Суммарный размер дублирующихся файлов.
+     *
+     * @return суммарный размер дублирующихся файлов (в байтах)
+     */
+    public long getDuplicateSize() {
+        return duplicateSize;
+    }
+}
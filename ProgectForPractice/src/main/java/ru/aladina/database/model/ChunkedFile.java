@@ -0,0 +1,56 @@
+package ru.aladina.database.model;
+
+/**
+ * Итог разбиения одного файла на блоки: сколько байт файла приходится на блоки,
+ * уже встретившиеся раньше (в файлах с меньшим путём или ранее в этом же файле).
+ * (Неизменяемый объект: значения вычисляются одним запросом к таблице {@link FileChunk#TABLE_NAME})
+ */
+public final class ChunkedFile {
+    /** Путь к файлу. */
+    private final String filePath;
+    /** Суммарный размер блоков файла (в байтах). */
+    private final long chunkedSize;
+    /** Суммарный размер повторяющихся блоков файла (в байтах). */
+    private final long sharedSize;
+
+    /**
+     * Конструктор для {@link ChunkedFile}.
+     *
+     * @param filePath путь к файлу
+     * @param chunkedSize суммарный размер блоков файла
+     * @param sharedSize суммарный размер повторяющихся блоков файла
+     */
+    public ChunkedFile(String filePath, long chunkedSize, long sharedSize) {
+        this.filePath = filePath;
+        this.chunkedSize = chunkedSize;
+        this.sharedSize = sharedSize;
+    }
+
+    /**
+     * Путь к файлу.
+     *
+     * @return путь к файлу
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Суммарный размер блоков файла.
+     *
+     * @return размер (в байтах)
+     */
+    public long getChunkedSize() {
+        return chunkedSize;
+    }
+
+    /**
+     * Суммарный размер повторяющихся блоков файла: столько места освободила бы замена
+     * повторяющихся блоков ссылками на первые.
+     *
+     * @return размер (в байтах)
+     */
+    public long getSharedSize() {
+        return sharedSize;
+    }
+}
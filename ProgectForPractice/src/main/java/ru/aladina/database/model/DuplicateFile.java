@@ -0,0 +1,80 @@
+package ru.aladina.database.model;
+
+/**
+ * Дублирующийся файл вместе с путём к его исходному файлу.
+ * (Неизменяемый объект: значения берутся из базы данных одним запросом с соединением таблицы с самой собой)
+ */
+public final class DuplicateFile {
+    /** Путь к дублирующемуся файлу. */
+    private final String filePath;
+    /** Путь к исходному файлу. */
+    private final String motherFilePath;
+    /** Идентификатор исходного файла. */
+    private final String motherID;
+    /** Размер файла. */
+    private final long size;
+    /** Название алгоритма, которым вычислены хэш-суммы. */
+    private final String hashAlgorithm;
+
+    /**
+     * Конструктор для {@link DuplicateFile}.
+     *
+     * @param filePath путь к дублирующемуся файлу
+     * @param motherFilePath путь к исходному файлу
+     * @param motherID идентификатор исходного файла
+     * @param size размер файла
+     * @param hashAlgorithm название алгоритма хэш-суммы
+     */
+    public DuplicateFile(String filePath, String motherFilePath, String motherID, long size, String hashAlgorithm) {
+        this.filePath = filePath;
+        this.motherFilePath = motherFilePath;
+        this.motherID = motherID;
+        this.size = size;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Путь к дублирующемуся файлу.
+     *
+     * @return путь к дублирующемуся файлу
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Путь к исходному файлу.
+     *
+     * @return путь к исходному файлу
+     */
+    public String getMotherFilePath() {
+        return motherFilePath;
+    }
+
+    /**
+     * Идентификатор исходного файла.
+     *
+     * @return идентификатор исходного файла
+     */
+    public String getMotherID() {
+        return motherID;
+    }
+
+    /**
+     * Размер файла.
+     *
+     * @return размер файла
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Название алгоритма, которым вычислены хэш-суммы файла.
+     *
+     * @return название алгоритма
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+}
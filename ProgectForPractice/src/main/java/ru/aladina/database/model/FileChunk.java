@@ -0,0 +1,69 @@
+package ru.aladina.database.model;
+
+/**
+ * Блок содержимого файла, выделенный разбиением с границами по содержимому.
+ * (Неизменяемый объект: записи таблицы {@link #TABLE_NAME} ссылаются на записи таблицы {@link MyFile#TABLE_NAME})
+ */
+public final class FileChunk {
+    /** Название таблицы блоков. */
+    public static final String TABLE_NAME = "file_chunk";
+    /** Идентификатор файла. */
+    private final String fileId;
+    /** Смещение блока от начала файла. */
+    private final long offset;
+    /** Размер блока (в байтах). */
+    private final int size;
+    /** Хэш-сумма блока. */
+    private final byte[] digest;
+
+    /**
+     * Конструктор для {@link FileChunk}.
+     *
+     * @param fileId идентификатор файла
+     * @param offset смещение блока от начала файла
+     * @param size размер блока
+     * @param digest хэш-сумма блока
+     */
+    public FileChunk(String fileId, long offset, int size, byte[] digest) {
+        this.fileId = fileId;
+        this.offset = offset;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    /**
+     * Идентификатор файла.
+     *
+     * @return идентификатор файла
+     */
+    public String getFileId() {
+        return fileId;
+    }
+
+    /**
+     * Смещение блока от начала файла.
+     *
+     * @return смещение блока
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Размер блока.
+     *
+     * @return размер блока (в байтах)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Хэш-сумма блока.
+     *
+     * @return хэш-сумма блока
+     */
+    public byte[] getDigest() {
+        return digest;
+    }
+}
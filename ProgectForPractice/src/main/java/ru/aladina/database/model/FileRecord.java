@@ -0,0 +1,206 @@
+package ru.aladina.database.model;
+
+import ru.aladina.database.hash.HashCache;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Запись о файле, прочитанная из таблицы {@link MyFile#TABLE_NAME}.
+ * (Неизменяемый объект: все значения берутся из базы данных, файл на диске не читается)
+ */
+public final class FileRecord {
+    /** Уникальный идентификатор файла в базе данных. */
+    private final UUID id;
+    /** Название файла. */
+    private final String title;
+    /** Путь к файлу. */
+    private final String filePath;
+    /** Размер файла. */
+    private final long size;
+    /** Дата и время последнего изменения файла. */
+    private final String dateTime;
+    /** Хэш-сумма файла. */
+    private final String hashSum;
+    /** Хэш-сумма начала и конца файла. */
+    private final String partialHashSum;
+    /** Название алгоритма, которым вычислены хэш-суммы. */
+    private final String hashAlgorithm;
+    /** Идентификатор исходника для данного файла. */
+    private final String motherID;
+    /** Идентификатор файла в файловой системе (устройство и inode). */
+    private final String fileKey;
+    /** Время последнего изменения файла (в миллисекундах). */
+    private final long modifiedMillis;
+
+    /**
+     * Конструктор для {@link FileRecord}.
+     *
+     * @param id идентификатор файла
+     * @param title имя файла
+     * @param filePath путь к файлу
+     * @param size размер файла
+     * @param dateTime дата и время последнего изменения
+     * @param hashSum хэш-сумма
+     * @param partialHashSum частичная хэш-сумма
+     * @param hashAlgorithm название алгоритма, которым вычислены хэш-суммы
+     * @param motherID идентификатор исходного файла
+     * @param fileKey идентификатор файла в файловой системе
+     * @param modifiedMillis время последнего изменения файла (в миллисекундах)
+     */
+    public FileRecord(UUID id, String title, String filePath, long size, String dateTime,
+                      String hashSum, String partialHashSum, String hashAlgorithm, String motherID,
+                      String fileKey, long modifiedMillis) {
+        this.id = id;
+        this.title = title;
+        this.filePath = filePath;
+        this.size = size;
+        this.dateTime = dateTime;
+        this.hashSum = hashSum;
+        this.partialHashSum = partialHashSum;
+        this.hashAlgorithm = hashAlgorithm;
+        this.motherID = motherID;
+        this.fileKey = fileKey;
+        this.modifiedMillis = modifiedMillis;
+    }
+
+    /**
+     * Уникальный идентификатор файла в базе данных.
+     *
+     * @return уникальный идентификатор файла в базе данных
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Имя файла.
+     *
+     * @return имя файла
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Путь к файлу.
+     *
+     * @return путь к файлу
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Размер файла на момент занесения в таблицу.
+     *
+     * @return размер файла
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Время и дата последнего изменения файла на момент занесения в таблицу.
+     *
+     * @return время и дата последнего изменения файла
+     */
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    /**
+     * Хэш-сумма файла.
+     *
+     * @return хэш-сумма файла
+     */
+    public String getHashSum() {
+        return hashSum;
+    }
+
+    /**
+     * Хэш-сумма начала и конца файла.
+     *
+     * @return частичная хэш-сумма файла
+     */
+    public String getPartialHashSum() {
+        return partialHashSum;
+    }
+
+    /**
+     * Название алгоритма, которым вычислены хэш-суммы файла.
+     *
+     * @return название алгоритма
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    /**
+     * Идентификатор исходного файла.
+     *
+     * @return идентификатор исходного файла
+     */
+    public String getMotherID() {
+        return motherID;
+    }
+
+    /**
+     * Идентификатор файла в файловой системе (устройство и inode) на момент занесения в таблицу.
+     *
+     * @return идентификатор файла в файловой системе
+     */
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Время последнего изменения файла в миллисекундах на момент занесения в таблицу.
+     *
+     * @return время последнего изменения файла
+     */
+    public long getModifiedMillis() {
+        return modifiedMillis;
+    }
+
+    /**
+     * Проверяет, что файл на диске не менялся с момента занесения записи в таблицу:
+     * совпадают идентификатор в файловой системе, размер и время последнего изменения.
+     * Если файловая система не предоставляет идентификатор файла, файл определяется по пути (как в {@link HashCache}).
+     *
+     * @param file файл с атрибутами, только что прочитанными с диска
+     *
+     * @return true, если хэш-суммы записи можно использовать без пересчёта
+     */
+    public boolean isUnchanged(MyFile file) {
+        boolean sameFile = fileKey != null
+                ? fileKey.equals(file.getFileKey())
+                : file.getFileKey() == null && filePath.equals(file.getFilePath());
+        return sameFile
+                && file.getSize() != null && size == file.getSize()
+                && modifiedMillis == file.getModifiedMillis();
+    }
+
+    /**
+     * Проверяет, отмечен ли файл как уникальный.
+     *
+     * @return true, если полная хэш-сумма файла не вычислялась, так как у него заведомо нет дубликатов
+     */
+    public boolean isUnique() {
+        return MyFile.UNIQUE_HASH_SUM.equals(hashSum);
+    }
+
+    /**
+     * Создаёт новую запись, в которой имя, размер и дата изменения заново прочитаны с диска.
+     * Идентификаторы и хэш-суммы переносятся из этой записи без пересчёта.
+     *
+     * @return запись с актуальными атрибутами файла
+     *
+     * @throws IOException ошибка при чтении атрибутов файла
+     */
+    public FileRecord refreshFromDisk() throws IOException {
+        MyFile file = new MyFile(filePath).refreshFromDisk();
+        return new FileRecord(id, file.getTitle(), filePath, file.getSize(), file.getDateTime(),
+                hashSum, partialHashSum, hashAlgorithm, motherID, file.getFileKey(), file.getModifiedMillis());
+    }
+}
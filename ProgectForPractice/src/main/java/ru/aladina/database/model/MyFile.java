@@ -1,21 +1,38 @@
 package ru.aladina.database.model;
 
 
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.hash.FingerprintAlgorithm;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.hash.HashCache;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
 import java.util.UUID;
 
 /**
  * Файловая система.
+ * (Размер, имя и дата изменения файла хранятся в объекте и читаются с диска
+ * только при явном вызове {@link #refreshFromDisk()})
  */
 public class MyFile {
     /** Название таблицы для хранения объектов класса MyFile. */
     public static final String TABLE_NAME = "file_system";
+    /**
+     * Отметка вместо хэш-суммы для файлов, у которых заведомо нет дубликатов
+     * (уникальный размер или уникальная частичная хэш-сумма).
+     */
+    public static final String UNIQUE_HASH_SUM = "unique";
+    /**
+     * Время последнего изменения файла, атрибуты которого ещё не прочитаны с диска
+     * (в таблицу записывается как NULL).
+     */
+    public static final long UNKNOWN_MODIFIED_MILLIS = 0;
     /** Уникальный идентификатор файла в базе данных. */
     private UUID id;
     /** Название файла. */
@@ -28,8 +45,16 @@ public class MyFile {
     private String dateTime;
     /** Хэш-сумма файла. */
     private String hashSum;
+    /** Хэш-сумма начала и конца файла. */
+    private String partialHashSum;
+    /** Название алгоритма, которым вычислены хэш-суммы. */
+    private String hashAlgorithm;
     /** Идентификатор исходника для данного файла. */
     private String motherID;
+    /** Идентификатор файла в файловой системе (устройство и inode). */
+    private String fileKey;
+    /** Время последнего изменения файла (в миллисекундах). */
+    private long modifiedMillis;
     /**
      * Консторуктор для {@link MyFile}.
      *
@@ -37,6 +62,7 @@ public class MyFile {
      */
     public MyFile(String filePath) {
         this.filePath = filePath;
+        this.title = filePath == null ? null : new File(filePath).getName();
     }
     /**
      *  Консторуктор для {@link MyFile}.
@@ -48,17 +74,14 @@ public class MyFile {
      * @param dateTime дата и время последнего изменения
      * @param hashSum хэш-сумма
      * @param motherID идентификатор исходного файла
-     *
-     * @throws IOException ошибка при пвычислении хэш-суммы
-     * @throws NoSuchAlgorithmException ошибка при пвычислении хэш-суммы
      */
-    public MyFile(UUID id, String title, String filePath, Long size, String dateTime, String hashSum, String motherID) throws IOException, NoSuchAlgorithmException {
+    public MyFile(UUID id, String title, String filePath, Long size, String dateTime, String hashSum, String motherID) {
         this.id = id;
         this.title = title;
         this.filePath = filePath;
         this.size = size;
         this.dateTime = dateTime;
-        this.hashSum = findHashSum();
+        this.hashSum = hashSum;
         this.motherID = motherID;
     }
 
@@ -77,8 +100,7 @@ public class MyFile {
      * @return имя файла
      */
     public String getTitle() {
-        File file = new File(filePath);
-        return file.getName();
+        return title;
     }
 
     /**
@@ -96,8 +118,7 @@ public class MyFile {
      * @return размер файла
      */
     public Long getSize() {
-        File file = new File(filePath);
-        return file.length();
+        return size;
     }
 
     /**
@@ -106,13 +127,56 @@ public class MyFile {
      * @return время и дата последнего изменения файла
      */
     public String getDateTime() {
-        File file = new File(filePath);
-        long timestamp = file.lastModified();
-        Date dateLastModified = new Date(timestamp);
-        setDateTime(dateLastModified.toString());
         return dateTime;
     }
 
+    /**
+     * Заново читает с диска имя, размер и дату последнего изменения файла.
+     *
+     * @return этот же файл с обновлёнными значениями
+     *
+     * @throws IOException ошибка при чтении атрибутов файла
+     */
+    public MyFile refreshFromDisk() throws IOException {
+        return applyAttributes(
+                Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+    }
+
+    /**
+     * Заполняет имя, размер и дату последнего изменения файла из уже прочитанных атрибутов
+     * (без повторного обращения к диску).
+     *
+     * @param attributes атрибуты файла
+     *
+     * @return этот же файл с обновлёнными значениями
+     */
+    public MyFile applyAttributes(BasicFileAttributes attributes) {
+        title = new File(filePath).getName();
+        size = attributes.size();
+        modifiedMillis = attributes.lastModifiedTime().toMillis();
+        dateTime = new Date(modifiedMillis).toString();
+        fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+        return this;
+    }
+
+    /**
+     * Идентификатор файла в файловой системе (устройство и inode).
+     *
+     * @return идентификатор файла в файловой системе или null, если файловая система его не предоставляет
+     */
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Время последнего изменения файла в миллисекундах.
+     *
+     * @return время последнего изменения файла
+     */
+    public long getModifiedMillis() {
+        return modifiedMillis;
+    }
+
     /**
      * Хэш-сумма файла.
      *
@@ -123,27 +187,86 @@ public class MyFile {
     }
 
     /**
-     * Метод для рассчёта хэш-суммы файла при помощи хэш-функции SHA-256.
-     * (Алгоритм при рассчёте хэш-суммы не учитывает название файла, а только содержимое)
+     * Проверяет, отмечен ли файл как уникальный.
+     *
+     * @return true, если полная хэш-сумма файла не вычислялась, так как у него заведомо нет дубликатов
+     */
+    public boolean isUnique() {
+        return UNIQUE_HASH_SUM.equals(hashSum);
+    }
+
+    /**
+     * Метод для рассчёта хэш-суммы файла алгоритмом, выбранным в настройке hash.algorithm.
+     * (Алгоритм при рассчёте хэш-суммы не учитывает название файла, а только содержимое.
+     * Если файл не изменился с прошлого рассчёта, хэш-сумма берётся из кэша {@link HashCache})
      *
      * @return хэш-сумма
      *
      * @throws IOException ошибка при пвычислении хэш-суммы
-     * @throws NoSuchAlgorithmException ошибка при пвычислении хэш-суммы
      */
-    public String findHashSum() throws IOException, NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        try (FileInputStream fis = new FileInputStream(filePath); DigestInputStream dis = new DigestInputStream(fis, md)) {
-            while (dis.read() != -1) ;
-        }
-        byte[] hashBytes = md.digest();
-        StringBuilder stringBuilder = new StringBuilder();
-        for (byte b : hashBytes) {
-            stringBuilder.append(String.format("%02x", b));
+    public String findHashSum() throws IOException {
+        var algorithm = FingerprintAlgorithms.configured();
+        hashSum = FileHasher.toHex(cachedDigest(0, algorithm, () -> FileHasher.digest(Paths.get(filePath), algorithm)));
+        hashAlgorithm = algorithm.getName();
+        return hashSum;
+    }
+
+    /**
+     * Метод для рассчёта частичной хэш-суммы файла алгоритмом, выбранным в настройке hash.algorithm.
+     * Учитываются только первые и последние sampleSize байт файла. Если файл не длиннее
+     * двух таких фрагментов, хэш-сумма считается по всему содержимому и совпадает с {@link #findHashSum()}.
+     *
+     * @param sampleSize размер фрагмента в начале и в конце файла в байтах
+     *
+     * @return частичная хэш-сумма
+     *
+     * @throws IOException ошибка при пвычислении хэш-суммы
+     */
+    public String findPartialHashSum(int sampleSize) throws IOException {
+        var algorithm = FingerprintAlgorithms.configured();
+        partialHashSum = FileHasher.toHex(cachedDigest(sampleSize, algorithm,
+                () -> FileHasher.digestSample(Paths.get(filePath), sampleSize, algorithm)));
+        hashAlgorithm = algorithm.getName();
+        return partialHashSum;
+    }
+
+    /**
+     * Берёт хэш-сумму из кэша {@link HashCache}, а при промахе вычисляет её.
+     * Кэш используется только для файла с прочитанными атрибутами (размером и временем изменения).
+     *
+     * @param sampleSize размер фрагмента частичной хэш-суммы (0 - хэш-сумма всего файла)
+     * @param algorithm алгоритм вычисления хэш-суммы
+     * @param digester вычисление хэш-суммы
+     *
+     * @return хэш-сумма
+     *
+     * @throws IOException ошибка при вычислении хэш-суммы
+     */
+    private byte[] cachedDigest(int sampleSize, FingerprintAlgorithm algorithm, HashCache.Digester digester)
+            throws IOException {
+        if (size == null) {
+            return digester.digest();
         }
+        return HashCache.shared().digest(fileKey == null ? filePath : fileKey, size, modifiedMillis, sampleSize,
+                algorithm, digester);
+    }
 
-        hashSum = stringBuilder.toString();
-        return hashSum;
+    /**
+     * Хэш-сумма начала и конца файла.
+     *
+     * @return частичная хэш-сумма файла
+     */
+    public String getPartialHashSum() {
+        return partialHashSum;
+    }
+
+    /**
+     * Название алгоритма, которым вычислены хэш-суммы файла.
+     *
+     * @return название алгоритма
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
     }
 
     /**
@@ -155,6 +278,44 @@ public class MyFile {
         return motherID;
     }
 
+    /**
+     * Устанавливает уникальный идентификатор файла в базе данных.
+     *
+     * @param id уникальный идентификатор файла
+     */
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    /**
+     * Устанавливает название алгоритма, которым вычислены хэш-суммы файла.
+     *
+     * @param hashAlgorithm название алгоритма
+     */
+    public void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Устанавливает идентификатор исходного файла.
+     *
+     * @param motherID идентификатор исходного файла
+     */
+    public void setMotherID(String motherID) {
+        this.motherID = motherID;
+    }
+
+    /**
+     * Устанавливает идентификатор файла в файловой системе и время его последнего изменения.
+     *
+     * @param fileKey идентификатор файла в файловой системе
+     * @param modifiedMillis время последнего изменения файла (в миллисекундах)
+     */
+    public void setFileState(String fileKey, long modifiedMillis) {
+        this.fileKey = fileKey;
+        this.modifiedMillis = modifiedMillis;
+    }
+
     /**
      * Устанавливает время и дату последнего изменения файла.
      *
@@ -172,4 +333,13 @@ public class MyFile {
     public void setHashSum(String hashSum) {
         this.hashSum = hashSum;
     }
+
+    /**
+     * Устанавливает частичную хэш-сумму.
+     *
+     * @param partialHashSum частичная хэш-сумма
+     */
+    public void setPartialHashSum(String partialHashSum) {
+        this.partialHashSum = partialHashSum;
+    }
 }
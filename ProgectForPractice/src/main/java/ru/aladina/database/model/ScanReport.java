@@ -0,0 +1,161 @@
+package ru.aladina.database.model;
+
+/**
+ * Итог сканирования файловой системы.
+ * Количество и размеры файлов собираются при обходе, сведения о дубликатах берутся из таблицы.
+ * Размер после замены вычисляется по месту, которое действительно освободила замена дубликатов
+ * (см. {@link #withReclaimedSize(long, boolean)}), а не по таблице: часть дубликатов может быть
+ * пропущена, а пробный запуск файлы не изменяет.
+ */
+public final class ScanReport {
+    /** Количество обычных файлов. */
+    private final long fileCount;
+    /** Количество символических ссылок. */
+    private final long linkCount;
+    /** Суммарный размер файлов (в байтах). */
+    private final long logicalSize;
+    /**
+     * Суммарный размер файлов, округлённый вверх до размера блока (в байтах).
+     * (Это не занимаемое на диске место: жёсткие ссылки учитываются по разу на имя, разреженные файлы - целиком)
+     */
+    private final long blockRoundedSize;
+    /** Количество дублирующихся файлов. */
+    private final long duplicateCount;
+    /** Суммарный размер дублирующихся файлов (в байтах). */
+    private final long duplicateSize;
+    /** Место, освобождённое заменой дубликатов (в байтах). */
+    private final long reclaimedSize;
+    /** Признак пробного запуска замены (файлы не изменялись). */
+    private final boolean dryRun;
+
+    /**
+     * Конструктор для {@link ScanReport}.
+     *
+     * @param fileCount количество обычных файлов
+     * @param linkCount количество символических ссылок
+     * @param logicalSize суммарный размер файлов
+     * @param blockRoundedSize суммарный размер файлов, округлённый до размера блока
+     * @param duplicateCount количество дублирующихся файлов
+     * @param duplicateSize суммарный размер дублирующихся файлов
+     */
+    public ScanReport(long fileCount, long linkCount, long logicalSize, long blockRoundedSize,
+                      long duplicateCount, long duplicateSize) {
+        this(fileCount, linkCount, logicalSize, blockRoundedSize, duplicateCount, duplicateSize, 0, false);
+    }
+
+    private ScanReport(long fileCount, long linkCount, long logicalSize, long blockRoundedSize,
+                       long duplicateCount, long duplicateSize, long reclaimedSize, boolean dryRun) {
+        this.fileCount = fileCount;
+        this.linkCount = linkCount;
+        this.logicalSize = logicalSize;
+        this.blockRoundedSize = blockRoundedSize;
+        this.duplicateCount = duplicateCount;
+        this.duplicateSize = duplicateSize;
+        this.reclaimedSize = reclaimedSize;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Дополняет итог результатом замены дубликатов.
+     *
+     * @param reclaimedSize место, освобождённое заменой (для пробного запуска - место, которое было бы освобождено)
+     * @param dryRun признак пробного запуска
+     *
+     * @return итог сканирования с результатом замены
+     */
+    public ScanReport withReclaimedSize(long reclaimedSize, boolean dryRun) {
+        return new ScanReport(fileCount, linkCount, logicalSize, blockRoundedSize, duplicateCount, duplicateSize,
+                reclaimedSize, dryRun);
+    }
+
+    /**
+     * Количество обычных файлов.
+     *
+     * @return количество обычных файлов
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Количество символических ссылок.
+     *
+     * @return количество символических ссылок
+     */
+    public long getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Суммарный размер файлов.
+     *
+     * @return суммарный размер файлов (в байтах)
+     */
+    public long getLogicalSize() {
+        return logicalSize;
+    }
+
+    /**
+     * Суммарный размер файлов, округлённый вверх до размера блока.
+     *
+     * @return округлённый размер (в байтах)
+     */
+    public long getBlockRoundedSize() {
+        return blockRoundedSize;
+    }
+
+    /**
+     * Количество дублирующихся файлов.
+     *
+     * @return количество дублирующихся файлов
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Суммарный размер дублирующихся файлов.
+     *
+     * @return суммарный размер дублирующихся файлов (в байтах)
+     */
+    public long getDuplicateSize() {
+        return duplicateSize;
+    }
+
+    /**
+     * Ожидаемый суммарный размер файлов после замены всех дубликатов из таблицы.
+     *
+     * @return суммарный размер файлов без дубликатов (в байтах)
+     */
+    public long getProjectedSizeAfterDedup() {
+        return logicalSize - duplicateSize;
+    }
+
+    /**
+     * Место, освобождённое заменой дубликатов.
+     *
+     * @return освобождённое место (в байтах)
+     */
+    public long getReclaimedSize() {
+        return reclaimedSize;
+    }
+
+    /**
+     * Признак пробного запуска замены.
+     *
+     * @return true, если файлы не изменялись
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * Суммарный размер файлов после замены дубликатов на ссылки.
+     * (При пробном запуске файлы не изменяются, поэтому размер остаётся прежним)
+     *
+     * @return суммарный размер файлов после замены (в байтах)
+     */
+    public long getSizeAfterDedup() {
+        return dryRun ? logicalSize : logicalSize - reclaimedSize;
+    }
+}
@@ -42,4 +42,17 @@ public class PropertyContainer {
     public static String getProperty(String propertyKey) {
         return properties.getOrDefault(propertyKey, "");
     }
+
+    /**
+     * Возвращает целочисленное значение, расположенное по заданному ключу.
+     *
+     * @param propertyKey имя настройки (ключ словаря настроек)
+     * @param defaultValue значение по умолчанию, если настройка не задана
+     *
+     * @return значение из словаря настроек, расположенное по заданному ключу
+     */
+    public static int getIntProperty(String propertyKey, int defaultValue) {
+        var value = getProperty(propertyKey).trim();
+        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
 }
@@ -0,0 +1,87 @@
+package ru.aladina.database.repository;
+
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный интерфейс репозитория.
+ * Изменения выполняются по очереди в одном сеансе {@link FileSession} отдельным потоком записи,
+ * который объединяет подряд идущие вызовы в пачки, поэтому вызывающий поток не ждёт каждого обращения к базе.
+ * Чтение выполняется в других потоках и видит только подтверждённые изменения.
+ * (Если очередь изменений заполнена, вызов ждёт, пока в ней освободится место)
+ */
+public interface AsyncFileRepository extends AutoCloseable {
+
+    /**
+     * Добавляет файлы в очередь записи.
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     *
+     * @return результат, завершающийся после выполнения пачки с этими файлами
+     */
+    CompletableFuture<Void> createAll(Collection<MyFile> files);
+
+    /**
+     * Добавляет блоки файлов в очередь записи.
+     *
+     * @param chunks блоки файлов
+     *
+     * @return результат, завершающийся после выполнения пачки с этими блоками
+     */
+    CompletableFuture<Void> createChunks(Collection<FileChunk> chunks);
+
+    /**
+     * Добавляет удаление записей о файлах с заданными путями в очередь записи.
+     *
+     * @param filePaths пути к файлам
+     *
+     * @return результат, завершающийся после удаления
+     */
+    CompletableFuture<Void> deleteByPaths(Collection<String> filePaths);
+
+    /**
+     * Сохраняет все изменения, добавленные в очередь до этого вызова.
+     * Если одно из них завершилось ошибкой, сохранение тоже завершается этой ошибкой.
+     *
+     * @return результат сохранения
+     */
+    CompletableFuture<Void> commit();
+
+    /**
+     * Построчно читает все подтверждённые записи таблицы.
+     *
+     * @param consumer обработчик, вызываемый для каждой записи (в потоке чтения)
+     *
+     * @return результат, завершающийся после чтения всех записей
+     */
+    CompletableFuture<Void> forEachFile(Consumer<FileRecord> consumer);
+
+    /**
+     * Ищет файлы по хэш-сумме среди подтверждённых записей.
+     *
+     * @param hashSum хэш-сумма
+     *
+     * @return найденные файлы
+     */
+    CompletableFuture<List<FileRecord>> findByHashSum(String hashSum);
+
+    /**
+     * Подсчитывает количество и размер файлов и дубликатов среди подтверждённых записей.
+     *
+     * @return сводка по таблице
+     */
+    CompletableFuture<CatalogSummary> summarize();
+
+    /**
+     * Дожидается выполнения очереди записи и закрывает репозиторий. Несохранённые изменения отменяются.
+     */
+    @Override
+    void close();
+}
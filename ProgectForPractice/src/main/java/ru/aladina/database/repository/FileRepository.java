@@ -1,8 +1,14 @@
 package ru.aladina.database.repository;
 
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.ChunkedFile;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.model.FileRecord;
 import ru.aladina.database.model.MyFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс репозитория файлов.
@@ -14,15 +20,51 @@ public interface FileRepository {
     void initTable();
     /**
      * Метод создания новой записи.
+     *
+     * @param file файл, информацию о котором нужно внести в таблицу
+     *
+     * @return созданная запись
      */
-    MyFile create(MyFile file);
+    FileRecord create(MyFile file);
+
+    /**
+     * Метод создания сразу нескольких записей.
+     * (Идентификаторы присваиваются файлам на стороне программы, поэтому записи не перечитываются из базы)
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     */
+    void createAll(Collection<MyFile> files);
 
     /**
      * Метод получения всех записей из таблицы.
      *
      * @return список записей
      */
-    List<MyFile> findAll();
+    List<FileRecord> findAll();
+
+    /**
+     * Метод построчного чтения всех записей таблицы без загрузки их в память целиком.
+     *
+     * @param consumer обработчик, вызываемый для каждой записи
+     */
+    void forEachFile(Consumer<FileRecord> consumer);
+
+    /**
+     * Метод построчного чтения всех дублирующихся файлов вместе с путями к их исходным файлам
+     * (одним запросом, упорядоченно по пути дублирующегося файла).
+     *
+     * @param consumer обработчик, вызываемый для каждого дублирующегося файла
+     */
+    void forEachDuplicate(Consumer<DuplicateFile> consumer);
+
+    /**
+     * Метод построчного чтения итогов разбиения файлов на блоки (таблица {@link ChunkedFile}),
+     * упорядоченно по пути файла. Повторяющимся считается каждое вхождение блока, кроме первого
+     * (в файле с наименьшим путём и с наименьшим смещением).
+     *
+     * @param consumer обработчик, вызываемый для каждого разбитого на блоки файла
+     */
+    void forEachChunkedFile(Consumer<ChunkedFile> consumer);
 
     /**
      * Метод поиска файла по его идентификатору.
@@ -31,7 +73,7 @@ public interface FileRepository {
      *
      * @return искомый файл
      */
-    MyFile findById(String id);
+    FileRecord findById(String id);
     /**
      * Метод поиска файла по его хэш-сумме.
      *
@@ -39,7 +81,7 @@ public interface FileRepository {
      *
      * @return искомый файл
      */
-    List<MyFile> findByHashSum(String hashSum);
+    List<FileRecord> findByHashSum(String hashSum);
 
     /**
      * Метод обновляет информацию об исходных файлах в базе данных.
@@ -49,6 +91,32 @@ public interface FileRepository {
      */
     void updateFilesMothersIdInfo(String id, String motherID);
 
+    /**
+     * Метод удаления записей о файлах с заданными путями.
+     *
+     * @param filePaths пути к файлам
+     */
+    void deleteByPaths(Collection<String> filePaths);
+
+    /**
+     * Метод открывает сеанс работы с таблицей: одно соединение и одна транзакция для всех операций этапа.
+     *
+     * @return сеанс работы с таблицей (закрывается вызывающим)
+     */
+    FileSession openSession();
+
+    /**
+     * Метод одним запросом назначает исходные файлы для всех записей таблицы.
+     */
+    void assignMotherIds();
+
+    /**
+     * Метод одним запросом подсчитывает количество и суммарный размер всех файлов и дубликатов таблицы.
+     *
+     * @return сводка по таблице
+     */
+    CatalogSummary summarize();
+
     /**
      * Метод очищает таблицу от всей имеющейся в ней информации.
      *
@@ -0,0 +1,76 @@
+package ru.aladina.database.repository;
+
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Сеанс работы с таблицей файлов (единица работы).
+ * Все операции сеанса выполняются через одно соединение в одной транзакции с повторным использованием
+ * подготовленных запросов. Изменения сохраняются вызовом {@link #commit()}, а при закрытии сеанса
+ * без него отменяются, поэтому этап, завершившийся ошибкой, не оставляет в таблице частичных изменений.
+ * (Сеанс предназначен для использования одним потоком)
+ */
+public interface FileSession extends AutoCloseable {
+
+    /**
+     * Метод создания сразу нескольких записей.
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     */
+    void createAll(Collection<MyFile> files);
+
+    /**
+     * Метод создания записей о блоках файлов (таблица {@link FileChunk#TABLE_NAME}).
+     *
+     * @param chunks блоки файлов
+     */
+    void createChunks(Collection<FileChunk> chunks);
+
+    /**
+     * Метод поиска файла по его идентификатору.
+     *
+     * @param id идентификатор файла
+     *
+     * @return искомый файл или null, если он не найден
+     */
+    FileRecord findById(String id);
+
+    /**
+     * Метод поиска файлов по хэш-сумме.
+     *
+     * @param hashSum хэш-сумма
+     *
+     * @return найденные файлы
+     */
+    List<FileRecord> findByHashSum(String hashSum);
+
+    /**
+     * Метод обновляет информацию об исходном файле.
+     *
+     * @param id идентификатор файла
+     * @param motherID идентификатор исходного файла
+     */
+    void updateFilesMothersIdInfo(String id, String motherID);
+
+    /**
+     * Метод удаления записей о файлах с заданными путями.
+     *
+     * @param filePaths пути к файлам
+     */
+    void deleteByPaths(Collection<String> filePaths);
+
+    /**
+     * Сохраняет все изменения сеанса.
+     */
+    void commit();
+
+    /**
+     * Закрывает сеанс. Несохранённые изменения отменяются.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,354 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.AsyncFileRepository;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.FileSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный репозиторий поверх любого {@link FileRepository}.
+ * Поток записи забирает из очереди всё накопившееся и выполняет подряд идущие удаления и добавления
+ * одной пачкой: одним удалением по всем путям, одной вставкой не больше batchSize файлов
+ * и одной вставкой не больше batchSize блоков файлов.
+ * (Удаление переносится перед добавлениями той же пачки, если оно не касается добавляемых в ней путей)
+ * Чтение выполняется в отдельных потоках через сам репозиторий, одновременно с записью.
+ */
+public class BatchingAsyncFileRepository implements AsyncFileRepository {
+    /** Время ожидания места в очереди, после которого проверяется, что поток записи ещё работает (в миллисекундах). */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    /** Репозиторий. */
+    private final FileRepository fileRepository;
+    /** Наибольшее количество файлов в одной пачке добавления. */
+    private final int batchSize;
+    /** Очередь изменений. */
+    private final BlockingQueue<WriteOperation> queue;
+    /** Поток записи. */
+    private final Thread writer;
+    /** Потоки чтения. */
+    private final ExecutorService readers;
+    /** Первая ошибка записи: после неё все изменения завершаются этой же ошибкой. */
+    private volatile RuntimeException failure;
+    /** Признак закрытия репозитория. */
+    private volatile boolean closed;
+
+    /**
+     * Конструктор для {@link BatchingAsyncFileRepository}.
+     *
+     * @param fileRepository репозиторий
+     * @param batchSize наибольшее количество файлов в одной пачке добавления
+     * @param queueSize ёмкость очереди изменений
+     * @param executionMode вид потоков записи и чтения
+     */
+    public BatchingAsyncFileRepository(FileRepository fileRepository, int batchSize, int queueSize,
+                                       ExecutionMode executionMode) {
+        this.fileRepository = fileRepository;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.readers = Executors.newThreadPerTaskExecutor(executionMode.threadFactory("repository-reader-"));
+        // Сеанс открывается сразу, чтобы ошибка соединения возникла в вызывающем потоке
+        FileSession session = fileRepository.openSession();
+        this.writer = executionMode.newThread("repository-writer", () -> write(session));
+        writer.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> createAll(Collection<MyFile> files) {
+        return submit(new WriteOperation(Kind.CREATE, new ArrayList<>(files), List.of(), List.of()));
+    }
+
+    @Override
+    public CompletableFuture<Void> createChunks(Collection<FileChunk> chunks) {
+        return submit(new WriteOperation(Kind.CHUNKS, List.of(), List.of(), new ArrayList<>(chunks)));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteByPaths(Collection<String> filePaths) {
+        return submit(new WriteOperation(Kind.DELETE, List.of(), new ArrayList<>(filePaths), List.of()));
+    }
+
+    @Override
+    public CompletableFuture<Void> commit() {
+        return submit(new WriteOperation(Kind.COMMIT, List.of(), List.of(), List.of()));
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachFile(Consumer<FileRecord> consumer) {
+        return CompletableFuture.runAsync(() -> fileRepository.forEachFile(consumer), readers);
+    }
+
+    @Override
+    public CompletableFuture<List<FileRecord>> findByHashSum(String hashSum) {
+        return CompletableFuture.supplyAsync(() -> fileRepository.findByHashSum(hashSum), readers);
+    }
+
+    @Override
+    public CompletableFuture<CatalogSummary> summarize() {
+        return CompletableFuture.supplyAsync(fileRepository::summarize, readers);
+    }
+
+    /**
+     * Дожидается выполнения очереди записи и закрывает сеанс и потоки чтения.
+     * Несохранённые изменения отменяются. Если поток записи уже завершился (например, был прерван),
+     * закрытие не ждёт его, а оставшиеся в очереди изменения завершаются ошибкой.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            enqueue(new WriteOperation(Kind.CLOSE, List.of(), List.of(), List.of()));
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            failPending();
+            readers.close();
+        }
+    }
+
+    /**
+     * Помещает изменение в очередь записи.
+     *
+     * @param operation изменение
+     *
+     * @return результат изменения
+     */
+    private CompletableFuture<Void> submit(WriteOperation operation) {
+        if (closed) {
+            operation.result.completeExceptionally(new IllegalStateException("Репозиторий закрыт"));
+            return operation.result;
+        }
+        try {
+            if (!enqueue(operation) || !writer.isAlive()) {
+                // Поток записи завершился: изменение не будет выполнено
+                operation.result.completeExceptionally(writerStopped());
+                failPending();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            operation.result.completeExceptionally(e);
+        }
+        return operation.result;
+    }
+
+    /**
+     * Помещает изменение в очередь, пока поток записи работает.
+     *
+     * @param operation изменение
+     *
+     * @return true, если изменение помещено в очередь; false, если поток записи завершился
+     *
+     * @throws InterruptedException ожидание места в очереди прервано
+     */
+    private boolean enqueue(WriteOperation operation) throws InterruptedException {
+        while (!queue.offer(operation, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Завершает ошибкой все изменения, оставшиеся в очереди после завершения потока записи.
+     */
+    private void failPending() {
+        List<WriteOperation> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (WriteOperation operation : pending) {
+            if (operation.kind == Kind.CLOSE) {
+                operation.result.complete(null);
+            } else {
+                operation.result.completeExceptionally(writerStopped());
+            }
+        }
+    }
+
+    /**
+     * Ошибка для изменений, которые не будут выполнены потоком записи.
+     *
+     * @return первая ошибка записи или ошибка завершения потока записи
+     */
+    private RuntimeException writerStopped() {
+        RuntimeException error = failure;
+        return error != null ? error : new IllegalStateException("Поток записи завершён");
+    }
+
+    /**
+     * Поток записи: выполняет изменения из очереди пачками, пока не встретит закрытие.
+     *
+     * @param session сеанс работы с таблицей (закрывается по окончании)
+     */
+    private void write(FileSession session) {
+        try (session) {
+            List<WriteOperation> drained = new ArrayList<>();
+            int next = 0;
+            while (true) {
+                if (next == drained.size()) {
+                    drained.clear();
+                    next = 0;
+                    drained.add(queue.take());
+                    queue.drainTo(drained);
+                }
+                WriteOperation operation = drained.get(next);
+                if (operation.kind == Kind.CLOSE) {
+                    operation.result.complete(null);
+                    return;
+                }
+                if (operation.kind == Kind.COMMIT) {
+                    next++;
+                    execute(List.of(operation), session::commit);
+                    continue;
+                }
+                int end = collectBatch(drained, next);
+                List<WriteOperation> batch = drained.subList(next, end);
+                next = end;
+                execute(batch, () -> writeBatch(session, batch));
+            }
+        } catch (InterruptedException e) {
+            if (failure == null) {
+                failure = new IllegalStateException("Поток записи прерван", e);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            failPending();
+        }
+    }
+
+    /**
+     * Находит конец пачки: подряд идущие удаления и добавления, пока в пачке не больше batchSize файлов
+     * (и не больше batchSize блоков) и удаление не касается путей, добавленных раньше в этой же пачке.
+     *
+     * @param drained изменения, забранные из очереди
+     * @param start индекс первого изменения пачки (удаление или добавление)
+     *
+     * @return индекс, следующий за последним изменением пачки
+     */
+    private int collectBatch(List<WriteOperation> drained, int start) {
+        Set<String> createdPaths = new HashSet<>();
+        int files = 0;
+        int chunks = 0;
+        int end = start;
+        while (end < drained.size()) {
+            WriteOperation operation = drained.get(end);
+            if (operation.kind == Kind.CREATE) {
+                if (files > 0 && files + operation.files.size() > batchSize) {
+                    break;
+                }
+                files += operation.files.size();
+                for (MyFile file : operation.files) {
+                    createdPaths.add(file.getFilePath());
+                }
+            } else if (operation.kind == Kind.CHUNKS) {
+                if (chunks > 0 && chunks + operation.chunks.size() > batchSize) {
+                    break;
+                }
+                chunks += operation.chunks.size();
+            } else if (operation.kind == Kind.DELETE) {
+                if (operation.filePaths.stream().anyMatch(createdPaths::contains)) {
+                    break;
+                }
+            } else {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Выполняет пачку: сначала одно удаление по всем путям, затем одно добавление всех файлов
+     * и одно добавление всех блоков.
+     *
+     * @param session сеанс работы с таблицей
+     * @param batch изменения пачки
+     */
+    private void writeBatch(FileSession session, List<WriteOperation> batch) {
+        List<String> filePaths = new ArrayList<>();
+        List<MyFile> files = new ArrayList<>();
+        List<FileChunk> chunks = new ArrayList<>();
+        for (WriteOperation operation : batch) {
+            filePaths.addAll(operation.filePaths);
+            files.addAll(operation.files);
+            chunks.addAll(operation.chunks);
+        }
+        MetricsRegistry.counter("async.coalesced").add(batch.size());
+        session.deleteByPaths(filePaths);
+        session.createAll(files);
+        session.createChunks(chunks);
+    }
+
+    /**
+     * Выполняет действие и завершает результаты изменений. После первой ошибки действия не выполняются.
+     *
+     * @param operations изменения
+     * @param action действие
+     */
+    private void execute(List<WriteOperation> operations, Runnable action) {
+        if (failure == null) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        for (WriteOperation operation : operations) {
+            if (failure == null) {
+                operation.result.complete(null);
+            } else {
+                operation.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Вид изменения.
+     */
+    private enum Kind {
+        CREATE, CHUNKS, DELETE, COMMIT, CLOSE
+    }
+
+    /**
+     * Изменение в очереди записи.
+     */
+    private static class WriteOperation {
+        /** Вид изменения. */
+        private final Kind kind;
+        /** Добавляемые файлы. */
+        private final List<MyFile> files;
+        /** Пути удаляемых файлов. */
+        private final List<String> filePaths;
+        /** Добавляемые блоки файлов. */
+        private final List<FileChunk> chunks;
+        /** Результат изменения. */
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        WriteOperation(Kind kind, List<MyFile> files, List<String> filePaths, List<FileChunk> chunks) {
+            this.kind = kind;
+            this.files = files;
+            this.filePaths = filePaths;
+            this.chunks = chunks;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.aladina.database.repository.impl;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица с открытой адресацией, сопоставляющая ключу фиксированной длины номер строки.
+ * (Ключи хранятся подряд в одном массиве байт, значения - в массиве int, поэтому на каждую запись
+ * не создаётся отдельных объектов)
+ */
+final class DigestIndex {
+    /** Наибольший размер хэш-суммы (в байтах). */
+    static final int KEY_SIZE = 32;
+    /** Значение, означающее отсутствие ключа. */
+    static final int ABSENT = -1;
+    /** Размер ключа таблицы (в байтах). Более короткие ключи дополняются нулями. */
+    private final int keySize;
+    /** Ключи таблицы. */
+    private byte[] keys;
+    /** Значения таблицы ({@link #ABSENT} для пустых ячеек). */
+    private int[] values;
+    /** Количество занятых ячеек. */
+    private int size;
+
+    /**
+     * Конструктор для {@link DigestIndex}.
+     *
+     * @param keySize размер ключа (в байтах)
+     */
+    DigestIndex(int keySize) {
+        this.keySize = keySize;
+        clear();
+    }
+
+    /**
+     * Находит значение по ключу.
+     *
+     * @param key ключ
+     *
+     * @return значение или {@link #ABSENT}, если ключ отсутствует
+     */
+    int get(byte[] key) {
+        int slot = find(key);
+        return values[slot];
+    }
+
+    /**
+     * Добавляет значение по ключу, если ключ ещё отсутствует.
+     *
+     * @param key ключ
+     * @param value значение
+     *
+     * @return прежнее значение или {@link #ABSENT}, если ключ был добавлен
+     */
+    int putIfAbsent(byte[] key, int value) {
+        int slot = find(key);
+        int previous = values[slot];
+        if (previous == ABSENT) {
+            store(slot, key, value);
+        }
+        return previous;
+    }
+
+    /**
+     * Записывает значение по ключу.
+     *
+     * @param key ключ
+     * @param value значение
+     */
+    void put(byte[] key, int value) {
+        int slot = find(key);
+        if (values[slot] == ABSENT) {
+            store(slot, key, value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Удаляет все ключи.
+     */
+    void clear() {
+        keys = new byte[16 * keySize];
+        values = new int[16];
+        Arrays.fill(values, ABSENT);
+        size = 0;
+    }
+
+    /**
+     * Занимает свободную ячейку и при необходимости увеличивает таблицу.
+     */
+    private void store(int slot, byte[] key, int value) {
+        System.arraycopy(key, 0, keys, slot * keySize, Math.min(key.length, keySize));
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Находит ячейку с заданным ключом или первую свободную ячейку на его пути (линейное пробирование).
+     */
+    private int find(byte[] key) {
+        int mask = values.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != ABSENT && !matches(slot, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Сравнивает ключ с ключом в ячейке.
+     */
+    private boolean matches(int slot, byte[] key) {
+        int offset = slot * keySize;
+        for (int i = 0; i < keySize; i++) {
+            byte expected = i < key.length ? key[i] : 0;
+            if (keys[offset + i] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Хэш ключа. Ключами служат хэш-суммы и случайные идентификаторы,
+     * поэтому достаточно перемешать первые байты ключа.
+     */
+    private static int hash(byte[] key) {
+        int h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = 31 * h + (i < key.length ? key[i] : 0);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Увеличивает таблицу вдвое и переносит в неё все ключи.
+     */
+    private void resize() {
+        byte[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new byte[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+        int mask = values.length - 1;
+        byte[] key = new byte[keySize];
+        for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+            if (oldValues[oldSlot] == ABSENT) {
+                continue;
+            }
+            System.arraycopy(oldKeys, oldSlot * keySize, key, 0, keySize);
+            int slot = hash(key) & mask;
+            while (values[slot] != ABSENT) {
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(key, 0, keys, slot * keySize, keySize);
+            values[slot] = oldValues[oldSlot];
+        }
+    }
+}
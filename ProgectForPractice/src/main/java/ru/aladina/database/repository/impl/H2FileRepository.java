@@ -0,0 +1,123 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.FileSession;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Реализация репозитория задач для встроенной базы данных H2.
+ * База данных хранится в файле и работает в том же процессе, поэтому сервер PostgreSQL не нужен,
+ * а запросы не передаются по сети. Таблица имеет ту же схему, что и в {@link PostgreSQLFileRepository}.
+ */
+public class H2FileRepository extends JdbcFileRepository {
+    /** Описание столбцов таблицы. */
+    private static final String TABLE_COLUMNS = " ("
+            + "id UUID PRIMARY KEY, "
+            + "title VARCHAR,"
+            + "filePath VARCHAR,"
+            + "size BIGINT,"
+            + "dateTime_of_creation TIMESTAMP WITH TIME ZONE,"
+            + "hashSum VARBINARY,"
+            + "motherID UUID,"
+            + "partialHashSum VARBINARY,"
+            + "fileKey VARCHAR,"
+            + "hashAlgorithm VARCHAR"
+            + ")";
+
+    /**
+     * Конструктор для {@link H2FileRepository}.
+     *
+     * @param dataSource источник данных встроенной базы данных
+     */
+    public H2FileRepository(DataSource dataSource) {
+        super(dataSource);
+        initTable();
+    }
+
+    /**
+     * Инициализация таблицы.
+     * Если таблица отсутствует, метод создаёт её вместе с индексами, а также таблицу блоков файлов.
+     */
+    @Override
+    public void initTable() {
+        try (var connection = getConnection();
+             var statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + MyFile.TABLE_NAME + TABLE_COLUMNS);
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_hashSum_idx ON "
+                    + MyFile.TABLE_NAME + " (hashSum, filePath)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_size_idx ON "
+                    + MyFile.TABLE_NAME + " (size)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_motherID_idx ON "
+                    + MyFile.TABLE_NAME + " (motherID)");
+            // Записи удаляются по одному пути за запрос, поэтому путь тоже индексируется;
+            // как и в PostgreSQL, индекс уникальный: на каждый путь приходится одна запись
+            dropNonUniqueFilePathIndex(statement);
+            statement.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_filePath_idx ON "
+                    + MyFile.TABLE_NAME + " (filePath)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + FileChunk.TABLE_NAME + " ("
+                    + "fileId UUID NOT NULL, chunkOffset BIGINT NOT NULL, chunkSize INTEGER NOT NULL, digest VARBINARY NOT NULL)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + FileChunk.TABLE_NAME + "_fileId_idx ON "
+                    + FileChunk.TABLE_NAME + " (fileId)");
+        } catch (SQLException e) {
+            System.out.println("Возникла ошибка при создании таблицы: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет неуникальный индекс по пути, созданный прежними версиями программы, вместе с повторяющимися
+     * записями об одном и том же пути (остаётся последняя записанная), чтобы индекс можно было создать заново
+     * уникальным.
+     *
+     * @param statement запрос
+     *
+     * @throws SQLException ошибка выполнения запроса
+     */
+    private static void dropNonUniqueFilePathIndex(Statement statement) throws SQLException {
+        try (var resultSet = statement.executeQuery("SELECT INDEX_TYPE_NAME FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE TABLE_NAME = UPPER('" + MyFile.TABLE_NAME + "') "
+                + "AND INDEX_NAME = UPPER('" + MyFile.TABLE_NAME + "_filePath_idx')")) {
+            if (!resultSet.next() || !"INDEX".equals(resultSet.getString(1))) {
+                return;
+            }
+        }
+        int removed = statement.executeUpdate("DELETE FROM " + MyFile.TABLE_NAME + " AS older WHERE EXISTS ("
+                + "SELECT 1 FROM " + MyFile.TABLE_NAME + " AS newer "
+                + "WHERE newer.filePath = older.filePath AND newer._ROWID_ > older._ROWID_)");
+        if (removed > 0) {
+            System.out.println("Удалено повторяющихся записей о путях: " + removed);
+        }
+        statement.executeUpdate("DROP INDEX " + MyFile.TABLE_NAME + "_filePath_idx");
+    }
+
+    /**
+     * Открывает сеанс, заносящий файлы в таблицу пакетом INSERT-запросов (см. {@link H2FileSession}).
+     *
+     * @param connection соединение с базой данных
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @return сеанс работы с таблицей
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    @Override
+    FileSession newSession(Connection connection, int commitChunkSize) throws SQLException {
+        return new H2FileSession(connection, commitChunkSize);
+    }
+
+    /**
+     * Возвращает запрос назначения исходных файлов, изменяющий только строки с другим исходным файлом.
+     * (В H2 нет UPDATE ... FROM, поэтому используется MERGE)
+     *
+     * @return текст запроса
+     */
+    @Override
+    String assignMotherIdsQuery() {
+        return "MERGE INTO " + MyFile.TABLE_NAME + " AS f USING (" + MOTHER_IDS_QUERY + ") AS m ON f.id = m.id "
+                + "WHEN MATCHED AND f.motherID IS DISTINCT FROM m.motherID THEN UPDATE SET motherID = m.motherID";
+    }
+}
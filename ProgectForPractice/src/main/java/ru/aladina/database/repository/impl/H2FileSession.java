@@ -0,0 +1,53 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.MyFile;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Сеанс работы с таблицей во встроенной базе данных H2.
+ * База данных работает в том же процессе, поэтому файлы заносятся и удаляются пакетами обычных запросов.
+ */
+class H2FileSession extends JdbcFileSession {
+    /** Запрос удаления по пути. */
+    private static final String DELETE_BY_PATH_QUERY = "DELETE FROM " + MyFile.TABLE_NAME + " WHERE filePath = ?";
+
+    /**
+     * Конструктор для {@link H2FileSession}.
+     *
+     * @param connection соединение с базой данных (закрывается вместе с сеансом)
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    H2FileSession(Connection connection, int commitChunkSize) throws SQLException {
+        super(connection, commitChunkSize);
+    }
+
+    @Override
+    void writeAll(Collection<MyFile> files) throws SQLException {
+        insertAll(files);
+    }
+
+    @Override
+    void writeChunks(Collection<FileChunk> chunks) throws SQLException {
+        insertChunks(chunks);
+    }
+
+    @Override
+    long deleteAll(Collection<String> filePaths) throws SQLException {
+        var statement = prepare(DELETE_BY_PATH_QUERY);
+        for (String filePath : filePaths) {
+            statement.setString(1, filePath);
+            statement.addBatch();
+        }
+        long rows = 0;
+        for (int count : statement.executeBatch()) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+}
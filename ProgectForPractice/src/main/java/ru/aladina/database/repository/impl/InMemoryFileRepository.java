@@ -0,0 +1,809 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.ChunkedFile;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.FileSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Реализация репозитория файлов, хранящая таблицу в памяти процесса.
+ * Каждый столбец таблицы хранится отдельным массивом, хэш-суммы - в виде байт подряд в одном массиве,
+ * а поиск по хэш-сумме и идентификатору выполняется через хэш-таблицы {@link DigestIndex}.
+ * Удалённые строки только отмечаются и пропускаются при чтении; место освобождается уплотнением таблицы,
+ * когда отмеченных строк становится больше, чем оставшихся.
+ * (Используется для разовых запусков без сервера базы данных)
+ */
+public class InMemoryFileRepository implements FileRepository {
+    /** Значение, означающее отсутствие строки. */
+    private static final int NO_ROW = DigestIndex.ABSENT;
+    /** Количество файлов в одной пачке при выгрузке таблицы в другой репозиторий. */
+    private static final int DUMP_BATCH_SIZE = 1000;
+    /** Наименьшее количество удалённых строк, при котором таблица уплотняется. */
+    private static final int MIN_COMPACTION_ROWS = 1024;
+    /** Идентификатор файла в файловой системе Unix (устройство в шестнадцатеричном виде и номер индексного узла). */
+    private static final Pattern UNIX_FILE_KEY = Pattern.compile("\\(dev=([0-9a-f]{1,16}),ino=(-?[0-9]{1,19})\\)");
+    /** Вид идентификатора файла: отсутствует. */
+    private static final byte NO_FILE_KEY = 0;
+    /** Вид идентификатора файла: устройство и индексный узел Unix. */
+    private static final byte UNIX_FILE_KEY_KIND = 1;
+    /** Вид идентификатора файла: другой (хранится строкой в {@link #otherFileKeys}). */
+    private static final byte OTHER_FILE_KEY = 2;
+    /** Размер ключа индекса хэш-сумм: хэш-сумма, номер алгоритма и длина хэш-суммы. */
+    private static final int HASH_SUM_KEY_SIZE = DigestIndex.KEY_SIZE + 2;
+    /** Размер ключа индекса идентификаторов. */
+    private static final int ID_KEY_SIZE = 16;
+    /** Количество строк таблицы (вместе с удалёнными). */
+    private int rowCount;
+    /** Количество удалённых строк. */
+    private int deletedCount;
+    /** Отметки удалённых строк. */
+    private boolean[] deletedRows;
+    /** Старшие биты идентификаторов. */
+    private long[] idMostBits;
+    /** Младшие биты идентификаторов. */
+    private long[] idLeastBits;
+    /** Пути к файлам. */
+    private String[] filePaths;
+    /** Размеры файлов. */
+    private long[] sizes;
+    /** Виды идентификаторов файлов в файловой системе. */
+    private byte[] fileKeyKinds;
+    /** Номера устройств из идентификаторов файлов Unix. */
+    private long[] fileKeyDevices;
+    /** Номера индексных узлов из идентификаторов файлов Unix. */
+    private long[] fileKeyInodes;
+    /** Идентификаторы файлов другого вида по номерам строк. */
+    private final Map<Integer, String> otherFileKeys = new HashMap<>();
+    /**
+     * Время последнего изменения файлов (в миллисекундах).
+     * (Дата и время в текстовом виде не хранятся, а получаются из него, как и при чтении из базы данных)
+     */
+    private long[] modifiedMillis;
+    /** Хэш-суммы файлов ({@link DigestIndex#KEY_SIZE} байт на строку). */
+    private byte[] hashSums;
+    /** Частичные хэш-суммы файлов ({@link DigestIndex#KEY_SIZE} байт на строку). */
+    private byte[] partialHashSums;
+    /** Номера алгоритмов, которыми вычислены хэш-суммы, в {@link #hashAlgorithmNames} (0 - алгоритм не задан). */
+    private byte[] hashAlgorithmNumbers;
+    /** Названия алгоритмов хэш-сумм (номер алгоритма на единицу больше индекса). */
+    private final List<String> hashAlgorithmNames = new ArrayList<>();
+    /** Длины хэш-сумм в байтах (0 - файл отмечен как уникальный). */
+    private byte[] hashSumLengths;
+    /** Длины частичных хэш-сумм в байтах (0 - частичная хэш-сумма не вычислялась). */
+    private byte[] partialHashSumLengths;
+    /** Номера строк исходных файлов. */
+    private int[] motherRows;
+    /** Номер следующей строки с той же хэш-суммой. */
+    private int[] nextSameHashSumRows;
+    /** Номер следующей строки с тем же путём. */
+    private int[] nextSamePathRows;
+    /**
+     * Первая строка для каждой пары (алгоритм, хэш-сумма).
+     * (Как и в базе данных, группы дубликатов разделяются по алгоритму: хэш-суммы разных алгоритмов
+     * не сравниваются, даже если совпадают их байты)
+     */
+    private final DigestIndex rowsByHashSum = new DigestIndex(HASH_SUM_KEY_SIZE);
+    /** Строка для каждого идентификатора. */
+    private final DigestIndex rowsById = new DigestIndex(ID_KEY_SIZE);
+    /** Последняя добавленная строка для каждого пути. */
+    private final Map<String, Integer> rowsByPath = new HashMap<>();
+    /**
+     * Блоки файлов. (Не зависят от строк таблицы: блоки удалённых файлов пропускаются при чтении.
+     * Список защищён собственной блокировкой, чтобы блоки можно было добавлять во время чтения таблицы)
+     */
+    private final List<FileChunk> chunks = new ArrayList<>();
+
+    /**
+     * Конструктор для {@link InMemoryFileRepository}.
+     */
+    public InMemoryFileRepository() {
+        initTable();
+    }
+
+    /**
+     * Инициализация пустой таблицы.
+     */
+    @Override
+    public synchronized void initTable() {
+        rowCount = 0;
+        deletedCount = 0;
+        deletedRows = new boolean[16];
+        idMostBits = new long[16];
+        idLeastBits = new long[16];
+        filePaths = new String[16];
+        sizes = new long[16];
+        fileKeyKinds = new byte[16];
+        fileKeyDevices = new long[16];
+        fileKeyInodes = new long[16];
+        otherFileKeys.clear();
+        modifiedMillis = new long[16];
+        hashSums = new byte[16 * DigestIndex.KEY_SIZE];
+        partialHashSums = new byte[16 * DigestIndex.KEY_SIZE];
+        hashAlgorithmNumbers = new byte[16];
+        hashSumLengths = new byte[16];
+        partialHashSumLengths = new byte[16];
+        motherRows = new int[16];
+        nextSameHashSumRows = new int[16];
+        nextSamePathRows = new int[16];
+        rowsByHashSum.clear();
+        rowsById.clear();
+        rowsByPath.clear();
+    }
+
+    /**
+     * Создаёт новую запись и возвращает информацию о ней в виде записи {@link FileRecord}.
+     *
+     * @param file файл, информацию о котором нужно внести в таблицу
+     *
+     * @return файл, внесённый в таблицу
+     */
+    @Override
+    public synchronized FileRecord create(MyFile file) {
+        createAll(Collections.singletonList(file));
+        return toRecord(rowCount - 1);
+    }
+
+    /**
+     * Заносит в таблицу сразу несколько файлов.
+     * Идентификаторы записей генерируются заранее и присваиваются переданным файлам.
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     */
+    @Override
+    public synchronized void createAll(Collection<MyFile> files) {
+        for (MyFile file : files) {
+            if (file.getId() == null) {
+                file.setId(UUID.randomUUID());
+            }
+            ensureCapacity(rowCount + 1);
+            int row = rowCount++;
+            idMostBits[row] = file.getId().getMostSignificantBits();
+            idLeastBits[row] = file.getId().getLeastSignificantBits();
+            filePaths[row] = file.getFilePath();
+            sizes[row] = file.getSize() == null ? 0 : file.getSize();
+            storeFileKey(row, file.getFileKey());
+            modifiedMillis[row] = file.getModifiedMillis();
+            hashSumLengths[row] = storeHex(hashSums, row, file.isUnique() ? null : file.getHashSum());
+            partialHashSumLengths[row] = storeHex(partialHashSums, row, file.getPartialHashSum());
+            hashAlgorithmNumbers[row] = hashAlgorithmNumber(file.getHashAlgorithm());
+            motherRows[row] = file.getMotherID() == null ? NO_ROW : findRow(UUID.fromString(file.getMotherID()));
+            deletedRows[row] = false;
+            indexRow(row);
+        }
+    }
+
+    /**
+     * Заносит строку в индексы по идентификатору, хэш-сумме и пути.
+     *
+     * @param row номер строки
+     */
+    private void indexRow(int row) {
+        nextSameHashSumRows[row] = NO_ROW;
+        rowsById.put(toKey(new UUID(idMostBits[row], idLeastBits[row])), row);
+        if (hashSumLengths[row] > 0) {
+            int first = rowsByHashSum.putIfAbsent(hashSumKey(row), row);
+            if (first != NO_ROW) {
+                nextSameHashSumRows[row] = nextSameHashSumRows[first];
+                nextSameHashSumRows[first] = row;
+            }
+        }
+        Integer samePath = rowsByPath.put(filePaths[row], row);
+        nextSamePathRows[row] = samePath == null ? NO_ROW : samePath;
+    }
+
+    /**
+     * Находит неудалённую строку по идентификатору.
+     *
+     * @param id идентификатор
+     *
+     * @return номер строки или {@link #NO_ROW}
+     */
+    private int findRow(UUID id) {
+        int row = rowsById.get(toKey(id));
+        return row == NO_ROW || deletedRows[row] ? NO_ROW : row;
+    }
+
+    /**
+     * Формирует список всех записей {@link FileRecord}, хранящихся в таблице.
+     *
+     * @return список всех записей в таблице
+     */
+    @Override
+    public synchronized List<FileRecord> findAll() {
+        List<FileRecord> files = new ArrayList<>(rowCount - deletedCount);
+        for (int row = 0; row < rowCount; row++) {
+            if (!deletedRows[row]) {
+                files.add(toRecord(row));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Построчно передаёт обработчику все записи таблицы.
+     *
+     * @param consumer обработчик, вызываемый для каждой записи
+     */
+    @Override
+    public synchronized void forEachFile(Consumer<FileRecord> consumer) {
+        for (int row = 0; row < rowCount; row++) {
+            if (!deletedRows[row]) {
+                consumer.accept(toRecord(row));
+            }
+        }
+    }
+
+    /**
+     * Передаёт обработчику все дублирующиеся файлы вместе с путями к исходным (в порядке путей).
+     *
+     * @param consumer обработчик, вызываемый для каждого дублирующегося файла
+     */
+    @Override
+    public synchronized void forEachDuplicate(Consumer<DuplicateFile> consumer) {
+        List<Integer> duplicateRows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            // Как и при соединении таблиц в базе данных, дубликаты удалённых файлов пропускаются
+            if (!deletedRows[row] && motherRows[row] != NO_ROW && motherRows[row] != row
+                    && !deletedRows[motherRows[row]]) {
+                duplicateRows.add(row);
+            }
+        }
+        duplicateRows.sort(Comparator.comparing(row -> filePaths[row]));
+        for (int row : duplicateRows) {
+            int motherRow = motherRows[row];
+            consumer.accept(new DuplicateFile(filePaths[row], filePaths[motherRow],
+                    new UUID(idMostBits[motherRow], idLeastBits[motherRow]).toString(),
+                    sizes[row], hashAlgorithmName(row)));
+        }
+    }
+
+    /**
+     * Передаёт обработчику итоги разбиения файлов на блоки (в порядке путей).
+     *
+     * @param consumer обработчик, вызываемый для каждого разбитого на блоки файла
+     */
+    @Override
+    public synchronized void forEachChunkedFile(Consumer<ChunkedFile> consumer) {
+        List<FileChunk> allChunks;
+        synchronized (chunks) {
+            allChunks = new ArrayList<>(chunks);
+        }
+        List<FileChunk> existingChunks = new ArrayList<>(allChunks.size());
+        List<String> chunkPaths = new ArrayList<>(allChunks.size());
+        for (FileChunk chunk : allChunks) {
+            int row = findRow(UUID.fromString(chunk.getFileId()));
+            if (row != NO_ROW) {
+                existingChunks.add(chunk);
+                chunkPaths.add(filePaths[row]);
+            }
+        }
+        List<Integer> order = new ArrayList<>(existingChunks.size());
+        for (int i = 0; i < existingChunks.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.<Integer, String>comparing(chunkPaths::get)
+                .thenComparingLong(i -> existingChunks.get(i).getOffset()));
+
+        Set<ByteBuffer> seenDigests = new HashSet<>();
+        String filePath = null;
+        long chunkedSize = 0;
+        long sharedSize = 0;
+        for (int i : order) {
+            FileChunk chunk = existingChunks.get(i);
+            if (!chunkPaths.get(i).equals(filePath)) {
+                if (filePath != null) {
+                    consumer.accept(new ChunkedFile(filePath, chunkedSize, sharedSize));
+                }
+                filePath = chunkPaths.get(i);
+                chunkedSize = 0;
+                sharedSize = 0;
+            }
+            chunkedSize += chunk.getSize();
+            if (!seenDigests.add(ByteBuffer.wrap(chunk.getDigest()))) {
+                sharedSize += chunk.getSize();
+            }
+        }
+        if (filePath != null) {
+            consumer.accept(new ChunkedFile(filePath, chunkedSize, sharedSize));
+        }
+    }
+
+    /**
+     * Находит запись по заданному id.
+     *
+     * @param id идентификатор файла
+     *
+     * @return найденная запись или null, если такой записи нет
+     */
+    @Override
+    public synchronized FileRecord findById(String id) {
+        int row = findRow(UUID.fromString(id));
+        return row == NO_ROW ? null : toRecord(row);
+    }
+
+    /**
+     * Формирует список всех записей {@link FileRecord} с заданной хэш-суммой.
+     *
+     * @param hashSum хэш-сумма
+     *
+     * @return список записей с заданной хэш-суммой
+     */
+    @Override
+    public synchronized List<FileRecord> findByHashSum(String hashSum) {
+        List<FileRecord> files = new ArrayList<>();
+        if (MyFile.UNIQUE_HASH_SUM.equals(hashSum)) {
+            for (int row = 0; row < rowCount; row++) {
+                if (!deletedRows[row] && hashSumLengths[row] == 0) {
+                    files.add(toRecord(row));
+                }
+            }
+            return files;
+        }
+        // Алгоритм не задан, поэтому просматриваются группы всех алгоритмов
+        byte[] digest = parseHex(hashSum);
+        for (int number = 0; number <= hashAlgorithmNames.size(); number++) {
+            for (int row = rowsByHashSum.get(hashSumKey((byte) number, digest)); row != NO_ROW;
+                 row = nextSameHashSumRows[row]) {
+                if (!deletedRows[row]) {
+                    files.add(toRecord(row));
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Обновляет идентификатор исходного файла для одной записи.
+     *
+     * @param id идентификатор файла
+     * @param motherID идентификатор исходного файла
+     */
+    @Override
+    public synchronized void updateFilesMothersIdInfo(String id, String motherID) {
+        int row = findRow(UUID.fromString(id));
+        if (row != NO_ROW) {
+            motherRows[row] = findRow(UUID.fromString(motherID));
+        }
+    }
+
+    /**
+     * Назначает исходные файлы для всех записей таблицы за один проход.
+     * Исходным в каждой группе файлов с одинаковыми алгоритмом и хэш-суммой считается файл с наименьшим путём,
+     * файлы с отметкой {@link MyFile#UNIQUE_HASH_SUM} являются исходными для самих себя.
+     */
+    @Override
+    public synchronized void assignMotherIds() {
+        Arrays.fill(motherRows, 0, rowCount, NO_ROW);
+        for (int row = 0; row < rowCount; row++) {
+            if (deletedRows[row] || motherRows[row] != NO_ROW) {
+                continue;
+            }
+            // Группа обходится с первой строки хэш-суммы: она может быть удалена, но цепочка начинается с неё
+            int first = hashSumLengths[row] == 0 ? row : rowsByHashSum.get(hashSumKey(row));
+            int mother = row;
+            for (int next = first; next != NO_ROW; next = nextSameHashSumRows[next]) {
+                if (!deletedRows[next] && filePaths[next].compareTo(filePaths[mother]) < 0) {
+                    mother = next;
+                }
+            }
+            for (int next = first; next != NO_ROW; next = nextSameHashSumRows[next]) {
+                motherRows[next] = mother;
+            }
+        }
+    }
+
+    /**
+     * Подсчитывает количество и суммарный размер всех файлов и дубликатов таблицы.
+     *
+     * @return сводка по таблице
+     */
+    @Override
+    public synchronized CatalogSummary summarize() {
+        long totalSize = 0;
+        long duplicateCount = 0;
+        long duplicateSize = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (deletedRows[row]) {
+                continue;
+            }
+            totalSize += sizes[row];
+            if (motherRows[row] != NO_ROW && motherRows[row] != row) {
+                duplicateCount++;
+                duplicateSize += sizes[row];
+            }
+        }
+        return new CatalogSummary(rowCount - deletedCount, totalSize, duplicateCount, duplicateSize);
+    }
+
+    /**
+     * Очищает всё содержимое таблицы.
+     *
+     * @param tableName название таблицы
+     */
+    @Override
+    public void deleteTableInfo(String tableName) {
+        if (FileChunk.TABLE_NAME.equals(tableName)) {
+            synchronized (chunks) {
+                chunks.clear();
+            }
+        } else {
+            initTable();
+        }
+    }
+
+    /**
+     * Заносит в таблицу блоков сразу несколько блоков.
+     *
+     * @param newChunks блоки файлов
+     */
+    private void createChunks(Collection<FileChunk> newChunks) {
+        synchronized (chunks) {
+            chunks.addAll(newChunks);
+        }
+    }
+
+    /**
+     * Выгружает содержимое таблицы в другой репозиторий (например, в базу данных),
+     * предварительно очищая его.
+     *
+     * @param target репозиторий, в который выгружается таблица
+     */
+    public synchronized void dumpTo(FileRepository target) {
+        target.deleteTableInfo(MyFile.TABLE_NAME);
+        try (var session = target.openSession()) {
+            List<MyFile> batch = new ArrayList<>(DUMP_BATCH_SIZE);
+            for (int row = 0; row < rowCount; row++) {
+                if (deletedRows[row]) {
+                    continue;
+                }
+                batch.add(toMyFile(toRecord(row)));
+                if (batch.size() == DUMP_BATCH_SIZE) {
+                    session.createAll(batch);
+                    batch.clear();
+                }
+            }
+            session.createAll(batch);
+            session.commit();
+        }
+    }
+
+    /**
+     * Открывает сеанс, операции которого сразу выполняются над таблицей в памяти.
+     * (Отмена изменений не поддерживается: {@link FileSession#commit()} и закрытие сеанса ничего не делают)
+     *
+     * @return сеанс работы с таблицей
+     */
+    @Override
+    public FileSession openSession() {
+        return new FileSession() {
+            @Override
+            public void createAll(Collection<MyFile> files) {
+                InMemoryFileRepository.this.createAll(files);
+            }
+
+            @Override
+            public void createChunks(Collection<FileChunk> chunks) {
+                InMemoryFileRepository.this.createChunks(chunks);
+            }
+
+            @Override
+            public FileRecord findById(String id) {
+                return InMemoryFileRepository.this.findById(id);
+            }
+
+            @Override
+            public List<FileRecord> findByHashSum(String hashSum) {
+                return InMemoryFileRepository.this.findByHashSum(hashSum);
+            }
+
+            @Override
+            public void updateFilesMothersIdInfo(String id, String motherID) {
+                InMemoryFileRepository.this.updateFilesMothersIdInfo(id, motherID);
+            }
+
+            @Override
+            public void deleteByPaths(Collection<String> filePaths) {
+                InMemoryFileRepository.this.deleteByPaths(filePaths);
+            }
+
+            @Override
+            public void commit() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Удаляет записи о файлах с заданными путями.
+     * Строки находятся по индексу путей и только отмечаются удалёнными, поэтому время удаления
+     * зависит от количества путей, а не от размера таблицы (см. {@link #compact()}).
+     *
+     * @param deletedFilePaths пути к файлам
+     */
+    @Override
+    public synchronized void deleteByPaths(Collection<String> deletedFilePaths) {
+        for (String filePath : deletedFilePaths) {
+            Integer first = rowsByPath.remove(filePath);
+            for (int row = first == null ? NO_ROW : first; row != NO_ROW; row = nextSamePathRows[row]) {
+                if (!deletedRows[row]) {
+                    deletedRows[row] = true;
+                    deletedCount++;
+                }
+            }
+        }
+        if (deletedCount >= MIN_COMPACTION_ROWS && deletedCount > rowCount - deletedCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Уплотняет таблицу: сдвигает оставшиеся строки на место удалённых (порядок строк сохраняется)
+     * и заново строит индексы. Ссылки на удалённые исходные файлы сбрасываются.
+     */
+    private void compact() {
+        int[] newRows = new int[rowCount];
+        int liveCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            newRows[row] = deletedRows[row] ? NO_ROW : liveCount++;
+        }
+        Map<Integer, String> movedFileKeys = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            int target = newRows[row];
+            if (target == NO_ROW) {
+                continue;
+            }
+            idMostBits[target] = idMostBits[row];
+            idLeastBits[target] = idLeastBits[row];
+            filePaths[target] = filePaths[row];
+            sizes[target] = sizes[row];
+            fileKeyKinds[target] = fileKeyKinds[row];
+            fileKeyDevices[target] = fileKeyDevices[row];
+            fileKeyInodes[target] = fileKeyInodes[row];
+            if (fileKeyKinds[row] == OTHER_FILE_KEY) {
+                movedFileKeys.put(target, otherFileKeys.get(row));
+            }
+            modifiedMillis[target] = modifiedMillis[row];
+            System.arraycopy(hashSums, row * DigestIndex.KEY_SIZE, hashSums, target * DigestIndex.KEY_SIZE,
+                    DigestIndex.KEY_SIZE);
+            System.arraycopy(partialHashSums, row * DigestIndex.KEY_SIZE, partialHashSums,
+                    target * DigestIndex.KEY_SIZE, DigestIndex.KEY_SIZE);
+            hashAlgorithmNumbers[target] = hashAlgorithmNumbers[row];
+            hashSumLengths[target] = hashSumLengths[row];
+            partialHashSumLengths[target] = partialHashSumLengths[row];
+            motherRows[target] = motherRows[row] == NO_ROW ? NO_ROW : newRows[motherRows[row]];
+            deletedRows[target] = false;
+        }
+        Arrays.fill(filePaths, liveCount, rowCount, null);
+        otherFileKeys.clear();
+        otherFileKeys.putAll(movedFileKeys);
+        rowCount = liveCount;
+        deletedCount = 0;
+        rowsByHashSum.clear();
+        rowsById.clear();
+        rowsByPath.clear();
+        for (int row = 0; row < rowCount; row++) {
+            indexRow(row);
+        }
+    }
+
+    /**
+     * Создаёт файл {@link MyFile} с теми же значениями, что и запись.
+     */
+    private static MyFile toMyFile(FileRecord record) {
+        var file = new MyFile(record.getId(), record.getTitle(), record.getFilePath(), record.getSize(),
+                record.getDateTime(), record.getHashSum(), record.getMotherID());
+        file.setPartialHashSum(record.getPartialHashSum());
+        file.setHashAlgorithm(record.getHashAlgorithm());
+        file.setFileState(record.getFileKey(), record.getModifiedMillis());
+        return file;
+    }
+
+    /**
+     * Создаёт запись {@link FileRecord} для строки таблицы.
+     */
+    private FileRecord toRecord(int row) {
+        String hashSum = hashSumLengths[row] == 0
+                ? MyFile.UNIQUE_HASH_SUM
+                : toHex(hashSums, row, hashSumLengths[row]);
+        String partialHashSum = partialHashSumLengths[row] == 0
+                ? null
+                : toHex(partialHashSums, row, partialHashSumLengths[row]);
+        String motherID = motherRows[row] == NO_ROW
+                ? null
+                : new UUID(idMostBits[motherRows[row]], idLeastBits[motherRows[row]]).toString();
+        String dateTime = modifiedMillis[row] == MyFile.UNKNOWN_MODIFIED_MILLIS
+                ? null
+                : new Date(modifiedMillis[row]).toString();
+        String filePath = filePaths[row];
+        return new FileRecord(new UUID(idMostBits[row], idLeastBits[row]),
+                filePath.substring(filePath.lastIndexOf('/') + 1), filePath, sizes[row],
+                dateTime, hashSum, partialHashSum, hashAlgorithmName(row), motherID,
+                fileKey(row), modifiedMillis[row]);
+    }
+
+    /**
+     * Записывает идентификатор файла в файловой системе: идентификатор Unix - двумя числами, другой - строкой.
+     */
+    private void storeFileKey(int row, String fileKey) {
+        otherFileKeys.remove(row);
+        fileKeyKinds[row] = NO_FILE_KEY;
+        if (fileKey == null) {
+            return;
+        }
+        Matcher matcher = UNIX_FILE_KEY.matcher(fileKey);
+        if (matcher.matches()) {
+            fileKeyDevices[row] = Long.parseUnsignedLong(matcher.group(1), 16);
+            fileKeyInodes[row] = Long.parseLong(matcher.group(2));
+            // Числа хранятся только тогда, когда по ним восстанавливается та же строка
+            if (fileKey(UNIX_FILE_KEY_KIND, fileKeyDevices[row], fileKeyInodes[row]).equals(fileKey)) {
+                fileKeyKinds[row] = UNIX_FILE_KEY_KIND;
+                return;
+            }
+        }
+        fileKeyKinds[row] = OTHER_FILE_KEY;
+        otherFileKeys.put(row, fileKey);
+    }
+
+    /**
+     * Восстанавливает идентификатор файла в файловой системе для строки таблицы.
+     */
+    private String fileKey(int row) {
+        return fileKeyKinds[row] == OTHER_FILE_KEY
+                ? otherFileKeys.get(row)
+                : fileKey(fileKeyKinds[row], fileKeyDevices[row], fileKeyInodes[row]);
+    }
+
+    /**
+     * Собирает идентификатор файла Unix в том же виде, что и {@code BasicFileAttributes.fileKey().toString()}.
+     */
+    private static String fileKey(byte kind, long device, long inode) {
+        return kind == NO_FILE_KEY ? null : "(dev=" + Long.toHexString(device) + ",ino=" + inode + ")";
+    }
+
+    /**
+     * Возвращает номер алгоритма хэш-суммы, добавляя название в список при первом появлении.
+     *
+     * @return номер алгоритма (0 - алгоритм не задан)
+     */
+    private byte hashAlgorithmNumber(String hashAlgorithm) {
+        if (hashAlgorithm == null) {
+            return 0;
+        }
+        int index = hashAlgorithmNames.indexOf(hashAlgorithm);
+        if (index < 0) {
+            if (hashAlgorithmNames.size() == Byte.MAX_VALUE) {
+                throw new IllegalStateException("Слишком много алгоритмов хэш-сумм: " + hashAlgorithm);
+            }
+            hashAlgorithmNames.add(hashAlgorithm);
+            index = hashAlgorithmNames.size() - 1;
+        }
+        return (byte) (index + 1);
+    }
+
+    /**
+     * Возвращает название алгоритма хэш-суммы строки таблицы (или null).
+     */
+    private String hashAlgorithmName(int row) {
+        return hashAlgorithmNumbers[row] == 0 ? null : hashAlgorithmNames.get(hashAlgorithmNumbers[row] - 1);
+    }
+
+    /**
+     * Увеличивает массивы столбцов так, чтобы в них поместилось заданное количество строк.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= sizes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, sizes.length * 2);
+        deletedRows = Arrays.copyOf(deletedRows, newCapacity);
+        idMostBits = Arrays.copyOf(idMostBits, newCapacity);
+        idLeastBits = Arrays.copyOf(idLeastBits, newCapacity);
+        filePaths = Arrays.copyOf(filePaths, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        fileKeyKinds = Arrays.copyOf(fileKeyKinds, newCapacity);
+        fileKeyDevices = Arrays.copyOf(fileKeyDevices, newCapacity);
+        fileKeyInodes = Arrays.copyOf(fileKeyInodes, newCapacity);
+        modifiedMillis = Arrays.copyOf(modifiedMillis, newCapacity);
+        hashSums = Arrays.copyOf(hashSums, newCapacity * DigestIndex.KEY_SIZE);
+        partialHashSums = Arrays.copyOf(partialHashSums, newCapacity * DigestIndex.KEY_SIZE);
+        hashAlgorithmNumbers = Arrays.copyOf(hashAlgorithmNumbers, newCapacity);
+        hashSumLengths = Arrays.copyOf(hashSumLengths, newCapacity);
+        partialHashSumLengths = Arrays.copyOf(partialHashSumLengths, newCapacity);
+        motherRows = Arrays.copyOf(motherRows, newCapacity);
+        nextSameHashSumRows = Arrays.copyOf(nextSameHashSumRows, newCapacity);
+        nextSamePathRows = Arrays.copyOf(nextSamePathRows, newCapacity);
+    }
+
+    /**
+     * Записывает шестнадцатеричную хэш-сумму в массив хэш-сумм в виде байт.
+     *
+     * @return длина хэш-суммы в байтах (0, если хэш-суммы нет)
+     */
+    private static byte storeHex(byte[] target, int row, String hex) {
+        if (hex == null) {
+            return 0;
+        }
+        byte[] bytes = parseHex(hex);
+        System.arraycopy(bytes, 0, target, row * DigestIndex.KEY_SIZE, bytes.length);
+        return (byte) bytes.length;
+    }
+
+    /**
+     * Копирует хэш-сумму строки из массива хэш-сумм.
+     */
+    private static byte[] digest(byte[] source, int row, int length) {
+        return Arrays.copyOfRange(source, row * DigestIndex.KEY_SIZE, row * DigestIndex.KEY_SIZE + length);
+    }
+
+    /**
+     * Составляет ключ индекса хэш-сумм для строки таблицы.
+     */
+    private byte[] hashSumKey(int row) {
+        return hashSumKey(hashAlgorithmNumbers[row], digest(hashSums, row, hashSumLengths[row]));
+    }
+
+    /**
+     * Составляет ключ индекса хэш-сумм: хэш-сумма, дополненная нулями, номер алгоритма и длина хэш-суммы.
+     * (Длина отделяет хэш-сумму от более длинной хэш-суммы, оканчивающейся нулями)
+     */
+    private static byte[] hashSumKey(byte hashAlgorithmNumber, byte[] digest) {
+        byte[] key = Arrays.copyOf(digest, HASH_SUM_KEY_SIZE);
+        key[DigestIndex.KEY_SIZE] = hashAlgorithmNumber;
+        key[DigestIndex.KEY_SIZE + 1] = (byte) digest.length;
+        return key;
+    }
+
+    /**
+     * Переводит хэш-сумму строки в шестнадцатеричную строку.
+     */
+    private static String toHex(byte[] source, int row, int length) {
+        var hex = new StringBuilder(length * 2);
+        for (int i = row * DigestIndex.KEY_SIZE; i < row * DigestIndex.KEY_SIZE + length; i++) {
+            hex.append(Character.forDigit((source[i] >> 4) & 0x0f, 16)).append(Character.forDigit(source[i] & 0x0f, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Переводит шестнадцатеричную строку в массив байт (не длиннее {@link DigestIndex#KEY_SIZE}).
+     */
+    private static byte[] parseHex(String hex) {
+        byte[] bytes = FileHasher.fromHex(hex);
+        return bytes.length > DigestIndex.KEY_SIZE ? Arrays.copyOf(bytes, DigestIndex.KEY_SIZE) : bytes;
+    }
+
+    /**
+     * Переводит идентификатор в ключ для {@link DigestIndex}.
+     */
+    private static byte[] toKey(UUID id) {
+        return ByteBuffer.allocate(ID_KEY_SIZE)
+                .putLong(id.getLeastSignificantBits())
+                .putLong(id.getMostSignificantBits())
+                .array();
+    }
+}
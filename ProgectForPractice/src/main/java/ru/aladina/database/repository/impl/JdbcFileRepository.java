@@ -0,0 +1,435 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.ChunkedFile;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.property.PropertyContainer;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.FileSession;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Общая часть репозиториев задач, работающих через JDBC: запросы чтения, сводки и назначения исходных файлов,
+ * а также перевод строк таблицы в записи {@link FileRecord}.
+ * (Схема таблицы, назначение исходных файлов одним запросом и сеансы записи зависят от базы данных
+ * и реализуются наследниками)
+ */
+abstract class JdbcFileRepository implements FileRepository {
+    /** Столбцы таблицы в порядке их заполнения при вставке. */
+    static final String INSERT_COLUMNS =
+            "id, title, filePath, size, dateTime_of_creation, hashSum, motherID, partialHashSum, fileKey, hashAlgorithm";
+    /** Столбцы таблицы, из которых собирается запись {@link FileRecord}. */
+    static final String SELECT_COLUMNS =
+            "id, title, filePath, size, dateTime_of_creation, hashSum, partialHashSum, motherID, fileKey, hashAlgorithm";
+    /** Запрос вставки одной записи. */
+    static final String INSERT_QUERY = "INSERT INTO " + MyFile.TABLE_NAME
+            + " (" + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Подзапрос исходных файлов: исходным в каждой группе файлов с одинаковой хэш-суммой считается файл
+     * с наименьшим путём, файлы с отметкой {@link MyFile#UNIQUE_HASH_SUM} являются исходными для самих себя.
+     */
+    static final String MOTHER_IDS_QUERY = "SELECT id, CASE WHEN hashSum IS NULL THEN id "
+            + "ELSE first_value(id) OVER (PARTITION BY hashAlgorithm, hashSum ORDER BY filePath, id) END AS motherID "
+            + "FROM " + MyFile.TABLE_NAME;
+    /** Запрос всех дублирующихся файлов вместе с путями к исходным. */
+    private static final String DUPLICATES_QUERY = "SELECT d.filePath, m.filePath, d.motherID, d.size, d.hashAlgorithm"
+            + " FROM " + MyFile.TABLE_NAME + " d JOIN " + MyFile.TABLE_NAME + " m ON m.id = d.motherID"
+            + " WHERE d.id <> d.motherID ORDER BY d.filePath";
+    /**
+     * Запрос итогов разбиения файлов на блоки: для каждого файла - суммарный размер его блоков
+     * и размер блоков, уже встречавшихся раньше (в файле с меньшим путём или ближе к началу того же файла).
+     */
+    private static final String CHUNKED_FILES_QUERY = "SELECT filePath, sum(chunkSize), "
+            + "sum(CASE WHEN occurrence > 1 THEN chunkSize ELSE 0 END) FROM ("
+            + "SELECT f.filePath, c.chunkSize, row_number() OVER (PARTITION BY c.digest ORDER BY f.filePath, c.chunkOffset)"
+            + " AS occurrence FROM " + FileChunk.TABLE_NAME + " c JOIN " + MyFile.TABLE_NAME + " f ON f.id = c.fileId"
+            + ") AS o GROUP BY filePath ORDER BY filePath";
+    /** Запрос сводки по таблице. */
+    private static final String SUMMARY_QUERY = "SELECT count(*), coalesce(sum(size), 0),"
+            + " count(*) FILTER (WHERE id <> motherID), coalesce(sum(size) FILTER (WHERE id <> motherID), 0)"
+            + " FROM " + MyFile.TABLE_NAME;
+    /** Источник данных. */
+    final DataSource dataSource;
+    /** Количество строк, получаемых с сервера за один раз при построчном чтении. */
+    private final int fetchSize = PropertyContainer.getIntProperty("database.fetch.size", 1000);
+    /** Количество изменённых строк, после которого сеанс подтверждает транзакцию (0 - только по commit). */
+    private final int commitChunkSize = PropertyContainer.getIntProperty("database.commit.rows", 0);
+
+    /**
+     * Конструктор для {@link JdbcFileRepository}.
+     * (Таблица создаётся наследником после того, как он будет полностью создан)
+     *
+     * @param dataSource источник данных
+     */
+    JdbcFileRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Открывает сеанс работы с таблицей для конкретной базы данных.
+     *
+     * @param connection соединение с базой данных (закрывается вместе с сеансом)
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @return сеанс работы с таблицей
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    abstract FileSession newSession(Connection connection, int commitChunkSize) throws SQLException;
+
+    /**
+     * Возвращает запрос, назначающий исходные файлы всем записям таблицы (см. {@link #MOTHER_IDS_QUERY}).
+     *
+     * @return текст запроса
+     */
+    abstract String assignMotherIdsQuery();
+
+    /**
+     * Получает соединение из источника данных, учитывая время ожидания в db.connection.wait.
+     *
+     * @return соединение с базой данных
+     *
+     * @throws SQLException ошибка получения соединения
+     */
+    Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        MetricsRegistry.timer("db.connection.wait").recordSince(start);
+        return connection;
+    }
+
+    /**
+     * Создаёт новую запись в таблице и возвращает информацию об этой записи
+     * в виде записи {@link FileRecord}.
+     *
+     * @param file файл, информацию о котором нужно внести в таблицу.
+     *
+     * @return файл, внесённый в таблицу
+     */
+    @Override
+    public FileRecord create(MyFile file) {
+        try (var session = openSession()) {
+            session.createAll(List.of(file));
+            var record = session.findById(file.getId().toString());
+            session.commit();
+            return record;
+        } catch (RuntimeException e) {
+            System.out.println("Возникла ошибка выполнения запроса (создание): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Заносит в таблицу сразу несколько файлов в отдельном сеансе (см. {@link FileSession#createAll}).
+     * Идентификаторы записей генерируются заранее и присваиваются переданным файлам.
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     */
+    @Override
+    public void createAll(Collection<MyFile> files) {
+        try (var session = openSession()) {
+            session.createAll(files);
+            session.commit();
+        } catch (RuntimeException e) {
+            System.out.println("Возникла ошибка выполнения запроса (создание нескольких записей): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Формирует список всех записей {@link FileRecord},
+     * хранящихся в таблице базы данных на момент вызова метода.
+     *
+     * @return список всех объектов в таблице
+     */
+    @Override
+    public List<FileRecord> findAll() {
+        List<FileRecord> files = new ArrayList<>();
+        forEachRow("findAll", "SELECT " + SELECT_COLUMNS + " FROM " + MyFile.TABLE_NAME,
+                resultSet -> files.add(toRecord(resultSet)));
+        return files;
+    }
+
+    /**
+     * Построчно читает все записи таблицы (см. {@link #forEachRow}).
+     *
+     * @param consumer обработчик, вызываемый для каждой записи
+     */
+    @Override
+    public void forEachFile(Consumer<FileRecord> consumer) {
+        forEachRow("forEachFile", "SELECT " + SELECT_COLUMNS + " FROM " + MyFile.TABLE_NAME,
+                resultSet -> consumer.accept(toRecord(resultSet)));
+    }
+
+    /**
+     * Построчно передаёт обработчику все дублирующиеся файлы вместе с путями к исходным.
+     * (Пути к исходным файлам находятся соединением таблицы с самой собой)
+     *
+     * @param consumer обработчик, вызываемый для каждого дублирующегося файла
+     */
+    @Override
+    public void forEachDuplicate(Consumer<DuplicateFile> consumer) {
+        forEachRow("forEachDuplicate", DUPLICATES_QUERY, resultSet ->
+                consumer.accept(new DuplicateFile(resultSet.getString(1), resultSet.getString(2),
+                        resultSet.getString(3), resultSet.getLong(4), resultSet.getString(5))));
+    }
+
+    /**
+     * Построчно передаёт обработчику итоги разбиения файлов на блоки.
+     * (Повторные вхождения блоков находятся оконной функцией на стороне базы данных)
+     *
+     * @param consumer обработчик, вызываемый для каждого разбитого на блоки файла
+     */
+    @Override
+    public void forEachChunkedFile(Consumer<ChunkedFile> consumer) {
+        forEachRow("forEachChunkedFile", CHUNKED_FILES_QUERY, resultSet ->
+                consumer.accept(new ChunkedFile(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3))));
+    }
+
+    /**
+     * Построчно передаёт обработчику строки результата запроса.
+     * Строки получаются частями по database.fetch.size внутри одной транзакции: PostgreSQL использует курсор
+     * на стороне сервера только вне режима автоподтверждения, а H2 сам выгружает большой результат
+     * во временный файл. Поэтому расход памяти не зависит от размера таблицы.
+     *
+     * @param name название запроса в показателях работы
+     * @param query текст запроса
+     * @param handler обработчик строки
+     */
+    private void forEachRow(String name, String query, RowHandler handler) {
+        try (var measurement = MetricsRegistry.database(name);
+             var connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (var statement = connection.createStatement()) {
+                statement.setFetchSize(fetchSize);
+                try (var resultSet = statement.executeQuery(query)) {
+                    long rows = 0;
+                    while (resultSet.next()) {
+                        handler.handle(resultSet);
+                        rows++;
+                    }
+                    measurement.setAmount(rows);
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Находит объект в базе данных по заданному id.
+     *
+     * @param id идентификатор файла
+     *
+     * @return запись из базы данных, найденная по заданному id
+     */
+    @Override
+    public FileRecord findById(String id) {
+        try (var session = openSession()) {
+            return session.findById(id);
+        } catch (RuntimeException e) {
+            System.out.println("Возникла ошибка выполнения запроса (поиск по id): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Формирует список всех записей {@link FileRecord}, которые были найдены
+     * в базе данных по заданной хэш-сумме.
+     *
+     * @param hashSum хэш-сумма
+     *
+     * @return список записей в базе даных, найденных по заданной хэш-сумме
+     */
+    @Override
+    public List<FileRecord> findByHashSum(String hashSum) {
+        try (var session = openSession()) {
+            return session.findByHashSum(hashSum);
+        }
+    }
+
+    /**
+     * Обновляет идентификатор исходного файла у записи.
+     *
+     * @param id идентификатор файла
+     * @param motherID идентификатор исходного файла
+     */
+    @Override
+    public void updateFilesMothersIdInfo(String id, String motherID) {
+        try (var session = openSession()) {
+            session.updateFilesMothersIdInfo(id, motherID);
+            session.commit();
+        }
+    }
+
+    /**
+     * Удаляет записи о файлах с заданными путями.
+     *
+     * @param filePaths пути к файлам
+     */
+    @Override
+    public void deleteByPaths(Collection<String> filePaths) {
+        try (var session = openSession()) {
+            session.deleteByPaths(filePaths);
+            session.commit();
+        }
+    }
+
+    /**
+     * Открывает сеанс работы с таблицей на одном соединении из источника данных.
+     * Размер порции подтверждения берётся из настройки database.commit.rows.
+     *
+     * @return сеанс работы с таблицей
+     */
+    @Override
+    public FileSession openSession() {
+        try {
+            return newSession(getConnection(), commitChunkSize);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Назначает исходные файлы для всех записей таблицы одним запросом (см. {@link #MOTHER_IDS_QUERY}).
+     */
+    @Override
+    public void assignMotherIds() {
+        try (var measurement = MetricsRegistry.database("assignMotherIds");
+             var connection = getConnection();
+             var statement = connection.prepareStatement(assignMotherIdsQuery())) {
+            measurement.setAmount(statement.executeUpdate());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Подсчитывает количество и суммарный размер всех файлов и дубликатов таблицы одним запросом.
+     *
+     * @return сводка по таблице
+     */
+    @Override
+    public CatalogSummary summarize() {
+        try (var measurement = MetricsRegistry.database("summarize");
+             var connection = getConnection();
+             var statement = connection.createStatement();
+             var resultSet = statement.executeQuery(SUMMARY_QUERY)) {
+            resultSet.next();
+            measurement.setAmount(1);
+            return new CatalogSummary(resultSet.getLong(1), resultSet.getLong(2),
+                    resultSet.getLong(3), resultSet.getLong(4));
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Очищает всё содержимое указанной таблицы.
+     *
+     * @param tableName название таблицы
+     */
+    @Override
+    public void deleteTableInfo(String tableName) {
+        try (var measurement = MetricsRegistry.database("deleteTableInfo");
+             var connection = getConnection();
+             var statement = connection.prepareStatement("TRUNCATE TABLE " + tableName)) {
+            measurement.setAmount(statement.executeUpdate());
+        } catch (SQLException e) {
+            System.out.println("Возникла ошибка выполнения запроса (удаление данных из таблицы): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Заполняет параметры запроса вставки значениями файла.
+     *
+     * @param statement запрос вставки
+     * @param id идентификатор записи
+     * @param file файл
+     *
+     * @throws SQLException ошибка заполнения параметров
+     */
+    static void bind(PreparedStatement statement, UUID id, MyFile file) throws SQLException {
+        statement.setObject(1, id);
+        statement.setString(2, file.getTitle());
+        statement.setString(3, file.getFilePath());
+        statement.setObject(4, file.getSize(), Types.BIGINT);
+        statement.setTimestamp(5, file.getModifiedMillis() == MyFile.UNKNOWN_MODIFIED_MILLIS
+                ? null
+                : new Timestamp(file.getModifiedMillis()));
+        statement.setBytes(6, toDigest(file.getHashSum()));
+        statement.setObject(7, file.getMotherID() == null ? null : UUID.fromString(file.getMotherID()), Types.OTHER);
+        statement.setBytes(8, toDigest(file.getPartialHashSum()));
+        statement.setString(9, file.getFileKey());
+        statement.setString(10, file.getHashAlgorithm());
+    }
+
+    /**
+     * Создаёт запись {@link FileRecord} из текущей строки результата запроса.
+     * Значения берутся из таблицы как есть, файл на диске не читается.
+     *
+     * @param resultSet результат запроса
+     *
+     * @return запись о файле
+     *
+     * @throws SQLException ошибка чтения результата запроса
+     */
+    static FileRecord toRecord(ResultSet resultSet) throws SQLException {
+        Timestamp modified = resultSet.getTimestamp("dateTime_of_creation");
+        long modifiedMillis = modified == null ? MyFile.UNKNOWN_MODIFIED_MILLIS : modified.getTime();
+        byte[] hashSum = resultSet.getBytes("hashSum");
+        byte[] partialHashSum = resultSet.getBytes("partialHashSum");
+        UUID motherID = resultSet.getObject("motherID", UUID.class);
+        return new FileRecord(resultSet.getObject("id", UUID.class),
+                resultSet.getString("title"),
+                resultSet.getString("filePath"),
+                resultSet.getLong("size"),
+                modified == null ? null : new Date(modifiedMillis).toString(),
+                hashSum == null ? MyFile.UNIQUE_HASH_SUM : FileHasher.toHex(hashSum),
+                partialHashSum == null ? null : FileHasher.toHex(partialHashSum),
+                resultSet.getString("hashAlgorithm"),
+                motherID == null ? null : motherID.toString(),
+                resultSet.getString("fileKey"),
+                modifiedMillis);
+    }
+
+    /**
+     * Переводит хэш-сумму в значение двоичного столбца. Отметка {@link MyFile#UNIQUE_HASH_SUM}
+     * хранится как NULL.
+     *
+     * @param hashSum шестнадцатеричная хэш-сумма
+     *
+     * @return хэш-сумма в виде байт или null
+     */
+    private static byte[] toDigest(String hashSum) {
+        return hashSum == null || MyFile.UNIQUE_HASH_SUM.equals(hashSum) ? null : FileHasher.fromHex(hashSum);
+    }
+
+    /**
+     * Обработчик одной строки результата запроса.
+     */
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet resultSet) throws SQLException;
+    }
+}
@@ -0,0 +1,304 @@
+package ru.aladina.database.repository.impl;
+
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.FileSession;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Общая часть сеансов работы с таблицей через JDBC: одно соединение, одна транзакция и кэш подготовленных запросов.
+ * Если задан размер порции (database.commit.rows), транзакция подтверждается каждый раз,
+ * когда количество изменённых строк достигает этого размера; иначе - только вызовом {@link #commit()}.
+ * (Запись и удаление пачками зависят от базы данных и реализуются наследниками)
+ */
+abstract class JdbcFileSession implements FileSession {
+    /** Запрос поиска по идентификатору. */
+    private static final String FIND_BY_ID_QUERY = "SELECT " + JdbcFileRepository.SELECT_COLUMNS
+            + " FROM " + MyFile.TABLE_NAME + " WHERE id = ?";
+    /** Запрос поиска по хэш-сумме. */
+    private static final String FIND_BY_HASH_SUM_QUERY = "SELECT " + JdbcFileRepository.SELECT_COLUMNS
+            + " FROM " + MyFile.TABLE_NAME + " WHERE hashSum = ?";
+    /** Запрос поиска файлов с отметкой {@link MyFile#UNIQUE_HASH_SUM}. */
+    private static final String FIND_UNIQUE_QUERY = "SELECT " + JdbcFileRepository.SELECT_COLUMNS
+            + " FROM " + MyFile.TABLE_NAME + " WHERE hashSum IS NULL";
+    /** Запрос обновления исходного файла. */
+    private static final String UPDATE_MOTHER_ID_QUERY = "UPDATE " + MyFile.TABLE_NAME + " SET motherID = ? WHERE id = ?";
+    /** Столбцы таблицы блоков в порядке их заполнения при вставке. */
+    static final String CHUNK_INSERT_COLUMNS = "fileId, chunkOffset, chunkSize, digest";
+    /** Запрос вставки одного блока. */
+    private static final String INSERT_CHUNK_QUERY = "INSERT INTO " + FileChunk.TABLE_NAME
+            + " (" + CHUNK_INSERT_COLUMNS + ") VALUES (?, ?, ?, ?)";
+    /** Соединение с базой данных. */
+    final Connection connection;
+    /** Количество изменённых строк, после которого транзакция подтверждается (0 - только по commit). */
+    private final int commitChunkSize;
+    /** Подготовленные запросы сеанса по тексту запроса. */
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    /** Количество строк, изменённых после последнего подтверждения. */
+    private long uncommittedRows;
+
+    /**
+     * Конструктор для {@link JdbcFileSession}.
+     *
+     * @param connection соединение с базой данных (закрывается вместе с сеансом)
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    JdbcFileSession(Connection connection, int commitChunkSize) throws SQLException {
+        this.connection = connection;
+        this.commitChunkSize = commitChunkSize;
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Заносит в таблицу сразу несколько файлов.
+     * Идентификаторы записей генерируются заранее и присваиваются переданным файлам.
+     *
+     * @param files файлы, информацию о которых нужно внести в таблицу
+     */
+    @Override
+    public void createAll(Collection<MyFile> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        for (MyFile file : files) {
+            if (file.getId() == null) {
+                file.setId(UUID.randomUUID());
+            }
+        }
+        try (var measurement = MetricsRegistry.database("createAll")) {
+            measurement.setAmount(files.size());
+            writeAll(files);
+            afterWrite(files.size());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Заносит в таблицу файлы с уже назначенными идентификаторами.
+     *
+     * @param files файлы
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    abstract void writeAll(Collection<MyFile> files) throws SQLException;
+
+    /**
+     * Заносит файлы в таблицу пакетом INSERT-запросов.
+     *
+     * @param files файлы
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    void insertAll(Collection<MyFile> files) throws SQLException {
+        var statement = prepare(JdbcFileRepository.INSERT_QUERY);
+        for (MyFile file : files) {
+            JdbcFileRepository.bind(statement, file.getId(), file);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+    }
+
+    /**
+     * Заносит в таблицу блоков сразу несколько блоков.
+     *
+     * @param chunks блоки файлов
+     */
+    @Override
+    public void createChunks(Collection<FileChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        try (var measurement = MetricsRegistry.database("createChunks")) {
+            measurement.setAmount(chunks.size());
+            writeChunks(chunks);
+            afterWrite(chunks.size());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Заносит блоки в таблицу блоков.
+     *
+     * @param chunks блоки файлов
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    abstract void writeChunks(Collection<FileChunk> chunks) throws SQLException;
+
+    /**
+     * Заносит блоки в таблицу блоков пакетом INSERT-запросов.
+     *
+     * @param chunks блоки файлов
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    void insertChunks(Collection<FileChunk> chunks) throws SQLException {
+        var statement = prepare(INSERT_CHUNK_QUERY);
+        for (FileChunk chunk : chunks) {
+            statement.setObject(1, UUID.fromString(chunk.getFileId()));
+            statement.setLong(2, chunk.getOffset());
+            statement.setInt(3, chunk.getSize());
+            statement.setBytes(4, chunk.getDigest());
+            statement.addBatch();
+        }
+        statement.executeBatch();
+    }
+
+    @Override
+    public FileRecord findById(String id) {
+        try (var measurement = MetricsRegistry.database("findById")) {
+            var statement = prepare(FIND_BY_ID_QUERY);
+            statement.setObject(1, UUID.fromString(id));
+            try (var resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    measurement.setAmount(1);
+                    return JdbcFileRepository.toRecord(resultSet);
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<FileRecord> findByHashSum(String hashSum) {
+        List<FileRecord> files = new ArrayList<>();
+        try (var measurement = MetricsRegistry.database("findByHashSum")) {
+            PreparedStatement statement;
+            if (MyFile.UNIQUE_HASH_SUM.equals(hashSum)) {
+                statement = prepare(FIND_UNIQUE_QUERY);
+            } else {
+                statement = prepare(FIND_BY_HASH_SUM_QUERY);
+                statement.setBytes(1, FileHasher.fromHex(hashSum));
+            }
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    files.add(JdbcFileRepository.toRecord(resultSet));
+                }
+            }
+            measurement.setAmount(files.size());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return files;
+    }
+
+    @Override
+    public void updateFilesMothersIdInfo(String id, String motherID) {
+        try (var measurement = MetricsRegistry.database("updateFilesMothersIdInfo")) {
+            var statement = prepare(UPDATE_MOTHER_ID_QUERY);
+            statement.setObject(1, UUID.fromString(motherID));
+            statement.setObject(2, UUID.fromString(id));
+            int rows = statement.executeUpdate();
+            measurement.setAmount(rows);
+            afterWrite(rows);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void deleteByPaths(Collection<String> filePaths) {
+        if (filePaths.isEmpty()) {
+            return;
+        }
+        try (var measurement = MetricsRegistry.database("deleteByPaths")) {
+            long rows = deleteAll(filePaths);
+            measurement.setAmount(rows);
+            afterWrite(rows);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Удаляет записи о файлах с заданными путями.
+     *
+     * @param filePaths пути к файлам (не пустой набор)
+     *
+     * @return количество удалённых строк
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    abstract long deleteAll(Collection<String> filePaths) throws SQLException;
+
+    @Override
+    public void commit() {
+        try (var measurement = MetricsRegistry.database("commit")) {
+            measurement.setAmount(uncommittedRows);
+            connection.commit();
+            uncommittedRows = 0;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Закрывает подготовленные запросы и соединение. Несохранённые изменения отменяются.
+     */
+    @Override
+    public void close() {
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.out.println("Возникла ошибка при закрытии сеанса: " + e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println("Возникла ошибка при закрытии соединения: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Возвращает подготовленный запрос сеанса, подготавливая его при первом обращении.
+     *
+     * @param query текст запроса
+     *
+     * @return подготовленный запрос
+     *
+     * @throws SQLException ошибка подготовки запроса
+     */
+    PreparedStatement prepare(String query) throws SQLException {
+        var statement = statements.get(query);
+        if (statement == null) {
+            statement = connection.prepareStatement(query);
+            statements.put(query, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Учитывает изменённые строки и подтверждает транзакцию, если набралась порция.
+     *
+     * @param rows количество изменённых строк
+     */
+    private void afterWrite(long rows) {
+        uncommittedRows += rows;
+        if (commitChunkSize > 0 && uncommittedRows >= commitChunkSize) {
+            commit();
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package ru.aladina.database.repository.impl;
 
+import ru.aladina.database.model.FileChunk;
 import ru.aladina.database.model.MyFile;
-import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.FileSession;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.sql.Statement;
+import java.util.Date;
 
 /**
  * Реализация репозитория задач для PostgreSQL.
  */
-public class PostgreSQLFileRepository implements FileRepository {
-    /** Источник данных. */
-    private final DataSource dataSource;
+public class PostgreSQLFileRepository extends JdbcFileRepository {
+    /** Текущая версия схемы таблицы. */
+    private static final int SCHEMA_VERSION = 4;
+    /** Название таблицы с версией схемы. */
+    private static final String SCHEMA_TABLE_NAME = MyFile.TABLE_NAME + "_schema";
+    /** Название временной функции, переводящей текстовое время прежней схемы в TIMESTAMPTZ. */
+    private static final String TIMESTAMP_FUNCTION = "file_system_to_timestamptz";
+    /** Количество строк, копируемых за один запрос при переходе на новую схему. */
+    private static final int MIGRATION_CHUNK_SIZE = 10000;
+    /** Описание столбцов таблицы (схема версии 4: уникальный индекс по пути создаётся в {@link #createIndexes()}). */
+    private static final String TABLE_COLUMNS = " ("
+            + "id UUID PRIMARY KEY, "
+            + "title TEXT,"
+            + "filePath TEXT,"
+            + "size BIGINT,"
+            + "dateTime_of_creation TIMESTAMPTZ,"
+            + "hashSum BYTEA,"
+            + "motherID UUID,"
+            + "partialHashSum BYTEA,"
+            + "fileKey TEXT,"
+            + "hashAlgorithm TEXT"
+            + ")";
 
     /**
      * Конструктор для {@link PostgreSQLFileRepository}.
@@ -24,233 +42,289 @@ public class PostgreSQLFileRepository implements FileRepository {
      * @param dataSource источник данных
      */
     public PostgreSQLFileRepository(DataSource dataSource) {
-        this.dataSource = dataSource;
+        super(dataSource);
         initTable();
     }
 
     /**
      * Инициализация таблицы.
-     * Если таблица отсутствует, метод создаёт её. Иначе выводит сообщение,
-     * что такая таблица уже существует в базе данных.
+     * Если таблица отсутствует, метод создаёт её. Если таблица создана прежней версией программы
+     * (все столбцы VARCHAR), её содержимое переносится в таблицу новой схемы.
      */
     @Override
     public void initTable() {
         //System.out.println("Инициализация таблицы: " + MyFile.TABLE_NAME);
-        try (var connection = dataSource.getConnection();
+        try (var connection = getConnection();
              var statement = connection.createStatement()) {
-                statement.executeUpdate(
-                        "CREATE TABLE "
-                                + MyFile.TABLE_NAME
-                                + " ("
-                                + "id VARCHAR(36) PRIMARY KEY, "
-                                + "title VARCHAR(255),"
-                                + "filePath VARCHAR(255),"
-                                + "size VARCHAR(255),"
-                                + "dateTime_of_creation VARCHAR(255),"
-                                + "hashSum VARCHAR(255),"
-                                + "motherID VARCHAR(36)"
-                                + ")");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE_NAME + " (version INTEGER NOT NULL)");
+            int version = 0;
+            try (var resultSet = statement.executeQuery("SELECT max(version) FROM " + SCHEMA_TABLE_NAME)) {
+                if (resultSet.next()) {
+                    version = resultSet.getInt(1);
+                }
+            }
+            boolean tableExists;
+            try (var resultSet = statement.executeQuery("SELECT to_regclass('" + MyFile.TABLE_NAME + "') IS NOT NULL")) {
+                tableExists = resultSet.next() && resultSet.getBoolean(1);
+            }
+            if (!tableExists) {
+                statement.executeUpdate("CREATE TABLE " + MyFile.TABLE_NAME + TABLE_COLUMNS);
+                setSchemaVersion(statement);
                 //System.out.println("Таблица успешно создана");
-        } catch (SQLException e) {
-            if (e.getMessage().equals(String.format("ERROR: relation \"%s\" already exists", MyFile.TABLE_NAME))) {
-                //System.out.println("Таблица уже существует");
-            } else {
-                System.out.println("Возникла ошибка при создании таблицы: " + e.getMessage());
+            } else if (version < 2) {
+                migrateFromVarcharSchema(connection);
+            } else if (version < SCHEMA_VERSION) {
+                upgradeSchema(connection, version);
             }
+        } catch (SQLException e) {
+            System.out.println("Возникла ошибка при создании таблицы: " + e.getMessage());
         } finally {
             //System.out.println("=========================");
         }
+        createIndexes();
+        createChunkTable();
     }
 
     /**
-     * Создаёт новую запись в указанной таблице и возвращает информацию об этой записи
-     * в виде объекта {@link MyFile}.
+     * Записывает текущую версию схемы таблицы.
      *
-     * @param file файл, информацию о котором нужно внести в таблицу.
+     * @param statement запрос
      *
-     * @return файл, внесённый в таблицу
+     * @throws SQLException ошибка выполнения запроса
      */
-    @Override
-    public MyFile create(MyFile file) {
-        var query = "INSERT INTO " + MyFile.TABLE_NAME + " VALUES (?, ?, ?, ?, ?, ?, ?)";
-        var entityId = UUID.randomUUID();
+    private void setSchemaVersion(Statement statement) throws SQLException {
+        statement.executeUpdate("DELETE FROM " + SCHEMA_TABLE_NAME);
+        statement.executeUpdate("INSERT INTO " + SCHEMA_TABLE_NAME + " VALUES (" + SCHEMA_VERSION + ")");
+    }
+
+    /**
+     * Переносит таблицу прежней схемы (все столбцы VARCHAR) в таблицу новой схемы.
+     * Строки копируются частями по {@link #MIGRATION_CHUNK_SIZE} в отдельных транзакциях, поэтому
+     * старая таблица остаётся доступной во время копирования. В конце под короткой блокировкой
+     * досинхронизируются строки, добавленные, изменённые и удалённые за время копирования, и таблицы меняются местами.
+     * Время изменения берётся из modifiedMillis, а если его нет - из текстового dateTime_of_creation
+     * (в формате {@link Date#toString()}); нераспознанное время переносится как NULL.
+     *
+     * @param connection соединение с базой данных
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    private void migrateFromVarcharSchema(Connection connection) throws SQLException {
+        var newTable = MyFile.TABLE_NAME + "_v" + SCHEMA_VERSION;
+        var convertedColumns = "SELECT old.id::uuid, old.title, old.filePath, NULLIF(old.size, '')::bigint, "
+                + "CASE WHEN old.modifiedMillis ~ '^[0-9]+$' THEN to_timestamp(old.modifiedMillis::bigint / 1000.0) "
+                + "ELSE pg_temp." + TIMESTAMP_FUNCTION + "(old.dateTime_of_creation) END, "
+                + "CASE WHEN old.hashSum ~ '^([0-9a-f]{2})+$' THEN decode(old.hashSum, 'hex') END, "
+                + "CASE WHEN old.motherID ~ '^[0-9a-f-]{36}$' THEN old.motherID::uuid END, "
+                + "CASE WHEN old.partialHashSum ~ '^([0-9a-f]{2})+$' THEN decode(old.partialHashSum, 'hex') END, "
+                + "old.fileKey, "
+                + "CASE WHEN old.hashSum ~ '^([0-9a-f]{2})+$' THEN 'sha-256' END "
+                + "FROM " + MyFile.TABLE_NAME + " AS old";
+        var insertConverted = "INSERT INTO " + newTable + " (" + INSERT_COLUMNS + ") " + convertedColumns;
+
+        addMissingVarcharColumns(connection);
+        try (var statement = connection.createStatement()) {
+            // Временная функция видна только в этом соединении и удаляется при его закрытии
+            statement.executeUpdate("CREATE OR REPLACE FUNCTION pg_temp." + TIMESTAMP_FUNCTION
+                    + "(value TEXT) RETURNS TIMESTAMPTZ AS $$ BEGIN RETURN value::timestamptz; "
+                    + "EXCEPTION WHEN others THEN RETURN NULL; END $$ LANGUAGE plpgsql STABLE");
+            statement.executeUpdate("DROP TABLE IF EXISTS " + newTable);
+            statement.executeUpdate("CREATE TABLE " + newTable + TABLE_COLUMNS);
+        }
+        var lastId = "";
+        try (var nextChunkEnd = connection.prepareStatement("SELECT id FROM " + MyFile.TABLE_NAME
+                     + " WHERE id > ? ORDER BY id OFFSET " + (MIGRATION_CHUNK_SIZE - 1) + " LIMIT 1");
+             var copyChunk = connection.prepareStatement(insertConverted + " WHERE old.id > ? AND old.id <= ?")) {
+            while (true) {
+                nextChunkEnd.setString(1, lastId);
+                String chunkEnd;
+                try (var resultSet = nextChunkEnd.executeQuery()) {
+                    chunkEnd = resultSet.next() ? resultSet.getString(1) : null;
+                }
+                if (chunkEnd == null) {
+                    break;
+                }
+                copyChunk.setString(1, lastId);
+                copyChunk.setString(2, chunkEnd);
+                copyChunk.executeUpdate();
+                lastId = chunkEnd;
+            }
+        }
 
-        try (var connection = dataSource.getConnection();
-             var statement = connection.prepareStatement(query)) {
-            statement.setString(
-                    1,
-                    entityId.toString());
-            statement.setString(
-                    2,
-                    file.getTitle());
-            statement.setString(
-                    3,
-                    file.getFilePath());
-            statement.setLong(
-                    4,
-                    file.getSize());
-            statement.setString(
-                    5,
-                    file.getDateTime());
-            statement.setString(
-                    6,
-                    file.getHashSum());
-            statement.setString(
-                    7,
-                    file.getMotherID());
-            statement.execute();
+        connection.setAutoCommit(false);
+        try (var statement = connection.createStatement()) {
+            statement.execute("LOCK TABLE " + MyFile.TABLE_NAME + " IN ACCESS EXCLUSIVE MODE");
+            // Удаляются скопированные строки, которых больше нет или которые с тех пор изменились
+            // (столбцы новой таблицы идут в том же порядке, что и в convertedColumns)
+            statement.executeUpdate("DELETE FROM " + newTable + " AS copied WHERE NOT EXISTS (SELECT 1 FROM ("
+                    + convertedColumns + ") AS converted (" + INSERT_COLUMNS + ") WHERE converted.id = copied.id "
+                    + "AND ROW(converted.*) IS NOT DISTINCT FROM ROW(copied.*))");
+            statement.executeUpdate(insertConverted + " WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM " + newTable + " AS copied WHERE copied.id = old.id::uuid)");
+            statement.executeUpdate("DROP TABLE " + MyFile.TABLE_NAME);
+            statement.executeUpdate("ALTER TABLE " + newTable + " RENAME TO " + MyFile.TABLE_NAME);
+            statement.executeUpdate("ALTER INDEX " + newTable + "_pkey RENAME TO " + MyFile.TABLE_NAME + "_pkey");
+            removeDuplicatePaths(statement);
+            setSchemaVersion(statement);
+            connection.commit();
+            System.out.println("Таблица " + MyFile.TABLE_NAME + " переведена на схему версии " + SCHEMA_VERSION);
         } catch (SQLException e) {
-            System.out.println("Возникла ошибка выполнения запроса (создание): " + e.getMessage());
-            return null;
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
         }
-        return findById(entityId.toString());
     }
 
     /**
-     * Формирует список всех объектов {@link MyFile},
-     * хранящихся в таблице базы данных на момент вызова метода.
+     * Переводит таблицу со схемы версии 2 или 3 на текущую схему в одной транзакции.
+     * Версия 3 добавляет столбец с названием алгоритма хэш-суммы (до появления столбца все хэш-суммы
+     * вычислялись алгоритмом SHA-256), версия 4 - уникальный индекс по пути, перед созданием которого
+     * удаляются повторяющиеся записи об одном и том же пути.
+     *
+     * @param connection соединение с базой данных
+     * @param version текущая версия схемы таблицы
      *
-     * @return список всех объектов в таблице
+     * @throws SQLException ошибка выполнения запросов
      */
-    @Override
-    public List<MyFile> findAll() {
-        List<MyFile> files = new ArrayList<>();
-        MyFile newFileInList;
-        var query = String.format(
-                "SELECT * FROM %s",
-                MyFile.TABLE_NAME);
-        try (var connection = dataSource.getConnection();
-             var statement = connection.createStatement();
-             var resultSet = statement.executeQuery(query)) {
-            while (resultSet.next()) {
-                newFileInList = new MyFile(UUID.fromString(resultSet.getString("id")),
-                        resultSet.getString("title"),
-                        resultSet.getString("filePath"),
-                        resultSet.getLong("size"),
-                        resultSet.getString("dateTime_of_creation"),
-                        resultSet.getString("hashSum"),
-                        resultSet.getString("motherID"));
-                files.add(newFileInList);
+    private void upgradeSchema(Connection connection, int version) throws SQLException {
+        connection.setAutoCommit(false);
+        try (var statement = connection.createStatement()) {
+            if (version < 3) {
+                statement.executeUpdate("ALTER TABLE " + MyFile.TABLE_NAME + " ADD COLUMN IF NOT EXISTS hashAlgorithm TEXT");
+                statement.executeUpdate("UPDATE " + MyFile.TABLE_NAME + " SET hashAlgorithm = 'sha-256' "
+                        + "WHERE hashAlgorithm IS NULL AND (hashSum IS NOT NULL OR partialHashSum IS NOT NULL)");
+            }
+            if (version < 4) {
+                statement.execute("LOCK TABLE " + MyFile.TABLE_NAME + " IN SHARE ROW EXCLUSIVE MODE");
+                removeDuplicatePaths(statement);
+                createFilePathIndex(statement);
             }
-        } catch (SQLException | IOException | NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
+            setSchemaVersion(statement);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
         }
-        return files;
     }
 
     /**
-     * Находит объект в базе данных по заданному id.
+     * Удаляет повторяющиеся записи об одном и том же пути, оставляя последнюю записанную.
+     * (Прежние версии программы не запрещали повторы, а уникальный индекс по пути не создаётся при их наличии)
      *
-     * @param id идентификатор файла
+     * @param statement запрос
      *
-     * @return запись из базы данных, найденная по заданному id
+     * @throws SQLException ошибка выполнения запроса
      */
-
-    @Override
-    public MyFile findById(String  id) {
-        var file = (MyFile) null;
-        var query = String.format(
-                "SELECT id, title, filePath, size, dateTime_of_creation, hashSum, motherID FROM %s WHERE " +
-                        "id = '%s'",
-                MyFile.TABLE_NAME,
-                id);
-
-        try (var connection = dataSource.getConnection();
-             var statement = connection.createStatement();
-             var resultSet = statement.executeQuery(query)) {
-            if (resultSet.next()) {
-                file = new MyFile(
-                        UUID.fromString(resultSet.getString("id")),
-                        resultSet.getString("title"),
-                        resultSet.getString("filePath"),
-                        resultSet.getLong("size"),
-                        resultSet.getString("dateTime_of_creation"),
-                        resultSet.getString("hashSum"),
-                        resultSet.getString("motherID"));
-            }
-        } catch (SQLException | IOException | NoSuchAlgorithmException e) {
-            System.out.println("Возникла ошибка выполнения запроса (поиск по id): " + e.getMessage());
+    private void removeDuplicatePaths(Statement statement) throws SQLException {
+        int removed = statement.executeUpdate("DELETE FROM " + MyFile.TABLE_NAME + " AS older USING "
+                + MyFile.TABLE_NAME + " AS newer WHERE older.filePath = newer.filePath AND older.ctid < newer.ctid");
+        if (removed > 0) {
+            System.out.println("Удалено повторяющихся записей о путях: " + removed);
         }
-        return file;
     }
 
     /**
-     * Формирует список всех объектов {@link MyFile}, которые были найдены
-     * в базе данных по заданной хэш-сумме.
+     * Создаёт уникальный индекс по пути: по нему удаляются записи при повторном сканировании
+     * и находятся прежние записи о файлах.
      *
-     * @param hashSum хэш-сумма
+     * @param statement запрос
      *
-     * @return список записей в базе даных, найденных по заданной хэш-сумме
+     * @throws SQLException ошибка выполнения запроса
      */
-    @Override
-    public List<MyFile> findByHashSum(String hashSum) {
-        List<MyFile> files = new ArrayList<>();
-        MyFile newFileInList;
-        var query = String.format(
-                "SELECT id, title, filePath, size, dateTime_of_creation, hashSum, motherID FROM %s WHERE " +
-                        "hashSum = '%s'",
-                MyFile.TABLE_NAME,
-                hashSum);
-        try (var connection = dataSource.getConnection();
-             var statement = connection.createStatement();
-             var resultSet = statement.executeQuery(query)) {
-            while (resultSet.next()) {
-                newFileInList = new MyFile(UUID.fromString(resultSet.getString("id")),
-                        resultSet.getString("title"),
-                        resultSet.getString("filePath"),
-                        resultSet.getLong("size"),
-                        resultSet.getString("dateTime_of_creation"),
-                        resultSet.getString("hashSum"),
-                        resultSet.getString("motherID"));
-                files.add(newFileInList);
-            }
-        } catch (SQLException | IOException | NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-        return files;
+    private static void createFilePathIndex(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_filePath_idx ON "
+                + MyFile.TABLE_NAME + " (filePath)");
     }
 
     /**
-     * Обновляет весь столбец с идентификаторами исходных файлов,
-     * заполняет его информацией.
+     * Добавляет в таблицу прежней схемы столбцы, появившиеся до перехода на новую схему,
+     * чтобы перенос данных не зависел от того, какой версией программы была создана таблица.
+     *
+     * @param connection соединение с базой данных
      *
-     * @param id идентификатор файла
-     * @param motherID идентификатор исходного файла
+     * @throws SQLException ошибка выполнения запроса
      */
-    @Override
-    public void updateFilesMothersIdInfo(String id, String motherID) {
-        var query = String.format(
-                "UPDATE %s SET motherID = '%s' WHERE " +
-                        "id = '%s'",
-                MyFile.TABLE_NAME,
-                motherID,
-                id);
-        try (var connection = dataSource.getConnection();
+    private void addMissingVarcharColumns(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + MyFile.TABLE_NAME
+                    + " ADD COLUMN IF NOT EXISTS partialHashSum VARCHAR(255),"
+                    + " ADD COLUMN IF NOT EXISTS fileKey VARCHAR(255),"
+                    + " ADD COLUMN IF NOT EXISTS modifiedMillis VARCHAR(255)");
+        }
+    }
+
+    /**
+     * Создаёт индексы, необходимые для поиска дубликатов.
+     */
+    private void createIndexes() {
+        try (var connection = getConnection();
              var statement = connection.createStatement()) {
-            statement.executeUpdate(query);
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_hashSum_idx ON "
+                    + MyFile.TABLE_NAME + " (hashSum, filePath)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_size_idx ON "
+                    + MyFile.TABLE_NAME + " (size)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + MyFile.TABLE_NAME + "_motherID_idx ON "
+                    + MyFile.TABLE_NAME + " (motherID)");
+            createFilePathIndex(statement);
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            System.out.println("Возникла ошибка при создании индексов: " + e.getMessage());
         }
     }
 
     /**
-     * Очищает  всё содержимое указанной таблицы.
-     *
-     * @param tableName название таблицы
+     * Создаёт таблицу блоков файлов. (Таблица заполняется заново при каждом разбиении на блоки,
+     * поэтому внешний ключ на таблицу файлов не нужен: блоки удалённых файлов отсекаются соединением)
      */
-    @Override
-    public void  deleteTableInfo(String tableName){
-        var query = "TRUNCATE " + tableName;
-        try (var connection = dataSource.getConnection();
-             var statement = connection.prepareStatement(query)) {
-            statement.execute();
-            //System.out.println("Данные из таблицы очищены успешно");
+    private void createChunkTable() {
+        try (var connection = getConnection();
+             var statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + FileChunk.TABLE_NAME + " ("
+                    + "fileId UUID NOT NULL, chunkOffset BIGINT NOT NULL, chunkSize INTEGER NOT NULL, digest BYTEA NOT NULL)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + FileChunk.TABLE_NAME + "_fileId_idx ON "
+                    + FileChunk.TABLE_NAME + " (fileId)");
         } catch (SQLException e) {
-            System.out.println("Возникла ошибка выполнения запроса (удаление данных из таблицы): " + e.getMessage());
-        }
-        finally {
-            //System.out.println("=========================");
+            System.out.println("Возникла ошибка при создании таблицы блоков: " + e.getMessage());
         }
     }
 
+    /**
+     * Открывает сеанс, заносящий файлы в таблицу командой COPY (см. {@link PostgreSQLFileSession}).
+     *
+     * @param connection соединение с базой данных
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @return сеанс работы с таблицей
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    @Override
+    FileSession newSession(Connection connection, int commitChunkSize) throws SQLException {
+        return new PostgreSQLFileSession(connection, commitChunkSize);
+    }
+
+    /**
+     * Возвращает запрос назначения исходных файлов, изменяющий только строки с другим исходным файлом.
+     *
+     * @return текст запроса
+     */
+    @Override
+    String assignMotherIdsQuery() {
+        return "UPDATE " + MyFile.TABLE_NAME + " AS f SET motherID = m.motherID FROM (" + MOTHER_IDS_QUERY + ") AS m "
+                + "WHERE f.id = m.id AND f.motherID IS DISTINCT FROM m.motherID";
+    }
+
+    /**
+     * Переводит хэш-сумму в текстовую запись значения BYTEA для команды COPY.
+     *
+     * @param hashSum шестнадцатеричная хэш-сумма
+     *
+     * @return текстовая запись значения BYTEA или null
+     */
+    static String toByteaLiteral(String hashSum) {
+        return hashSum == null || MyFile.UNIQUE_HASH_SUM.equals(hashSum) ? null : "\\x" + hashSum;
+    }
+
 }
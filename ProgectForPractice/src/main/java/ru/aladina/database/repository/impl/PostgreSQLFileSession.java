@@ -0,0 +1,184 @@
+package ru.aladina.database.repository.impl;
+
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.MyFile;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Сеанс работы с таблицей в PostgreSQL.
+ * Файлы заносятся одной командой COPY, а удаляются одним запросом по массиву путей.
+ */
+class PostgreSQLFileSession extends JdbcFileSession {
+    /** Запрос удаления по путям. */
+    private static final String DELETE_BY_PATHS_QUERY = "DELETE FROM " + MyFile.TABLE_NAME + " WHERE filePath = ANY(?)";
+    /** Доступна ли команда COPY (null - ещё не проверялось). */
+    private Boolean copyAvailable;
+
+    /**
+     * Конструктор для {@link PostgreSQLFileSession}.
+     *
+     * @param connection соединение с базой данных (закрывается вместе с сеансом)
+     * @param commitChunkSize количество изменённых строк, после которого транзакция подтверждается
+     *
+     * @throws SQLException ошибка при начале транзакции
+     */
+    PostgreSQLFileSession(Connection connection, int commitChunkSize) throws SQLException {
+        super(connection, commitChunkSize);
+    }
+
+    /**
+     * Заносит файлы в таблицу командой COPY. Если COPY недоступен,
+     * файлы вставляются пакетом INSERT-запросов (драйвер отправляет пакет серверу без ожидания
+     * ответа на каждый запрос).
+     *
+     * @param files файлы
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    @Override
+    void writeAll(Collection<MyFile> files) throws SQLException {
+        copyOrInsert(() -> copyAll(files), () -> insertAll(files));
+    }
+
+    /**
+     * Заносит блоки в таблицу блоков командой COPY, а если COPY недоступен - пакетом INSERT-запросов.
+     *
+     * @param chunks блоки файлов
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    @Override
+    void writeChunks(Collection<FileChunk> chunks) throws SQLException {
+        copyOrInsert(() -> copyChunks(chunks), () -> insertChunks(chunks));
+    }
+
+    /**
+     * Выполняет команду COPY, а если COPY недоступен - вставку INSERT-запросами.
+     *
+     * @param copy запись командой COPY
+     * @param insert запись INSERT-запросами
+     *
+     * @throws SQLException ошибка выполнения запросов
+     */
+    private void copyOrInsert(CopyAction copy, InsertAction insert) throws SQLException {
+        if (copyAvailable == null) {
+            // Ошибка внутри транзакции отменяет её целиком, поэтому первый COPY выполняется после точки
+            // сохранения; дальше сеанс уже знает, доступен ли COPY, и лишних запросов не делает
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                copy.run();
+                connection.releaseSavepoint(savepoint);
+                copyAvailable = true;
+            } catch (SQLException | IOException e) {
+                connection.rollback(savepoint);
+                copyAvailable = false;
+                insert.run();
+            }
+        } else if (copyAvailable) {
+            try {
+                copy.run();
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        } else {
+            insert.run();
+        }
+    }
+
+    /**
+     * Заносит блоки в таблицу блоков командой COPY FROM STDIN.
+     *
+     * @param chunks блоки файлов
+     *
+     * @throws SQLException ошибка выполнения команды
+     * @throws IOException ошибка передачи данных
+     */
+    private void copyChunks(Collection<FileChunk> chunks) throws SQLException, IOException {
+        var csv = new StringBuilder();
+        for (FileChunk chunk : chunks) {
+            csv.append(chunk.getFileId()).append(',')
+                    .append(chunk.getOffset()).append(',')
+                    .append(chunk.getSize()).append(",\\x")
+                    .append(FileHasher.toHex(chunk.getDigest())).append('\n');
+        }
+        new CopyManager(connection.unwrap(BaseConnection.class)).copyIn(
+                "COPY " + FileChunk.TABLE_NAME + " (" + CHUNK_INSERT_COLUMNS + ") FROM STDIN WITH (FORMAT csv)",
+                new StringReader(csv.toString()));
+    }
+
+    /**
+     * Заносит файлы в таблицу командой COPY FROM STDIN.
+     *
+     * @param files файлы
+     *
+     * @throws SQLException ошибка выполнения команды
+     * @throws IOException ошибка передачи данных
+     */
+    private void copyAll(Collection<MyFile> files) throws SQLException, IOException {
+        var csv = new StringBuilder();
+        for (MyFile file : files) {
+            appendCsv(csv, file.getId().toString()).append(',');
+            appendCsv(csv, file.getTitle()).append(',');
+            appendCsv(csv, file.getFilePath()).append(',');
+            appendCsv(csv, file.getSize() == null ? null : file.getSize().toString()).append(',');
+            appendCsv(csv, file.getModifiedMillis() == MyFile.UNKNOWN_MODIFIED_MILLIS
+                    ? null
+                    : Instant.ofEpochMilli(file.getModifiedMillis()).toString()).append(',');
+            appendCsv(csv, PostgreSQLFileRepository.toByteaLiteral(file.getHashSum())).append(',');
+            appendCsv(csv, file.getMotherID()).append(',');
+            appendCsv(csv, PostgreSQLFileRepository.toByteaLiteral(file.getPartialHashSum())).append(',');
+            appendCsv(csv, file.getFileKey()).append(',');
+            appendCsv(csv, file.getHashAlgorithm()).append('\n');
+        }
+        new CopyManager(connection.unwrap(BaseConnection.class)).copyIn(
+                "COPY " + MyFile.TABLE_NAME + " (" + JdbcFileRepository.INSERT_COLUMNS
+                        + ") FROM STDIN WITH (FORMAT csv)",
+                new StringReader(csv.toString()));
+    }
+
+    /**
+     * Добавляет значение в строку формата CSV. Отсутствующее значение записывается как NULL.
+     *
+     * @param csv строка формата CSV
+     * @param value значение
+     *
+     * @return строка формата CSV
+     */
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        if (value != null) {
+            csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return csv;
+    }
+
+    @Override
+    long deleteAll(Collection<String> filePaths) throws SQLException {
+        var statement = prepare(DELETE_BY_PATHS_QUERY);
+        statement.setArray(1, connection.createArrayOf("text", filePaths.toArray()));
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Запись командой COPY.
+     */
+    private interface CopyAction {
+        void run() throws SQLException, IOException;
+    }
+
+    /**
+     * Запись INSERT-запросами.
+     */
+    private interface InsertAction {
+        void run() throws SQLException;
+    }
+}
@@ -1,32 +1,63 @@
 package ru.aladina.database.service;
 
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.hash.ContentChunker;
+import ru.aladina.database.metrics.Measurement;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.FileRecord;
 import ru.aladina.database.model.MyFile;
+import ru.aladina.database.model.ScanReport;
 import ru.aladina.database.property.PropertyContainer;
 import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.service.dedup.DedupAction;
+import ru.aladina.database.service.dedup.DedupActions;
+import ru.aladina.database.service.pipeline.ChunkIndexer;
+import ru.aladina.database.service.pipeline.DuplicateReplacer;
+import ru.aladina.database.service.pipeline.IngestPipeline;
+import ru.aladina.database.service.pipeline.ScanStatistics;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.NoSuchAlgorithmException;
-import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Класс отвечает за манипуляции с данными в базе.
+ * Работа с отдельными файлами выполняется в потоках вида execution.mode (см. {@link ExecutionMode}).
+ * (Длительность каждого этапа учитывается в {@link MetricsRegistry} как phase.scan, phase.resolve,
+ * phase.report, phase.chunk и phase.link)
  */
 public class FileService {
     /** Манипулятор. */
     private final FileRepository fileRepository;
-    /** Имя файловой системы. */
-    private final String FILESYSTEM_NAME = PropertyContainer.getProperty("filesystem.path").
-            split("/")[PropertyContainer.getProperty("filesystem.path").split("/").length - 1];
-    /** Уровень расположения имени главной директории в абсолютных путях файлов системы. */
-    private final Integer FILESYSTEM_LEVEL = PropertyContainer.getProperty("filesystem.path").
-            split("/").length-1;
-    private boolean BEFORE_OR_AFTER = true;
+    /** Размер фрагмента в начале и в конце файла для частичной хэш-суммы (в байтах). */
+    private final int HASH_SAMPLE_SIZE = PropertyContainer.getIntProperty("hash.sample.kb", 4) * 1024;
+    /** Вид потоков для работы с отдельными файлами (execution.mode). */
+    private final ExecutionMode EXECUTION_MODE = ExecutionMode.configured();
+    /** Количество потоков обхода файловой системы. */
+    private final int WALK_THREADS = EXECUTION_MODE.concurrency(PropertyContainer.getIntProperty("walk.threads",
+            Runtime.getRuntime().availableProcessors()));
+    /** Количество потоков вычисления хэш-сумм. */
+    private final int HASH_WORKERS = EXECUTION_MODE.concurrency(PropertyContainer.getIntProperty("pipeline.hash.workers",
+            Runtime.getRuntime().availableProcessors()));
+    /** Ёмкость очередей между стадиями заполнения таблицы. */
+    private final int QUEUE_SIZE = PropertyContainer.getIntProperty("pipeline.queue.size", 1024);
+    /** Количество файлов в одной пачке записи в базу данных. */
+    private final int BATCH_SIZE = PropertyContainer.getIntProperty("pipeline.batch.size", 500);
+    /** Количество потоков замены дубликатов. */
+    private final int DEDUP_WORKERS = EXECUTION_MODE.concurrency(PropertyContainer.getIntProperty("dedup.workers",
+            Runtime.getRuntime().availableProcessors()));
+    /** Количество одновременно разбиваемых на блоки файлов. */
+    private final int CHUNK_WORKERS = EXECUTION_MODE.concurrency(PropertyContainer.getIntProperty("chunk.workers",
+            Runtime.getRuntime().availableProcessors()));
+    /** Наименьший размер файла, разбиваемого на блоки (в байтах). */
+    private final long CHUNK_MIN_FILE_SIZE = PropertyContainer.getIntProperty("chunk.min.file.kb", 64) * 1024L;
+    /** Количество директорий с наибольшим размером повторяющихся блоков в итоге разбиения. */
+    private final int CHUNK_REPORT_TOP = PropertyContainer.getIntProperty("chunk.report.top", 10);
+    /** Повторное сканирование: пересчитываются только новые и изменённые файлы. */
+    private final boolean INCREMENTAL_SCAN = Boolean.parseBoolean(PropertyContainer.getProperty("scan.incremental"));
 
     /**
      * Конструктор для {@link FileService}.
@@ -39,190 +70,156 @@ public class FileService {
 
     /**
      * Вставка всех файлов системы в таблицу базы данных.
+     * Хэш-суммы вычисляются в два этапа: сначала частичная хэш-сумма для файлов, размер которых
+     * встречается в системе больше одного раза, затем полная - только для файлов с совпавшей частичной.
+     * Остальные файлы заносятся в таблицу с отметкой {@link MyFile#UNIQUE_HASH_SUM}.
+     * (Обход, вычисление хэш-сумм и запись в базу выполняются одновременно, см. {@link IngestPipeline})
+     * В режиме повторного сканирования (scan.incremental) таблица не очищается: хэш-суммы пересчитываются
+     * только для новых и изменённых файлов, записи об исчезнувших файлах удаляются.
      *
      * @param directory главная директория файловой системы
+     *
+     * @return счётчики, собранные при обходе файловой системы
      */
-    public void insertAllFiles(File directory) {
-        // На всякий случай очищаем таблицу, чтобы работать только с актуальной информацией
-        fileRepository.deleteTableInfo(MyFile.TABLE_NAME);
+    public ScanStatistics insertAllFiles(File directory) {
+        Map<String, FileRecord> previousFiles = new ConcurrentHashMap<>();
+        Measurement phase = MetricsRegistry.phase("scan");
         try {
-            Path directoryPath = Paths.get(directory.toURI());
-            Files.walk(directoryPath).forEach(path -> {
-                File nextFile = path.toFile();
-                if (!nextFile.isDirectory() && !Files.isSymbolicLink(nextFile.toPath())) {
-                    var insertedFile = new MyFile(nextFile.getAbsolutePath());
-                    try {
-                        insertedFile.setHashSum(insertedFile.findHashSum());
-                    } catch (IOException | NoSuchAlgorithmException e) {
-                        throw new RuntimeException(e);
-                    }
-                    fileRepository.create(insertedFile);
-                    //System.out.println('\n'+"Успех "+nextFile.getName()+" "+nextFile.getPath());
-                }
-            });
+            if (INCREMENTAL_SCAN) {
+                fileRepository.forEachFile(record -> previousFiles.put(record.getFilePath(), record));
+            } else {
+                // На всякий случай очищаем таблицу, чтобы работать только с актуальной информацией
+                fileRepository.deleteTableInfo(MyFile.TABLE_NAME);
+            }
+            return new IngestPipeline(fileRepository, WALK_THREADS, HASH_WORKERS, QUEUE_SIZE, BATCH_SIZE,
+                    HASH_SAMPLE_SIZE, EXECUTION_MODE).run(Paths.get(directory.toURI()), previousFiles);
         } catch (IOException e) {
             System.out.println("Ошибка при обработке файловой системы: " + e.getMessage());
+            return new ScanStatistics(0);
+        } finally {
+            phase.close();
         }
     }
 
     /**
-     * Находит сумму размеров всех файлов и ссылок файловой системы.
+     * Формирует итог сканирования: количество и размер файлов берутся из счётчиков обхода,
+     * количество и размер дубликатов - из таблицы (исходные файлы должны быть уже найдены).
      *
-     * @param directory главная директория файловой системы
+     * @param statistics счётчики, собранные при обходе файловой системы
      *
-     * @throws IOException ошибка при распознавании пути символьной ссылки
+     * @return итог сканирования
      */
-    public void findFilesSizeSum(File directory) throws IOException {
-        AtomicLong sum = new AtomicLong(0);
-        Files.walk(directory.toPath())
-                    .map(Path::toFile).forEach(path -> {
-                        if (!path.isDirectory()) {
-                            if (Files.isSymbolicLink(path.toPath())) {
-                                try {
-                                    Path linkedFile = Files.readSymbolicLink(path.toPath());
-                                    sum.addAndGet(linkedFile.toFile().length());
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            } else {
-                                sum.addAndGet(path.length());
-                            }
-                        }
-                    });
-        if (BEFORE_OR_AFTER) {
-            System.out.println("Размер директории до замены дубликатов на ссылки составляет: " + sum.get() + " байт");
-            BEFORE_OR_AFTER = false;
-        } else {
-            System.out.println("Размер директории после замены дубликатов на ссылки составляет: " + sum.get() + " байт");
+    public ScanReport createScanReport(ScanStatistics statistics) {
+        Measurement phase = MetricsRegistry.phase("report");
+        try {
+            return statistics.toReport(fileRepository.summarize());
+        } finally {
+            phase.close();
         }
     }
 
+    /**
+     * Выводит итог сканирования.
+     *
+     * @param report итог сканирования
+     */
+    public void printScanReport(ScanReport report) {
+        System.out.println("Файлов: " + report.getFileCount() + ", символических ссылок: " + report.getLinkCount());
+        System.out.println("Размер директории до замены дубликатов на ссылки составляет: "
+                + report.getLogicalSize() + " байт (с округлением до размера блока: "
+                + report.getBlockRoundedSize() + " байт)");
+        System.out.println("Дубликатов: " + report.getDuplicateCount() + ", их размер: "
+                + report.getDuplicateSize() + " байт (ожидаемый размер после замены: "
+                + report.getProjectedSizeAfterDedup() + " байт)");
+        if (report.isDryRun()) {
+            System.out.println("Пробный запуск: файлы не изменены, замена освободила бы "
+                    + report.getReclaimedSize() + " байт");
+        } else {
+            System.out.println("Размер директории после замены дубликатов на ссылки составляет: "
+                    + report.getSizeAfterDedup() + " байт (освобождено: " + report.getReclaimedSize() + " байт)");
+        }
+    }
 
     /**
      * Находит исходные файлы для всех файлов из файловой системы.
      * В базе данных файлы делятся на 2 типа:
-     * 1) Исходный файл - первый найденный в системе файл с уникальным содержанием.
+     * 1) Исходный файл - файл с наименьшим путём среди файлов с одинаковым содержанием.
      * (В качестве motherID у таких файлов в базе записывается их же id)
      * 2) Дублирующийся файл - файл, который повторяет по содержанию уже найденный в системе файл.
      * (В качестве motherID у таких файлов в базе записывается id их исходного файла)
+     * Файлы, отмеченные как уникальные, всегда являются исходными.
+     * (Исходные файлы назначаются одним запросом для всей таблицы)
      */
-    public void findAllFilesMother(List<MyFile> allFilesInTable) {
-        for (MyFile myFile : allFilesInTable) {
-            int countOfDuplicate = fileRepository.findByHashSum(myFile.getHashSum()).size();
-            MyFile masterFile;
-            try {
-                masterFile = new MyFile(fileRepository.findByHashSum(myFile.getHashSum()).get(0).getId(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getTitle(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getFilePath(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getSize(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getDateTime(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getHashSum(),
-                        fileRepository.findByHashSum(myFile.getHashSum()).get(0).getMotherID());
-                if (countOfDuplicate > 1) {
-                    for (MyFile duplicate : fileRepository.findByHashSum(masterFile.getHashSum())) {
-                        fileRepository.updateFilesMothersIdInfo(duplicate.getId().toString(),
-                                masterFile.getId().toString());
-                    }
-                } else {
-                    fileRepository.updateFilesMothersIdInfo(masterFile.getId().toString(),
-                            masterFile.getId().toString());
-                }
-            } catch (IOException | NoSuchAlgorithmException e) {
-                throw new RuntimeException(e);
-            }
+    public void findAllFilesMother() {
+        Measurement phase = MetricsRegistry.phase("resolve");
+        try {
+            fileRepository.assignMotherIds();
+        } finally {
+            phase.close();
         }
         //System.out.println("Иcходные файлы найдены");
         //System.out.println("=========================");
     }
 
     /**
-     * Выстраивает часть относительного пути от дублирующегося файла
-     * к главной директории файловой системы.
-     *
-     * @param splitPath массив компонентов пути дублирующегося файла (без '/').
-     *
-     * @return часть относительного пути от дублирующегося файла
-     * к главной директории файловой системы
+     * Разбивает исходные файлы на блоки, границы которых определяются содержимым (см. {@link ChunkIndexer}),
+     * и выводит итог: сколько байт файлов повторяют уже встречавшиеся блоки, в целом и по директориям
+     * с наибольшим размером повторяющихся блоков. Так находятся частично совпадающие файлы,
+     * которые не являются дубликатами целиком.
      */
-    private String cdStringForPath(String[] splitPath) {
-        StringBuilder cdPath = new StringBuilder();
-        boolean flag = true;
-        for (int i = splitPath.length - 2; i > 0; i--) {
-            if (flag && !Objects.equals(splitPath[i], FILESYSTEM_NAME)) {
-                cdPath.append("../");
-            }
-            if (Objects.equals(splitPath[i], FILESYSTEM_NAME)) {
-                flag = false;
-            }
-        }
-        return cdPath.toString();
-    }
-
-    /**
-     * Выстраивает часть относительного пути из
-     * главной директории файловой системы до исходного файла.
-     *
-     * @param splitPath массив компонентов пути исходного файла (без '/').
-     *
-     * @return часть относительного пути из
-     * главной директории файловой системы до исходного файла
-     */
-    private String motherPathStringForPath(String[] splitPath) {
-        StringBuilder motherPath = new StringBuilder();
-        int index = 0;
-        for (int i = 0; i < splitPath.length - 1; i++) {
-            if (splitPath[i].equals(FILESYSTEM_NAME) && i == FILESYSTEM_LEVEL) {
-                index = i + 1;
-            }
-            if (index <= i && index != 0) {
-                motherPath.append(splitPath[i]).append("/");
-            }
+    public void chunkFiles() {
+        Measurement phase = MetricsRegistry.phase("chunk");
+        try {
+            long chunkCount = new ChunkIndexer(fileRepository, ContentChunker.configured(), CHUNK_MIN_FILE_SIZE,
+                    CHUNK_WORKERS, QUEUE_SIZE, BATCH_SIZE, EXECUTION_MODE).run();
+
+            long[] totals = new long[2];
+            Map<String, Long> sharedSizeByDirectory = new HashMap<>();
+            fileRepository.forEachChunkedFile(file -> {
+                totals[0] += file.getChunkedSize();
+                totals[1] += file.getSharedSize();
+                if (file.getSharedSize() > 0) {
+                    sharedSizeByDirectory.merge(String.valueOf(Paths.get(file.getFilePath()).getParent()),
+                            file.getSharedSize(), Long::sum);
+                }
+            });
+            System.out.println("Разбиение на блоки: " + chunkCount + " блоков, " + totals[0]
+                    + " байт, из них повторяющихся: " + totals[1] + " байт");
+            sharedSizeByDirectory.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(CHUNK_REPORT_TOP)
+                    .forEach(entry -> System.out.println("Директория " + entry.getKey()
+                            + ": повторяющихся блоков " + entry.getValue() + " байт"));
+        } finally {
+            phase.close();
         }
-        return motherPath.toString();
     }
 
     /**
-     * Выстраивает относительный путь от файла, который нужно заменить на ссылку, к исходному.
+     * Заменяет дублирующиеся файлы на ссылки способом из настройки dedup.action
+     * (жёсткая ссылка, символическая ссылка или пробный запуск без изменения файлов, см. {@link DedupActions}).
+     * Пары (дубликат, исходный файл) читаются одним запросом, замены выполняются пулом потоков
+     * (см. {@link DuplicateReplacer}). Если хэш-суммы вычислены некриптографическим алгоритмом,
+     * совпадение содержимого перед заменой подтверждается хэш-суммой SHA-256.
+     * Итог сканирования дополняется местом, которое освободили выполненные замены (в том числе при ошибке).
      *
-     * @param link абсолютный путь к файлу, который необходимо заменить на ссылку
-     * @param file абсолютный путь к исходному файлу
+     * @param report итог сканирования
      *
-     * @return относительный путь к исходному файлу
-     */
-    private String giveRelativePathToMotherFile(String link, String file) {
-        String[] linkSplitPath = link.split("/");
-        String[] fileSplitPath = file.split("/");
-
-        return cdStringForPath(linkSplitPath) +
-                motherPathStringForPath(fileSplitPath) +
-                fileSplitPath[fileSplitPath.length - 1];
-    }
-
-    /**
-     * Заменяет дублирующиеся файлы на ссылки.
+     * @return итог сканирования с результатом замены
      */
-    public void replaceDuplicateFilesWithLinks(List<MyFile> allFilesInTable) {
-        for (MyFile myFile : allFilesInTable) {
-            String id = myFile.getId().toString();
-            String motherID = myFile.getMotherID();
-            String duplicateFilePath = myFile.getFilePath();
-
-            if (!id.equals(motherID)) {
-                String sourceFilePath = fileRepository.findById(motherID).getFilePath();
-                Path symbolicLink = Paths.get(duplicateFilePath);
-                Path sourcePath = Paths.get(giveRelativePathToMotherFile(duplicateFilePath, sourceFilePath));
-                try {
-                    Files.deleteIfExists(symbolicLink); // Удаление ссылки, если она уже существует
-                    Files.createSymbolicLink(symbolicLink, sourcePath); // Создание символической ссылки
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                //System.out.println("Файл успешно заменен на символическую ссылку.");
-            }
+    public ScanReport replaceDuplicateFilesWithLinks(ScanReport report) {
+        DedupAction dedupAction = DedupActions.configured();
+        var replacer = new DuplicateReplacer(fileRepository, dedupAction, DEDUP_WORKERS, QUEUE_SIZE, EXECUTION_MODE);
+        Measurement phase = MetricsRegistry.phase("link");
+        try {
+            replacer.run();
+            System.out.println("Замена дубликатов (" + dedupAction.getName() + "), освобождено: "
+                    + replacer.getReclaimedSize() + " байт");
+        } catch (IOException e) {
+            System.out.println("Ошибка при замене дубликатов: " + e.getMessage());
+        } finally {
+            phase.close();
         }
-        //System.out.println("Повторяющиеся файлы успешно заменены на ссылки");
-        //System.out.println("=========================");
+        return report.withReclaimedSize(replacer.getReclaimedSize(), dedupAction == DedupActions.DRY_RUN);
     }
 }
-
-
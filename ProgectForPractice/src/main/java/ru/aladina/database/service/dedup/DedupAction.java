@@ -0,0 +1,30 @@
+package ru.aladina.database.service.dedup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Интерфейс способа замены дублирующегося файла.
+ */
+public interface DedupAction {
+
+    /**
+     * Название способа, под которым он указывается в настройке dedup.action.
+     *
+     * @return название способа
+     */
+    String getName();
+
+    /**
+     * Заменяет дублирующийся файл ссылкой на исходный.
+     * (Замена атомарна: ссылка создаётся под временным именем и переименовывается поверх дубликата)
+     *
+     * @param duplicate абсолютный путь к дублирующемуся файлу
+     * @param mother абсолютный путь к исходному файлу
+     *
+     * @return true, если место, занимаемое дубликатом, освобождено (или было бы освобождено)
+     *
+     * @throws IOException ошибка при замене файла
+     */
+    boolean replace(Path duplicate, Path mother) throws IOException;
+}
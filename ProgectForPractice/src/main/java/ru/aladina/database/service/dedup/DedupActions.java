@@ -0,0 +1,151 @@
+package ru.aladina.database.service.dedup;
+
+import ru.aladina.database.property.PropertyContainer;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Доступные способы замены дублирующихся файлов.
+ * (Способ выбирается настройкой dedup.action, по умолчанию используется {@link #SYMLINK})
+ */
+public enum DedupActions implements DedupAction {
+    /**
+     * Жёсткая ссылка: дубликат становится ещё одним именем исходного файла, при чтении не нужно
+     * разрешать ссылку. Если файлы находятся в разных файловых системах, создаётся символическая ссылка.
+     * (Остальные ошибки создания жёсткой ссылки, например отказ в доступе, пробрасываются)
+     */
+    HARDLINK("hardlink") {
+        @Override
+        public boolean replace(Path duplicate, Path mother) throws IOException {
+            if (Files.isSameFile(duplicate, mother)) {
+                return false;
+            }
+            // Жёсткую ссылку нельзя создать между разными файловыми системами
+            if (!Files.getFileStore(duplicate).equals(Files.getFileStore(mother))) {
+                return SYMLINK.replace(duplicate, mother);
+            }
+            replaceAtomically(duplicate, temporary -> Files.createLink(temporary, mother));
+            return true;
+        }
+    },
+    /** Символическая ссылка с относительным путём к исходному файлу. */
+    SYMLINK("symlink") {
+        @Override
+        public boolean replace(Path duplicate, Path mother) throws IOException {
+            Path target = duplicate.getParent().relativize(mother);
+            replaceAtomically(duplicate, temporary -> Files.createSymbolicLink(temporary, target));
+            return true;
+        }
+    },
+    /** Пробный запуск: файлы не изменяются, только подсчитывается место, которое было бы освобождено. */
+    DRY_RUN("dry-run") {
+        @Override
+        public boolean replace(Path duplicate, Path mother) {
+            return true;
+        }
+    };
+
+    /** Суффикс временного имени ссылки. */
+    private static final String TEMPORARY_SUFFIX = ".dedup-tmp";
+    /** Количество попыток подобрать свободное временное имя. */
+    private static final int TEMPORARY_NAME_ATTEMPTS = 16;
+
+    /** Название способа. */
+    private final String name;
+
+    DedupActions(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Создание ссылки по указанному пути.
+     * (Если по этому пути уже есть файл, создание завершается ошибкой {@link FileAlreadyExistsException})
+     */
+    private interface LinkCreator {
+        void create(Path link) throws IOException;
+    }
+
+    /**
+     * Создаёт ссылку под временным именем рядом с дубликатом и переименовывает её поверх дубликата.
+     * (Переименование в пределах каталога атомарно, поэтому файл ни в какой момент не пропадает)
+     * Временное имя содержит случайную часть, а ссылка создаётся только на месте несуществующего файла,
+     * поэтому чужие файлы и ссылки одновременных замен не затрагиваются. Удаляется только ссылка,
+     * созданная здесь же, если её не удалось переименовать.
+     *
+     * @param duplicate путь к дублирующемуся файлу
+     * @param linkCreator создание ссылки
+     *
+     * @throws IOException ошибка при создании или переименовании ссылки
+     */
+    private static void replaceAtomically(Path duplicate, LinkCreator linkCreator) throws IOException {
+        Path temporary = createTemporaryLink(duplicate, linkCreator);
+        try {
+            Files.move(temporary, duplicate, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Создаёт ссылку под свободным временным именем рядом с дубликатом.
+     *
+     * @param duplicate путь к дублирующемуся файлу
+     * @param linkCreator создание ссылки
+     *
+     * @return путь к созданной ссылке
+     *
+     * @throws IOException ошибка при создании ссылки или свободное имя не найдено
+     */
+    private static Path createTemporaryLink(Path duplicate, LinkCreator linkCreator) throws IOException {
+        for (int attempt = 0; attempt < TEMPORARY_NAME_ATTEMPTS; attempt++) {
+            Path temporary = duplicate.resolveSibling("." + duplicate.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMPORARY_SUFFIX);
+            try {
+                linkCreator.create(temporary);
+                return temporary;
+            } catch (FileAlreadyExistsException e) {
+                // Имя занято: пробуем другое
+            }
+        }
+        throw new FileAlreadyExistsException(duplicate.toString(), null, "Не удалось подобрать временное имя ссылки");
+    }
+
+    /**
+     * Находит способ по названию.
+     *
+     * @param name название способа
+     *
+     * @return способ замены
+     *
+     * @throws IllegalArgumentException способ с таким названием не найден
+     */
+    public static DedupActions forName(String name) {
+        for (DedupActions action : values()) {
+            if (action.name.equalsIgnoreCase(name)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный способ замены дубликатов: " + name);
+    }
+
+    /**
+     * Способ, выбранный в настройках программы.
+     *
+     * @return способ из настройки dedup.action или {@link #SYMLINK}, если настройка не задана
+     */
+    public static DedupActions configured() {
+        var name = PropertyContainer.getProperty("dedup.action").trim();
+        return name.isEmpty() ? SYMLINK : forName(name);
+    }
+}
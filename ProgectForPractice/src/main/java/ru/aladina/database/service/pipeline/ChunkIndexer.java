@@ -0,0 +1,155 @@
+package ru.aladina.database.service.pipeline;
+
+import ru.aladina.database.concurrent.BoundedExecutor;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.hash.ContentChunker;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.repository.AsyncFileRepository;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.impl.BatchingAsyncFileRepository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Стадия разбиения файлов на блоки (см. {@link ContentChunker}).
+ * Записи таблицы читаются построчно, каждый исходный файл не меньше заданного размера разбивается
+ * на блоки в отдельной задаче (дубликаты повторяют блоки исходного файла, поэтому не разбиваются).
+ * Блоки передаются на запись пачками, не дожидаясь окончания разбиения файла.
+ * Таблица блоков заполняется заново при каждом запуске, запись идёт в одной транзакции.
+ */
+public class ChunkIndexer {
+    /** Манипулятор. */
+    private final FileRepository fileRepository;
+    /** Разбиение на блоки. */
+    private final ContentChunker chunker;
+    /** Наименьший размер разбиваемого файла (в байтах). */
+    private final long minFileSize;
+    /** Количество одновременно разбиваемых файлов. */
+    private final int workers;
+    /** Ёмкость очередей задач и записи. */
+    private final int queueSize;
+    /** Количество блоков в одной пачке записи. */
+    private final int batchSize;
+    /** Вид потоков разбиения. */
+    private final ExecutionMode executionMode;
+    /** Количество найденных блоков. */
+    private final AtomicLong chunkCount = new AtomicLong(0);
+    /** Первая ошибка, возникшая при разбиении или записи. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Конструктор для {@link ChunkIndexer}.
+     *
+     * @param fileRepository манипулятор
+     * @param chunker разбиение на блоки
+     * @param minFileSize наименьший размер разбиваемого файла (в байтах)
+     * @param workers количество одновременно разбиваемых файлов
+     * @param queueSize ёмкость очередей задач и записи
+     * @param batchSize количество блоков в одной пачке записи
+     * @param executionMode вид потоков разбиения
+     */
+    public ChunkIndexer(FileRepository fileRepository, ContentChunker chunker, long minFileSize, int workers,
+                        int queueSize, int batchSize, ExecutionMode executionMode) {
+        this.fileRepository = fileRepository;
+        this.chunker = chunker;
+        this.minFileSize = minFileSize;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Разбивает на блоки все исходные файлы таблицы и заносит блоки в таблицу блоков.
+     *
+     * @return количество найденных блоков
+     */
+    public long run() {
+        fileRepository.deleteTableInfo(FileChunk.TABLE_NAME);
+        try (AsyncFileRepository repository =
+                     new BatchingAsyncFileRepository(fileRepository, batchSize, queueSize, executionMode)) {
+            try (var executor = new BoundedExecutor(executionMode, "chunk-worker-", workers, queueSize)) {
+                fileRepository.forEachFile(record -> {
+                    if (failure == null && record.getSize() >= minFileSize
+                            && record.getId().toString().equals(record.getMotherID())) {
+                        executor.execute(() -> chunkFile(repository, record));
+                    }
+                });
+            }
+            if (failure == null) {
+                repository.commit().join();
+            }
+        } catch (CompletionException e) {
+            fail(e.getCause());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return chunkCount.get();
+    }
+
+    /**
+     * Разбивает один файл на блоки и передаёт блоки на запись.
+     * (Файл, который не удалось прочитать, пропускается)
+     *
+     * @param repository репозиторий для записи блоков
+     * @param record запись о файле
+     */
+    private void chunkFile(AsyncFileRepository repository, FileRecord record) {
+        if (failure != null) {
+            return;
+        }
+        var fileId = record.getId().toString();
+        List<FileChunk> batch = new ArrayList<>();
+        try {
+            chunker.chunk(Paths.get(record.getFilePath()), (offset, size, digest) -> {
+                batch.add(new FileChunk(fileId, offset, size, digest));
+                chunkCount.incrementAndGet();
+                MetricsRegistry.counter("chunk.count").increment();
+                if (batch.size() == batchSize) {
+                    watch(repository.createChunks(batch));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                watch(repository.createChunks(batch));
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка при разбиении файла " + record.getFilePath() + " на блоки: " + e.getMessage());
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Запоминает ошибку записи, чтобы остальные задачи перестали передавать блоки на запись.
+     *
+     * @param result результат записи
+     */
+    private void watch(CompletableFuture<Void> result) {
+        result.whenComplete((ignored, e) -> {
+            if (e != null) {
+                fail(e);
+            }
+        });
+    }
+
+    /**
+     * Запоминает ошибку, если до этого ошибок не было.
+     *
+     * @param e ошибка
+     */
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+        }
+    }
+}
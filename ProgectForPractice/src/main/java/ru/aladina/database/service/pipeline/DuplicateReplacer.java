@@ -0,0 +1,220 @@
+package ru.aladina.database.service.pipeline;
+
+import ru.aladina.database.concurrent.BoundedExecutor;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.metrics.MetricsRegistry;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.service.dedup.DedupAction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Стадия замены дублирующихся файлов ссылками.
+ * Пары (дубликат, исходный файл) читаются из таблицы одним запросом и распределяются по потокам
+ * замены с ограничением количества одновременных замен (см. {@link BoundedExecutor}).
+ * Итоги замены собираются по директориям дубликатов и выводятся после завершения всех замен.
+ * (Упорядоченность по полному пути не группирует файлы одной директории: её поддиректории
+ * оказываются между её файлами)
+ */
+public class DuplicateReplacer {
+    /** Манипулятор. */
+    private final FileRepository fileRepository;
+    /** Способ замены дубликатов. */
+    private final DedupAction dedupAction;
+    /** Количество потоков замены. */
+    private final int workers;
+    /** Ёмкость очереди замен. */
+    private final int queueSize;
+    /** Вид потоков замены. */
+    private final ExecutionMode executionMode;
+    /** Количество запоминаемых хэш-сумм исходных файлов. */
+    private static final int CONFIRMED_CACHE_SIZE = 1024;
+    /**
+     * Последние вычисленные хэш-суммы SHA-256 исходных файлов по их идентификаторам.
+     * (Дубликаты упорядочены по пути, а не по исходному файлу, поэтому хранятся только недавно использованные)
+     */
+    private final Map<String, String> confirmedMotherHashSums =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > CONFIRMED_CACHE_SIZE;
+                }
+            };
+    /** Размер освобождённого места (в байтах). */
+    private final AtomicLong reclaimedSize = new AtomicLong(0);
+    /** Первая ошибка, возникшая при замене. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Конструктор для {@link DuplicateReplacer}.
+     *
+     * @param fileRepository манипулятор
+     * @param dedupAction способ замены дубликатов
+     * @param workers количество потоков замены
+     * @param queueSize ёмкость очереди замен
+     * @param executionMode вид потоков замены
+     */
+    public DuplicateReplacer(FileRepository fileRepository, DedupAction dedupAction, int workers, int queueSize,
+                             ExecutionMode executionMode) {
+        this.fileRepository = fileRepository;
+        this.dedupAction = dedupAction;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Заменяет все дублирующиеся файлы таблицы ссылками на исходные.
+     *
+     * @return размер освобождённого места (в байтах)
+     *
+     * @throws IOException ошибка при замене файла
+     */
+    public long run() throws IOException {
+        Map<String, DirectoryProgress> directories = new HashMap<>();
+        try (var executor = new BoundedExecutor(executionMode, "dedup-worker-", workers, queueSize)) {
+            fileRepository.forEachDuplicate(duplicate -> {
+                if (failure != null) {
+                    return;
+                }
+                Path duplicatePath = Paths.get(duplicate.getFilePath());
+                String directory = String.valueOf(duplicatePath.getParent());
+                DirectoryProgress progress = directories.computeIfAbsent(directory, DirectoryProgress::new);
+                executor.execute(() -> {
+                    try {
+                        replace(duplicate, duplicatePath, progress);
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                });
+            });
+        }
+        new TreeMap<>(directories).values().forEach(DirectoryProgress::print);
+        if (failure != null) {
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            throw failure;
+        }
+        return reclaimedSize.get();
+    }
+
+    /**
+     * Размер места, освобождённого уже выполненными заменами.
+     *
+     * @return размер освобождённого места (в байтах)
+     */
+    public long getReclaimedSize() {
+        return reclaimedSize.get();
+    }
+
+    /**
+     * Заменяет один дублирующийся файл ссылкой на исходный.
+     *
+     * @param duplicate дублирующийся файл
+     * @param duplicatePath путь к дублирующемуся файлу
+     * @param progress итог директории дублирующегося файла
+     */
+    private void replace(DuplicateFile duplicate, Path duplicatePath, DirectoryProgress progress) {
+        long start = System.nanoTime();
+        try {
+            if (!isConfirmedDuplicate(duplicate)) {
+                System.out.println("Содержимое файла " + duplicate.getFilePath() + " не совпадает с "
+                        + duplicate.getMotherFilePath() + ", файл не заменён на ссылку");
+                MetricsRegistry.counter("link.mismatched").increment();
+                progress.skipped.incrementAndGet();
+                return;
+            }
+            if (dedupAction.replace(duplicatePath, Paths.get(duplicate.getMotherFilePath()))) {
+                reclaimedSize.addAndGet(duplicate.getSize());
+                MetricsRegistry.counter("link.replaced").increment();
+                progress.replaced.incrementAndGet();
+            } else {
+                MetricsRegistry.counter("link.skipped").increment();
+                progress.skipped.incrementAndGet();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            MetricsRegistry.timer("link.replace").recordSince(start);
+        }
+    }
+
+    /**
+     * Проверяет, что дублирующийся файл действительно совпадает по содержимому с исходным.
+     * Для криптографического алгоритма совпадения хэш-сумм достаточно, иначе сравниваются хэш-суммы SHA-256.
+     * (Хэш-сумма исходного файла запоминается для следующих его дубликатов; файл читается
+     * без блокировки, поэтому два потока могут изредка вычислить одну и ту же хэш-сумму)
+     *
+     * @param duplicate дублирующийся файл
+     *
+     * @return true, если содержимое файлов совпадает
+     *
+     * @throws IOException ошибка при вычислении хэш-суммы
+     */
+    private boolean isConfirmedDuplicate(DuplicateFile duplicate) throws IOException {
+        if (duplicate.getHashAlgorithm() == null
+                || FingerprintAlgorithms.forName(duplicate.getHashAlgorithm()).isCryptographic()) {
+            return true;
+        }
+        String motherID = duplicate.getMotherID();
+        String motherHashSum;
+        synchronized (confirmedMotherHashSums) {
+            motherHashSum = confirmedMotherHashSums.get(motherID);
+        }
+        if (motherHashSum == null) {
+            motherHashSum = FileHasher.toHex(FileHasher.digest(Paths.get(duplicate.getMotherFilePath())));
+            synchronized (confirmedMotherHashSums) {
+                String previous = confirmedMotherHashSums.putIfAbsent(motherID, motherHashSum);
+                if (previous != null) {
+                    motherHashSum = previous;
+                }
+            }
+        }
+        return motherHashSum.equals(FileHasher.toHex(FileHasher.digest(Paths.get(duplicate.getFilePath()))));
+    }
+
+    /**
+     * Запоминает ошибку замены, если до этого ошибок не было.
+     *
+     * @param e ошибка
+     */
+    private synchronized void fail(RuntimeException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Итог замены дубликатов в одной директории.
+     */
+    private static class DirectoryProgress {
+        /** Путь к директории. */
+        private final String directory;
+        /** Количество заменённых файлов. */
+        private final AtomicInteger replaced = new AtomicInteger();
+        /** Количество пропущенных файлов. */
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        DirectoryProgress(String directory) {
+            this.directory = directory;
+        }
+
+        void print() {
+            System.out.println("Директория " + directory + ": заменено " + replaced.get()
+                    + ", пропущено " + skipped.get());
+        }
+    }
+}
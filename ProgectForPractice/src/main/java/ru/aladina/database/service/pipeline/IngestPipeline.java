@@ -0,0 +1,425 @@
+package ru.aladina.database.service.pipeline;
+
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.AsyncFileRepository;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.impl.BatchingAsyncFileRepository;
+import ru.aladina.database.walk.FileTreeWalker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Конвейер заполнения таблицы файлами системы.
+ * Стадии конвейера работают одновременно и связаны ограниченными очередями:
+ * 1) Обход файловой системы (отдельный поток).
+ * 2) Распределение файлов по размеру (вызывающий поток). Файл с ещё не встречавшимся размером
+ * откладывается, остальные отправляются на вычисление хэш-суммы.
+ * 3) Вычисление частичной и, при совпадении частичных, полной хэш-суммы (пул потоков).
+ * Стадии выполняются в потоках операционной системы или в виртуальных потоках (см. {@link ExecutionMode}).
+ * 4) Запись файлов в базу данных пачками в одной транзакции (поток записи {@link AsyncFileRepository}).
+ * При повторном сканировании хэш-суммы файлов, которые не менялись с прошлого запуска,
+ * берутся из прежних записей таблицы, а сами такие записи не перезаписываются.
+ */
+public class IngestPipeline {
+    /** Признак окончания очереди обхода. */
+    private static final ScannedFile END_OF_SCAN = new ScannedFile(new MyFile(null), null);
+    /** Отметка в словаре частичных хэш-сумм о том, что такая частичная хэш-сумма встретилась несколько раз. */
+    private static final ScannedFile SHARED = new ScannedFile(new MyFile(null), null);
+    /** Манипулятор. */
+    private final FileRepository fileRepository;
+    /** Количество потоков обхода файловой системы. */
+    private final int walkThreads;
+    /** Количество потоков вычисления хэш-сумм. */
+    private final int hashWorkers;
+    /** Ёмкость очередей между стадиями. */
+    private final int queueSize;
+    /** Количество файлов в одной пачке записи. */
+    private final int batchSize;
+    /** Размер фрагмента в начале и в конце файла для частичной хэш-суммы (в байтах). */
+    private final int sampleSize;
+    /** Вид потоков стадий. */
+    private final ExecutionMode executionMode;
+    /** Название алгоритма вычисления хэш-сумм. */
+    private final String hashAlgorithm = FingerprintAlgorithms.configured().getName();
+    /** Первая ошибка, возникшая в одной из стадий. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Конструктор для {@link IngestPipeline}.
+     *
+     * @param fileRepository манипулятор
+     * @param walkThreads количество потоков обхода файловой системы
+     * @param hashWorkers количество потоков вычисления хэш-сумм
+     * @param queueSize ёмкость очередей между стадиями
+     * @param batchSize количество файлов в одной пачке записи
+     * @param sampleSize размер фрагмента для частичной хэш-суммы (в байтах)
+     * @param executionMode вид потоков обхода и вычисления хэш-сумм
+     */
+    public IngestPipeline(FileRepository fileRepository, int walkThreads, int hashWorkers, int queueSize, int batchSize,
+                          int sampleSize, ExecutionMode executionMode) {
+        this.fileRepository = fileRepository;
+        this.walkThreads = walkThreads;
+        this.hashWorkers = hashWorkers;
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.sampleSize = sampleSize;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Заносит в пустую таблицу все обычные файлы (без директорий и ссылок) указанной директории.
+     *
+     * @param directory главная директория файловой системы
+     *
+     * @return счётчики, собранные при обходе
+     *
+     * @throws IOException ошибка при обходе файловой системы
+     */
+    public ScanStatistics run(Path directory) throws IOException {
+        return run(directory, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Приводит таблицу в соответствие со всеми обычными файлами (без директорий и ссылок) указанной директории.
+     * Новые и изменённые файлы заносятся в таблицу заново, записи о неизменённых файлах остаются как есть,
+     * записи об исчезнувших файлах удаляются.
+     *
+     * @param directory главная директория файловой системы
+     * @param previousFiles записи таблицы, сделанные при прошлом сканировании, по путям к файлам
+     * (словарь изменяется: найденные при обходе файлы удаляются из него сразу несколькими потоками,
+     * поэтому он должен допускать одновременное изменение)
+     *
+     * @return счётчики, собранные при обходе
+     *
+     * @throws IOException ошибка при обходе файловой системы
+     */
+    public ScanStatistics run(Path directory, Map<String, FileRecord> previousFiles) throws IOException {
+        ScanStatistics statistics = new ScanStatistics(blockSize(directory));
+        BlockingQueue<ScannedFile> scanQueue = new ArrayBlockingQueue<>(queueSize);
+        BlockingQueue<ScannedFile> hashQueue = new ArrayBlockingQueue<>(queueSize);
+        Map<String, ScannedFile> filesByPartialHashSum = new ConcurrentHashMap<>();
+
+        // Запись идёт в одной транзакции: при ошибке таблица остаётся в прежнем состоянии
+        try (AsyncFileRepository repository =
+                     new BatchingAsyncFileRepository(fileRepository, batchSize, queueSize, executionMode)) {
+            Thread walker = startStage("scan-walker", () -> walk(directory, previousFiles, scanQueue, statistics));
+            List<Thread> hashers = new ArrayList<>();
+            for (int i = 0; i < hashWorkers; i++) {
+                hashers.add(startStage("scan-hasher-" + i, () -> hash(hashQueue, repository, filesByPartialHashSum)));
+            }
+
+            try {
+                Map<Long, ScannedFile> firstFileBySize = dispatch(scanQueue, hashQueue);
+                walker.join();
+                for (int i = 0; i < hashWorkers; i++) {
+                    hashQueue.put(END_OF_SCAN);
+                }
+                for (Thread hasher : hashers) {
+                    hasher.join();
+                }
+                // Файлы, для которых не нашлось пары ни по размеру, ни по частичной хэш-сумме, дубликатов не имеют
+                for (ScannedFile file : firstFileBySize.values()) {
+                    store(repository, toUniqueFile(file));
+                }
+                for (ScannedFile file : filesByPartialHashSum.values()) {
+                    if (file != SHARED) {
+                        store(repository, toUniqueFile(file));
+                    }
+                }
+                if (failure == null) {
+                    // Оставшихся в словаре файлов при обходе не нашлось
+                    repository.deleteByPaths(new ArrayList<>(previousFiles.keySet()));
+                    repository.commit().join();
+                }
+            } catch (CompletionException e) {
+                fail(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Заполнение таблицы прервано", e);
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            throw failure;
+        }
+        return statistics;
+    }
+
+    /**
+     * Размер блока файловой системы, в которой находится директория.
+     *
+     * @param directory главная директория файловой системы
+     *
+     * @return размер блока (в байтах) или 0, если файловая система его не сообщает
+     */
+    private static long blockSize(Path directory) {
+        try {
+            return Files.getFileStore(directory).getBlockSize();
+        } catch (IOException | UnsupportedOperationException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Запускает стадию конвейера в отдельном потоке.
+     * Ошибка стадии запоминается и пробрасывается из {@link #run(Path)} после остановки конвейера.
+     *
+     * @param name имя потока
+     * @param stage стадия конвейера
+     *
+     * @return запущенный поток
+     */
+    private Thread startStage(String name, Stage stage) {
+        Thread thread = executionMode.newThread(name, () -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Запоминает ошибку стадии, если до этого ошибок не было.
+     *
+     * @param e ошибка
+     */
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Стадия обхода: помещает в очередь все обычные файлы директории.
+     * (Атрибуты каждого файла читаются с диска один раз, см. {@link FileTreeWalker})
+     *
+     * @param directory главная директория файловой системы
+     * @param previousFiles записи таблицы, сделанные при прошлом сканировании
+     * @param scanQueue очередь найденных файлов
+     * @param statistics счётчики сканирования
+     *
+     * @throws InterruptedException поток прерван
+     */
+    private void walk(Path directory, Map<String, FileRecord> previousFiles, BlockingQueue<ScannedFile> scanQueue,
+                      ScanStatistics statistics) throws InterruptedException {
+        try {
+            new FileTreeWalker(walkThreads, executionMode).walk(directory, (path, attributes) -> {
+                statistics.record(attributes);
+                if (attributes.isRegularFile()) {
+                    var myFile = new MyFile(path.toAbsolutePath().toString()).applyAttributes(attributes);
+                    myFile.setHashAlgorithm(hashAlgorithm);
+                    scanQueue.put(new ScannedFile(myFile, previousFiles.remove(myFile.getFilePath())));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            scanQueue.put(END_OF_SCAN);
+        }
+    }
+
+    /**
+     * Стадия распределения по размеру. Первый файл каждого размера откладывается,
+     * при появлении второго файла того же размера оба отправляются на вычисление хэш-суммы.
+     *
+     * @param scanQueue очередь найденных файлов
+     * @param hashQueue очередь файлов, для которых нужно вычислить хэш-сумму
+     *
+     * @return отложенные файлы с уникальным размером
+     *
+     * @throws InterruptedException поток прерван
+     */
+    private Map<Long, ScannedFile> dispatch(BlockingQueue<ScannedFile> scanQueue, BlockingQueue<ScannedFile> hashQueue)
+            throws InterruptedException {
+        Map<Long, ScannedFile> firstFileBySize = new HashMap<>();
+        for (ScannedFile file = scanQueue.take(); file != END_OF_SCAN; file = scanQueue.take()) {
+            ScannedFile first = firstFileBySize.putIfAbsent(file.size, file);
+            if (first == SHARED) {
+                hashQueue.put(file);
+            } else if (first != null) {
+                firstFileBySize.put(file.size, SHARED);
+                hashQueue.put(first);
+                hashQueue.put(file);
+            }
+        }
+        firstFileBySize.values().removeIf(file -> file == SHARED);
+        return firstFileBySize;
+    }
+
+    /**
+     * Стадия вычисления хэш-сумм. Для каждого файла вычисляется частичная хэш-сумма,
+     * полная вычисляется только при совпадении частичной с частичной хэш-суммой другого файла того же размера.
+     *
+     * @param hashQueue очередь файлов, для которых нужно вычислить хэш-сумму
+     * @param repository репозиторий для записи файлов
+     * @param filesByPartialHashSum первые файлы с каждой частичной хэш-суммой
+     *
+     * @throws InterruptedException поток прерван
+     */
+    private void hash(BlockingQueue<ScannedFile> hashQueue, AsyncFileRepository repository,
+                      Map<String, ScannedFile> filesByPartialHashSum) throws InterruptedException {
+        for (ScannedFile file = hashQueue.take(); file != END_OF_SCAN; file = hashQueue.take()) {
+            try {
+                if (file.unchanged && file.previous.getPartialHashSum() != null) {
+                    file.myFile.setPartialHashSum(file.previous.getPartialHashSum());
+                } else {
+                    file.myFile.findPartialHashSum(sampleSize);
+                }
+                String key = file.size + ":" + file.myFile.getPartialHashSum();
+                ScannedFile first = filesByPartialHashSum.putIfAbsent(key, file);
+                if (first == null) {
+                    continue;
+                }
+                if (first != SHARED && filesByPartialHashSum.replace(key, first, SHARED)) {
+                    // Первый файл уже не лежит в словаре: ошибка его хэш-суммы не должна помешать записи текущего
+                    storeWithFullHashSum(repository, first);
+                }
+                storeWithFullHashSum(repository, file);
+            } catch (IOException e) {
+                System.out.println("Ошибка при вычислении хэш-суммы файла " + file.myFile.getFilePath() + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Продолжаем разбирать очередь, чтобы не остановить остальные стадии
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Вычисляет полную хэш-сумму файла и передаёт его на запись. Если хэш-сумму вычислить не удалось,
+     * файл пропускается с сообщением об ошибке.
+     *
+     * @param repository репозиторий для записи файлов
+     * @param file файл
+     */
+    private void storeWithFullHashSum(AsyncFileRepository repository, ScannedFile file) {
+        try {
+            store(repository, withFullHashSum(file));
+        } catch (IOException e) {
+            System.out.println("Ошибка при вычислении хэш-суммы файла " + file.myFile.getFilePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Передаёт файл на запись в таблицу, предварительно удаляя прежнюю запись о нём.
+     * (Запросы объединяются в пачки потоком записи репозитория, см. {@link BatchingAsyncFileRepository})
+     *
+     * @param repository репозиторий для записи файлов
+     * @param file файл
+     */
+    private void store(AsyncFileRepository repository, ScannedFile file) {
+        if (failure != null
+                || file.unchanged && Objects.equals(file.previous.getHashSum(), file.myFile.getHashSum())) {
+            // После ошибки записывать нечего, а запись о неизменённом файле уже актуальна
+            return;
+        }
+        if (file.previous != null) {
+            watch(repository.deleteByPaths(List.of(file.myFile.getFilePath())));
+        }
+        watch(repository.createAll(List.of(file.myFile)));
+    }
+
+    /**
+     * Запоминает ошибку записи, чтобы остальные стадии перестали передавать файлы на запись.
+     *
+     * @param result результат записи
+     */
+    private void watch(CompletableFuture<Void> result) {
+        result.whenComplete((ignored, e) -> {
+            if (e != null) {
+                fail(e);
+            }
+        });
+    }
+
+    /**
+     * Вычисляет полную хэш-сумму файла. Если файл не длиннее двух фрагментов частичной хэш-суммы,
+     * частичная хэш-сумма уже посчитана по всему содержимому и используется как полная.
+     *
+     * @param file файл
+     *
+     * @return файл с вычисленной хэш-суммой
+     *
+     * @throws IOException ошибка при вычислении хэш-суммы
+     */
+    private ScannedFile withFullHashSum(ScannedFile file) throws IOException {
+        if (file.unchanged && !file.previous.isUnique()) {
+            file.myFile.setHashSum(file.previous.getHashSum());
+        } else if (file.size <= 2L * sampleSize) {
+            file.myFile.setHashSum(file.myFile.getPartialHashSum());
+        } else {
+            file.myFile.findHashSum();
+        }
+        return file;
+    }
+
+    /**
+     * Отмечает файл как не имеющий дубликатов. Для неизменённого файла сохраняются
+     * прежние хэш-суммы, так как они по-прежнему верны.
+     *
+     * @param file файл
+     *
+     * @return файл с отметкой {@link MyFile#UNIQUE_HASH_SUM} или прежней хэш-суммой
+     */
+    private ScannedFile toUniqueFile(ScannedFile file) {
+        if (file.unchanged) {
+            file.myFile.setHashSum(file.previous.getHashSum());
+            file.myFile.setPartialHashSum(file.previous.getPartialHashSum());
+        } else {
+            file.myFile.setHashSum(MyFile.UNIQUE_HASH_SUM);
+        }
+        return file;
+    }
+
+    /**
+     * Стадия конвейера.
+     */
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Файл, найденный при обходе файловой системы.
+     */
+    private static final class ScannedFile {
+        /** Файл для записи в таблицу. */
+        private final MyFile myFile;
+        /** Размер файла. */
+        private final long size;
+        /** Запись о файле, сделанная при прошлом сканировании (null для нового файла). */
+        private final FileRecord previous;
+        /** Файл не менялся с прошлого сканирования. */
+        private final boolean unchanged;
+
+        private ScannedFile(MyFile myFile, FileRecord previous) {
+            this.myFile = myFile;
+            this.size = myFile.getSize() == null ? -1 : myFile.getSize();
+            this.previous = previous;
+            this.unchanged = previous != null && previous.isUnchanged(myFile)
+                    && Objects.equals(previous.getHashAlgorithm(), myFile.getHashAlgorithm());
+        }
+    }
+}
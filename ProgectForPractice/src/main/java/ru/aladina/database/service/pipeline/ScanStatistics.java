@@ -0,0 +1,60 @@
+package ru.aladina.database.service.pipeline;
+
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.ScanReport;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики, собираемые при обходе файловой системы (обновляются из нескольких потоков одновременно).
+ */
+public class ScanStatistics {
+    /** Размер блока файловой системы (в байтах). */
+    private final long blockSize;
+    /** Количество обычных файлов. */
+    private final LongAdder fileCount = new LongAdder();
+    /** Количество символических ссылок. */
+    private final LongAdder linkCount = new LongAdder();
+    /** Суммарный размер файлов. */
+    private final LongAdder logicalSize = new LongAdder();
+    /** Суммарный размер файлов, округлённый до размера блока. */
+    private final LongAdder blockRoundedSize = new LongAdder();
+
+    /**
+     * Конструктор для {@link ScanStatistics}.
+     *
+     * @param blockSize размер блока файловой системы (в байтах), 0 - если неизвестен
+     */
+    public ScanStatistics(long blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Учитывает элемент файловой системы.
+     *
+     * @param attributes атрибуты элемента
+     */
+    public void record(BasicFileAttributes attributes) {
+        if (attributes.isSymbolicLink()) {
+            linkCount.increment();
+        } else if (attributes.isRegularFile()) {
+            long size = attributes.size();
+            fileCount.increment();
+            logicalSize.add(size);
+            blockRoundedSize.add(blockSize <= 0 ? size : (size + blockSize - 1) / blockSize * blockSize);
+        }
+    }
+
+    /**
+     * Формирует итог сканирования по собранным счётчикам и сведениям о дубликатах из таблицы.
+     *
+     * @param catalogSummary сводка по таблице
+     *
+     * @return итог сканирования
+     */
+    public ScanReport toReport(CatalogSummary catalogSummary) {
+        return new ScanReport(fileCount.sum(), linkCount.sum(), logicalSize.sum(), blockRoundedSize.sum(),
+                catalogSummary.getDuplicateCount(), catalogSummary.getDuplicateSize());
+    }
+}
@@ -0,0 +1,297 @@
+package ru.aladina.database.walk;
+
+import ru.aladina.database.concurrent.ExecutionMode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обход дерева файлов, при котором атрибуты каждого элемента читаются с диска ровно один раз
+ * и передаются обработчику вместе с путём.
+ * Поддиректории обходятся параллельно в {@link ForkJoinPool} (свободные потоки забирают
+ * необойдённые поддиректории у занятых). Символические ссылки не разыменовываются.
+ * На виртуальных потоках атрибуты каждого элемента читаются в своём потоке, поэтому одновременно
+ * ожидают ответа файловой системы до parallelism операций (см. {@link ExecutionMode#VIRTUAL}).
+ */
+public class FileTreeWalker {
+    /** Количество потоков обхода (для виртуальных потоков - одновременных чтений атрибутов). */
+    private final int parallelism;
+    /** Вид потоков обхода. */
+    private final ExecutionMode executionMode;
+
+    /**
+     * Обработчик элемента дерева файлов (вызывается из нескольких потоков одновременно).
+     */
+    public interface EntryVisitor {
+        /**
+         * Обрабатывает элемент дерева, не являющийся директорией.
+         *
+         * @param path путь к элементу
+         * @param attributes атрибуты элемента (без разыменования ссылок)
+         *
+         * @throws InterruptedException поток прерван
+         */
+        void visit(Path path, BasicFileAttributes attributes) throws InterruptedException;
+    }
+
+    /**
+     * Конструктор для {@link FileTreeWalker}.
+     *
+     * @param parallelism количество потоков обхода
+     */
+    public FileTreeWalker(int parallelism) {
+        this(parallelism, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Конструктор для {@link FileTreeWalker}.
+     *
+     * @param parallelism количество потоков обхода (для виртуальных потоков - одновременных чтений атрибутов)
+     * @param executionMode вид потоков обхода
+     */
+    public FileTreeWalker(int parallelism, ExecutionMode executionMode) {
+        this.parallelism = parallelism;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Обходит дерево файлов и передаёт обработчику все элементы, кроме директорий.
+     *
+     * @param root корень дерева
+     * @param visitor обработчик элементов
+     *
+     * @throws IOException ошибка при чтении директории или атрибутов
+     * @throws InterruptedException поток прерван
+     */
+    public void walk(Path root, EntryVisitor visitor) throws IOException, InterruptedException {
+        BasicFileAttributes rootAttributes =
+                Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!rootAttributes.isDirectory()) {
+            visitor.visit(root, rootAttributes);
+            return;
+        }
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            new VirtualWalk(visitor).walk(root);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(root, visitor));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (WalkInterruptedException e) {
+            throw e.interruption;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Обход одной директории: элементы передаются обработчику, поддиректории обходятся отдельными задачами.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** Путь к директории. (Задачи не сериализуются, поэтому поля не сохраняются) */
+        private final transient Path directory;
+        /** Обработчик элементов. */
+        private final transient EntryVisitor visitor;
+
+        DirectoryTask(Path directory, EntryVisitor visitor) {
+            this.directory = directory;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes =
+                            Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        DirectoryTask subdirectory = new DirectoryTask(entry, visitor);
+                        subdirectory.fork();
+                        subdirectories.add(subdirectory);
+                    } else {
+                        visitor.visit(entry, attributes);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WalkInterruptedException(e);
+            }
+            for (DirectoryTask subdirectory : subdirectories) {
+                subdirectory.join();
+            }
+        }
+    }
+
+    /**
+     * Обход на виртуальных потоках: каждая директория читается в своём потоке, атрибуты каждого
+     * её элемента - тоже. Чтение директории ждёт разрешения перед запуском чтения атрибутов,
+     * поэтому потоков, ожидающих файловую систему, не больше {@link #parallelism}.
+     */
+    private class VirtualWalk {
+        /** Обработчик элементов. */
+        private final EntryVisitor visitor;
+        /** Фабрика виртуальных потоков. */
+        private final ThreadFactory threadFactory = executionMode.threadFactory("scan-walker-");
+        /** Разрешения на одновременное чтение атрибутов. */
+        private final Semaphore permits = new Semaphore(parallelism);
+        /** Количество незавершённых потоков обхода. */
+        private final AtomicLong pending = new AtomicLong();
+        /** Отметка о завершении всех потоков обхода. */
+        private final CountDownLatch finished = new CountDownLatch(1);
+        /** Первая ошибка обхода. */
+        private volatile Exception failure;
+
+        VirtualWalk(EntryVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        /**
+         * Обходит дерево и ждёт завершения всех потоков обхода.
+         *
+         * @param root корень дерева (директория)
+         *
+         * @throws IOException ошибка при чтении директории или атрибутов
+         * @throws InterruptedException поток прерван
+         */
+        void walk(Path root) throws IOException, InterruptedException {
+            start(() -> readDirectory(root));
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                // Остальные потоки обхода останавливаются, увидев ошибку
+                fail(e);
+                throw e;
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof InterruptedException) {
+                throw (InterruptedException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+        }
+
+        /**
+         * Запускает задачу обхода в новом виртуальном потоке.
+         *
+         * @param task задача обхода
+         */
+        private void start(WalkTask task) {
+            pending.incrementAndGet();
+            threadFactory.newThread(() -> {
+                try {
+                    task.run();
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    fail(e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        /**
+         * Читает директорию и запускает чтение атрибутов каждого её элемента.
+         *
+         * @param directory путь к директории
+         *
+         * @throws IOException ошибка при чтении директории
+         * @throws InterruptedException поток прерван
+         */
+        private void readDirectory(Path directory) throws IOException, InterruptedException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (failure != null) {
+                        return;
+                    }
+                    permits.acquire();
+                    start(() -> readEntry(entry));
+                }
+            }
+        }
+
+        /**
+         * Читает атрибуты элемента и передаёт его обработчику либо запускает обход поддиректории.
+         * (Вызывается с полученным разрешением на чтение атрибутов)
+         *
+         * @param entry путь к элементу
+         *
+         * @throws IOException ошибка при чтении атрибутов
+         * @throws InterruptedException поток прерван
+         */
+        private void readEntry(Path entry) throws IOException, InterruptedException {
+            boolean directory = false;
+            // Разрешение удерживается и на время обработки, чтобы обработчик, ждущий очередь, не копил потоки
+            try {
+                if (failure != null) {
+                    return;
+                }
+                BasicFileAttributes attributes =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                directory = attributes.isDirectory();
+                if (!directory) {
+                    visitor.visit(entry, attributes);
+                }
+            } finally {
+                permits.release();
+            }
+            if (directory) {
+                start(() -> readDirectory(entry));
+            }
+        }
+
+        /**
+         * Запоминает ошибку обхода, если до этого ошибок не было.
+         *
+         * @param e ошибка
+         */
+        private synchronized void fail(Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Задача обхода, выполняемая в виртуальном потоке.
+     */
+    private interface WalkTask {
+        void run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Прерывание обработчика, переданное из задачи обхода.
+     */
+    private static class WalkInterruptedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        /** Исходное прерывание. */
+        private final InterruptedException interruption;
+
+        WalkInterruptedException(InterruptedException interruption) {
+            super(interruption);
+            this.interruption = interruption;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.aladina.database.hash.ContentChunker;
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение скорости разбиения файла на блоки {@link ContentChunker} (скользящая хэш-сумма
+ * и хэш-сумма каждого блока) с вычислением хэш-суммы всего файла {@link FileHasher} тем же алгоритмом.
+ * (Запуск: mvn -P benchmark test -Dbenchmark.include=ChunkingBenchmark или main-метод класса с classpath тестов)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+    /** Размер файла (в байтах). */
+    @Param({"1048576", "67108864"})
+    private int fileSize;
+    /** Алгоритм хэш-суммы. */
+    @Param({"murmur3-128", "sha-256"})
+    private String algorithm;
+    /** Путь к временному файлу. */
+    private Path file;
+    /** Разбиение на блоки. */
+    private ContentChunker chunker;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(fileSize).nextBytes(content);
+        file = Files.createTempFile("chunking-benchmark", ".bin");
+        Files.write(file, content);
+        chunker = new ContentChunker(2 * 1024, 8 * 1024, 64 * 1024, FingerprintAlgorithms.forName(algorithm));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] fileHasher() throws IOException {
+        return FileHasher.digest(file, FingerprintAlgorithms.forName(algorithm));
+    }
+
+    @Benchmark
+    public long contentChunker(Blackhole blackhole) throws IOException {
+        return chunker.chunk(file, (offset, size, digest) -> blackhole.consume(digest));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,160 @@
+package ru.aladina.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генератор синтетического дерева файлов для бенчмарков.
+ * Дерево полностью определяется параметрами и начальным значением генератора случайных чисел,
+ * поэтому при одинаковых параметрах на любой машине получается одно и то же дерево.
+ */
+public class FileTreeGenerator {
+    /**
+     * Распределение размеров файлов.
+     */
+    public enum SizeDistribution {
+        /** Размеры равномерно распределены между минимальным и максимальным. */
+        UNIFORM,
+        /** Логарифм размера распределён равномерно: много маленьких файлов и немного больших. */
+        LOG_UNIFORM
+    }
+
+    /** Начальное значение генератора случайных чисел. */
+    private final long seed;
+    /** Количество файлов. */
+    private final int fileCount;
+    /** Глубина вложенности директорий. */
+    private final int depth;
+    /** Количество поддиректорий в каждой директории. */
+    private final int fanout;
+    /** Минимальный размер файла (в байтах). */
+    private final int minSize;
+    /** Максимальный размер файла (в байтах). */
+    private final int maxSize;
+    /** Распределение размеров файлов. */
+    private final SizeDistribution sizeDistribution;
+    /** Доля файлов, повторяющих содержимое одного из предыдущих файлов. */
+    private final double duplicateRatio;
+
+    /**
+     * Конструктор для {@link FileTreeGenerator}.
+     *
+     * @param seed начальное значение генератора случайных чисел
+     * @param fileCount количество файлов
+     * @param depth глубина вложенности директорий
+     * @param fanout количество поддиректорий в каждой директории
+     * @param minSize минимальный размер файла (в байтах)
+     * @param maxSize максимальный размер файла (в байтах)
+     * @param sizeDistribution распределение размеров файлов
+     * @param duplicateRatio доля дублирующихся файлов (от 0 до 1)
+     */
+    public FileTreeGenerator(long seed, int fileCount, int depth, int fanout, int minSize, int maxSize,
+                             SizeDistribution sizeDistribution, double duplicateRatio) {
+        this.seed = seed;
+        this.fileCount = fileCount;
+        this.depth = depth;
+        this.fanout = fanout;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.sizeDistribution = sizeDistribution;
+        this.duplicateRatio = duplicateRatio;
+    }
+
+    /**
+     * Вычисляет пути файлов дерева, не создавая их на диске.
+     *
+     * @param root корень дерева
+     *
+     * @return пути файлов в порядке создания
+     */
+    public List<Path> plan(Path root) {
+        Random random = new Random(seed);
+        List<Path> paths = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            paths.add(pathOf(root, i, random));
+        }
+        return paths;
+    }
+
+    /**
+     * Создаёт дерево файлов на диске.
+     *
+     * @param root корень дерева (создаётся, если не существует)
+     *
+     * @return пути созданных файлов в порядке создания
+     *
+     * @throws IOException ошибка при создании файла
+     */
+    public List<Path> generate(Path root) throws IOException {
+        // Расположение файлов выбирается тем же генератором, что и в plan, поэтому пути совпадают
+        Random layoutRandom = new Random(seed);
+        Random duplicateRandom = new Random(~seed);
+        List<Path> paths = new ArrayList<>(fileCount);
+        // Для каждого файла запоминается номер файла, содержимое которого он повторяет
+        int[] contentSources = new int[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            Path path = pathOf(root, i, layoutRandom);
+            contentSources[i] = i > 0 && duplicateRandom.nextDouble() < duplicateRatio
+                    ? contentSources[duplicateRandom.nextInt(i)]
+                    : i;
+            Files.createDirectories(path.getParent());
+            Files.write(path, contentOf(contentSources[i]));
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * Удаляет дерево файлов.
+     *
+     * @param root корень дерева
+     *
+     * @throws IOException ошибка при удалении файла
+     */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (var walk = Files.walk(root)) {
+            walk.forEach(paths::add);
+        }
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Files.delete(paths.get(i));
+        }
+    }
+
+    /**
+     * Выбирает директорию для файла с заданным номером.
+     */
+    private Path pathOf(Path root, int index, Random random) {
+        Path directory = root;
+        int level = depth == 0 ? 0 : 1 + random.nextInt(depth);
+        for (int i = 0; i < level; i++) {
+            directory = directory.resolve("d" + random.nextInt(fanout));
+        }
+        return directory.resolve("f" + index + ".bin");
+    }
+
+    /**
+     * Формирует содержимое файла с заданным номером (размер и байты зависят только от номера и seed).
+     */
+    private byte[] contentOf(int index) {
+        Random random = new Random(seed * 31 + index);
+        int size;
+        if (sizeDistribution == SizeDistribution.LOG_UNIFORM) {
+            double logMin = Math.log(Math.max(1, minSize));
+            double logMax = Math.log(Math.max(1, maxSize));
+            size = (int) Math.round(Math.exp(logMin + random.nextDouble() * (logMax - logMin)));
+        } else {
+            size = minSize + random.nextInt(maxSize - minSize + 1);
+        }
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.hash.HashCache;
+import ru.aladina.database.model.MyFile;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение скорости вычисления хэш-суммы файла прежним способом
+ * (побайтовое чтение {@link DigestInputStream} и {@link String#format}), при помощи {@link FileHasher},
+ * через {@link MyFile#findHashSum()} (алгоритм из настройки hash.algorithm) и при попадании в кэш {@link HashCache}.
+ * (Запуск: mvn -P benchmark test -Dbenchmark.include=HashingBenchmark или main-метод класса с classpath тестов)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+    /** Размер файла (в байтах). */
+    @Param({"4096", "1048576", "67108864"})
+    private int fileSize;
+    /** Путь к временному файлу. */
+    private Path file;
+    /** Путь к временному файлу кэша. */
+    private Path cacheFile;
+    /** Кэш хэш-сумм с уже занесённой хэш-суммой файла. */
+    private HashCache hashCache;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(fileSize).nextBytes(content);
+        file = Files.createTempFile("hashing-benchmark", ".bin");
+        Files.write(file, content);
+        cacheFile = Files.createTempFile("hashing-benchmark", ".cache");
+        hashCache = new HashCache(cacheFile, 1024);
+        hashCacheHit();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        hashCache.close();
+        Files.deleteIfExists(cacheFile);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String digestInputStream() throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        try (FileInputStream fis = new FileInputStream(file.toFile()); DigestInputStream dis = new DigestInputStream(fis, md)) {
+            while (dis.read() != -1) ;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        for (byte b : md.digest()) {
+            stringBuilder.append(String.format("%02x", b));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Benchmark
+    public String fileHasher() throws IOException {
+        return FileHasher.toHex(FileHasher.digest(file));
+    }
+
+    @Benchmark
+    public String myFileFindHashSum() throws IOException {
+        return new MyFile(file.toString()).findHashSum();
+    }
+
+    @Benchmark
+    public byte[] hashCacheHit() throws IOException {
+        return hashCache.digest(file.toString(), fileSize, 0, 0, FingerprintAlgorithms.SHA_256,
+                () -> FileHasher.digest(file));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HashingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость построения относительного пути от дубликата к исходному файлу (путей в секунду):
+ * прежний способ giveRelativePathToMotherFile (разбиение строк по '/') и {@link Path#relativize}.
+ * (Запуск: mvn -P benchmark test -Dbenchmark.include=RelativePathBenchmark)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelativePathBenchmark {
+    /** Количество пар путей. */
+    private static final int PAIR_COUNT = 10000;
+    /** Главная директория файловой системы. */
+    private static final String FILESYSTEM_PATH = "/home/benchmark/test";
+    /** Имя главной директории. */
+    private static final String FILESYSTEM_NAME = "test";
+    /** Уровень расположения имени главной директории в абсолютных путях. */
+    private static final int FILESYSTEM_LEVEL = FILESYSTEM_PATH.split("/").length - 1;
+    /** Пути дубликатов. */
+    private List<Path> duplicates;
+    /** Пути исходных файлов. */
+    private List<Path> mothers;
+
+    @Setup(Level.Trial)
+    public void createPaths() {
+        duplicates = new FileTreeGenerator(1, PAIR_COUNT, 6, 8, 0, 0,
+                FileTreeGenerator.SizeDistribution.UNIFORM, 0).plan(Paths.get(FILESYSTEM_PATH));
+        mothers = new FileTreeGenerator(2, PAIR_COUNT, 6, 8, 0, 0,
+                FileTreeGenerator.SizeDistribution.UNIFORM, 0).plan(Paths.get(FILESYSTEM_PATH));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIR_COUNT)
+    public void splitStrings(Blackhole blackhole) {
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            blackhole.consume(giveRelativePathToMotherFile(duplicates.get(i).toString(), mothers.get(i).toString()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIR_COUNT)
+    public void relativize(Blackhole blackhole) {
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            blackhole.consume(duplicates.get(i).getParent().relativize(mothers.get(i)));
+        }
+    }
+
+    /**
+     * Прежний способ построения относительного пути (из FileService до перехода на {@link Path#relativize}).
+     */
+    private static String giveRelativePathToMotherFile(String link, String file) {
+        String[] linkSplitPath = link.split("/");
+        String[] fileSplitPath = file.split("/");
+
+        StringBuilder cdPath = new StringBuilder();
+        boolean flag = true;
+        for (int i = linkSplitPath.length - 2; i > 0; i--) {
+            if (flag && !Objects.equals(linkSplitPath[i], FILESYSTEM_NAME)) {
+                cdPath.append("../");
+            }
+            if (Objects.equals(linkSplitPath[i], FILESYSTEM_NAME)) {
+                flag = false;
+            }
+        }
+        StringBuilder motherPath = new StringBuilder();
+        int index = 0;
+        for (int i = 0; i < fileSplitPath.length - 1; i++) {
+            if (fileSplitPath[i].equals(FILESYSTEM_NAME) && i == FILESYSTEM_LEVEL) {
+                index = i + 1;
+            }
+            if (index <= i && index != 0) {
+                motherPath.append(fileSplitPath[i]).append("/");
+            }
+        }
+        return cdPath.toString() + motherPath + fileSplitPath[fileSplitPath.length - 1];
+    }
+}
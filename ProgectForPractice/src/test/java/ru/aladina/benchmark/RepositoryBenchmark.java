@@ -0,0 +1,150 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aladina.database.dsprovider.H2Provider;
+import ru.aladina.database.dsprovider.PostgreSQLProvider;
+import ru.aladina.database.hash.FileHasher;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.property.PropertyContainer;
+import ru.aladina.database.repository.FileRepository;
+import ru.aladina.database.repository.impl.H2FileRepository;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
+import ru.aladina.database.repository.impl.PostgreSQLFileRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость операций репозитория над таблицей из синтетических записей (файлы на диске не создаются):
+ * запись пачкой, поиск по идентификатору и назначение исходных файлов.
+ * По умолчанию измеряются таблица в памяти и встроенная база H2, для PostgreSQL нужна запущенная база
+ * из application.properties: mvn -P benchmark test -Dbenchmark.include=RepositoryBenchmark
+ * -Dbenchmark.args="-p engine=database".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+    /** Количество записей в таблице. */
+    private static final int FILE_COUNT = 10000;
+    /** Хранилище таблицы: memory, embedded или database. */
+    @Param({"memory", "embedded"})
+    private String engine;
+    /** Доля дублирующихся файлов. */
+    @Param({"0.3"})
+    private double duplicateRatio;
+    /** Репозиторий. */
+    private FileRepository fileRepository;
+    /** Файлы для записи в таблицу. */
+    private List<MyFile> files;
+    /** Идентификаторы записей таблицы. */
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void createTable() throws IOException {
+        PropertyContainer.loadProperties();
+        if ("database".equals(engine)) {
+            fileRepository = new PostgreSQLFileRepository(new PostgreSQLProvider().getDataSource());
+        } else if ("embedded".equals(engine)) {
+            fileRepository = new H2FileRepository(new H2Provider().getDataSource());
+        } else {
+            fileRepository = new InMemoryFileRepository();
+        }
+        files = createFiles();
+        fillTable();
+    }
+
+    /**
+     * Пустая таблица: очищается перед каждым измерением записи пачкой.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyTable {
+        @Setup(Level.Invocation)
+        public void clearTable(RepositoryBenchmark benchmark) {
+            benchmark.fileRepository.deleteTableInfo(MyFile.TABLE_NAME);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void createAll(EmptyTable emptyTable) {
+        fileRepository.createAll(files);
+    }
+
+    @Benchmark
+    public FileRecord findById() {
+        return fileRepository.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void assignMotherIds() {
+        fileRepository.assignMotherIds();
+    }
+
+    /**
+     * Заполняет таблицу файлами и запоминает идентификаторы записей.
+     */
+    private void fillTable() {
+        fileRepository.deleteTableInfo(MyFile.TABLE_NAME);
+        fileRepository.createAll(files);
+        ids = new ArrayList<>(FILE_COUNT);
+        fileRepository.forEachFile(record -> ids.add(record.getId().toString()));
+    }
+
+    /**
+     * Создаёт синтетические файлы: пути берутся из {@link FileTreeGenerator}, хэш-суммы - случайные,
+     * заданная доля файлов повторяет хэш-сумму одного из предыдущих.
+     */
+    private List<MyFile> createFiles() {
+        List<Path> paths = new FileTreeGenerator(1, FILE_COUNT, 4, 8, 0, 0,
+                FileTreeGenerator.SizeDistribution.UNIFORM, 0).plan(Paths.get("/benchmark"));
+        Random random = new Random(1);
+        List<MyFile> result = new ArrayList<>(FILE_COUNT);
+        byte[] digest = new byte[16];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            MyFile source = i > 0 && random.nextDouble() < duplicateRatio ? result.get(random.nextInt(i)) : null;
+            String hashSum;
+            long size;
+            if (source != null) {
+                hashSum = source.getHashSum();
+                size = source.getSize();
+            } else {
+                random.nextBytes(digest);
+                hashSum = FileHasher.toHex(digest);
+                size = random.nextInt(1 << 20);
+            }
+            Path path = paths.get(i);
+            var myFile = new MyFile(null, path.getFileName().toString(), path.toString(), size,
+                    null, hashSum, null);
+            myFile.setPartialHashSum(hashSum);
+            myFile.setHashAlgorithm(FingerprintAlgorithms.MURMUR3_128.getName());
+            myFile.setFileState(null, i);
+            result.add(myFile);
+        }
+        return result;
+    }
+}
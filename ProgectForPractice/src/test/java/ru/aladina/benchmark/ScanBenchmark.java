@@ -0,0 +1,78 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
+import ru.aladina.database.service.pipeline.IngestPipeline;
+import ru.aladina.database.service.pipeline.ScanStatistics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость заполнения таблицы в памяти конвейером {@link IngestPipeline} (файлов в секунду)
+ * на потоках операционной системы и на виртуальных потоках.
+ * Память вне кучи ограничена: буферы чтения берутся из общего набора, поэтому их количество
+ * не растёт вместе с количеством виртуальных потоков вычисления хэш-сумм.
+ * (Запуск: mvn -P benchmark test -Dbenchmark.include=ScanBenchmark или main-метод класса с classpath тестов)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=32m")
+public class ScanBenchmark {
+    /** Количество файлов в дереве. */
+    private static final int FILE_COUNT = 4000;
+    /** Размер фрагмента частичной хэш-суммы (в байтах). */
+    private static final int SAMPLE_SIZE = 4096;
+    /** Вид потоков конвейера: platform или virtual. */
+    @Param({"platform", "virtual"})
+    private String executionMode;
+    /** Корень дерева. */
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = Files.createTempDirectory("scan-benchmark");
+        // Все файлы одного размера, чтобы каждый прошёл через вычисление хэш-сумм
+        new FileTreeGenerator(1, FILE_COUNT, 3, 8, 64 * 1024, 64 * 1024,
+                FileTreeGenerator.SizeDistribution.UNIFORM, 0.3).generate(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        FileTreeGenerator.delete(root);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public ScanStatistics ingest() throws IOException {
+        ExecutionMode mode = ExecutionMode.forName(executionMode);
+        return new IngestPipeline(new InMemoryFileRepository(), mode.concurrency(4), mode.concurrency(4),
+                1024, 500, SAMPLE_SIZE, mode).run(root);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
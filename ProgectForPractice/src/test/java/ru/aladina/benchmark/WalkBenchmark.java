@@ -0,0 +1,87 @@
+package ru.aladina.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.walk.FileTreeWalker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Скорость обхода дерева файлов (файлов в секунду): прежний обход {@link Files#walk} с отдельными
+ * обращениями к диску за типом и размером файла и обход {@link FileTreeWalker}.
+ * (Запуск: mvn -P benchmark test -Dbenchmark.include=WalkBenchmark)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalkBenchmark {
+    /** Количество файлов в дереве. */
+    private static final int FILE_COUNT = 20000;
+    /** Количество потоков обхода. */
+    @Param({"1", "4"})
+    private int walkThreads;
+    /** Вид потоков обхода: platform или virtual. */
+    @Param({"platform", "virtual"})
+    private String executionMode;
+    /** Корень дерева. */
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = Files.createTempDirectory("walk-benchmark");
+        new FileTreeGenerator(1, FILE_COUNT, 4, 8, 0, 64,
+                FileTreeGenerator.SizeDistribution.UNIFORM, 0).generate(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        FileTreeGenerator.delete(root);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public long filesWalk() throws IOException {
+        long sum = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.toFile().isDirectory() && !Files.isSymbolicLink(path)) {
+                    sum += path.toFile().length();
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public long fileTreeWalker() throws IOException, InterruptedException {
+        AtomicLong sum = new AtomicLong();
+        new FileTreeWalker(walkThreads, ExecutionMode.forName(executionMode)).walk(root, (path, attributes) -> {
+            if (attributes.isRegularFile()) {
+                sum.addAndGet(attributes.size());
+            }
+        });
+        return sum.get();
+    }
+}
@@ -0,0 +1,152 @@
+package ru.aladina.database.hash;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбиение содержимого на блоки: повторяемость границ, ограничения размеров блоков
+ * и устойчивость границ к вставке байт.
+ */
+class ContentChunkerTest {
+    /** Наименьший размер блока. */
+    private static final int MIN_SIZE = 256;
+    /** Средний размер блока. */
+    private static final int AVERAGE_SIZE = 1024;
+    /** Наибольший размер блока. */
+    private static final int MAX_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final ContentChunker chunker =
+            new ContentChunker(MIN_SIZE, AVERAGE_SIZE, MAX_SIZE, FingerprintAlgorithms.SHA_256);
+
+    @Test
+    void producesSameBoundariesForSameContent() throws IOException {
+        byte[] content = random(200_000, 1);
+        Path first = Files.write(directory.resolve("first"), content);
+        Path second = Files.write(directory.resolve("second"), content);
+
+        List<Chunk> firstChunks = chunk(first);
+
+        assertEquals(firstChunks, chunk(second));
+        assertEquals(firstChunks, chunk(first));
+    }
+
+    @Test
+    void respectsChunkSizes() throws IOException {
+        byte[] content = random(500_000, 2);
+        List<Chunk> chunks = chunk(Files.write(directory.resolve("file"), content));
+
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            assertEquals(offset, chunk.offset);
+            assertTrue(chunk.size <= MAX_SIZE, "блок больше наибольшего размера: " + chunk.size);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.size >= MIN_SIZE, "блок меньше наименьшего размера: " + chunk.size);
+            }
+            assertArrayEquals(sha256(content, chunk.offset, chunk.size), chunk.digest);
+            offset += chunk.size;
+        }
+        assertEquals(content.length, offset);
+        // Средний размер блока близок к заданному
+        double average = (double) content.length / chunks.size();
+        assertTrue(average > AVERAGE_SIZE / 2.0 && average < AVERAGE_SIZE * 2.0, "средний размер блока: " + average);
+    }
+
+    @Test
+    void cutsAtMaximumSizeWithoutContentBoundaries() throws IOException {
+        // В файле из одинаковых байт граница по содержимому не находится, поэтому блоки режутся по наибольшему размеру
+        byte[] content = new byte[3 * MAX_SIZE + 100];
+        List<Chunk> chunks = chunk(Files.write(directory.resolve("zeros"), content));
+
+        assertEquals(List.of(MAX_SIZE, MAX_SIZE, MAX_SIZE, 100), chunks.stream().map(chunk -> chunk.size).toList());
+    }
+
+    @Test
+    void keepsShortFileAsOneChunk() throws IOException {
+        byte[] content = random(MIN_SIZE / 2, 3);
+        List<Chunk> chunks = chunk(Files.write(directory.resolve("short"), content));
+
+        assertEquals(1, chunks.size());
+        assertEquals(MIN_SIZE / 2, chunks.get(0).size);
+        assertArrayEquals(sha256(content, 0, content.length), chunks.get(0).digest);
+        assertEquals(List.of(), chunk(Files.write(directory.resolve("empty"), new byte[0])));
+    }
+
+    @Test
+    void shiftsOnlyNearbyBoundariesAfterInsertion() throws IOException {
+        byte[] original = random(300_000, 4);
+        byte[] inserted = new byte[original.length + 10];
+        System.arraycopy(original, 0, inserted, 0, 1000);
+        System.arraycopy(random(10, 5), 0, inserted, 1000, 10);
+        System.arraycopy(original, 1000, inserted, 1010, original.length - 1000);
+
+        List<Chunk> originalChunks = chunk(Files.write(directory.resolve("original"), original));
+        List<Chunk> insertedChunks = chunk(Files.write(directory.resolve("inserted"), inserted));
+
+        Set<ByteBuffer> originalDigests = new HashSet<>();
+        for (Chunk chunk : originalChunks) {
+            originalDigests.add(ByteBuffer.wrap(chunk.digest));
+        }
+        int changed = 0;
+        for (Chunk chunk : insertedChunks) {
+            if (!originalDigests.contains(ByteBuffer.wrap(chunk.digest))) {
+                changed++;
+                // Изменились только блоки рядом со вставкой
+                assertTrue(chunk.offset < 1010 + MAX_SIZE, "изменён блок далеко от вставки: " + chunk.offset);
+            }
+        }
+        assertTrue(changed >= 1 && changed <= 3, "изменено блоков: " + changed);
+    }
+
+    private List<Chunk> chunk(Path path) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        chunker.chunk(path, (offset, size, digest) -> chunks.add(new Chunk(offset, size, digest)));
+        return chunks;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] sha256(byte[] content, long offset, int size) {
+        Fingerprint fingerprint = FingerprintAlgorithms.SHA_256.newFingerprint();
+        fingerprint.update(ByteBuffer.wrap(content, (int) offset, size));
+        return fingerprint.finish();
+    }
+
+    /**
+     * Блок файла.
+     */
+    private record Chunk(long offset, int size, byte[] digest) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Chunk chunk && offset == chunk.offset && size == chunk.size
+                    && Arrays.equals(digest, chunk.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(offset) * 31 + size;
+        }
+    }
+}
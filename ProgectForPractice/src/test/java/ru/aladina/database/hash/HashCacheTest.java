@@ -0,0 +1,191 @@
+package ru.aladina.database.hash;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Постоянный кэш хэш-сумм: попадания и промахи, хранение между запусками, проверка размера и времени
+ * изменения, вытеснение внутри группы и повреждённые записи.
+ */
+class HashCacheTest {
+    /** Количество записей кэша: одна группа из восьми записей. */
+    private static final int ENTRIES = 8;
+    /** Смещение хэш-суммы первой записи первой группы в файле кэша. */
+    private static final int FIRST_SLOT_DIGEST = 64 + 48;
+
+    @TempDir
+    Path directory;
+
+    /** Количество вычислений хэш-суммы (промахов кэша). */
+    private final AtomicInteger computed = new AtomicInteger();
+
+    @Test
+    void returnsCachedDigestOnHit() throws IOException {
+        try (var cache = new HashCache(directory.resolve("cache"), ENTRIES)) {
+            assertArrayEquals(digestOf("a"), digest(cache, "a", 10, 100));
+            assertArrayEquals(digestOf("a"), digest(cache, "a", 10, 100));
+            assertEquals(1, computed.get());
+
+            digest(cache, "b", 10, 100);
+            assertEquals(2, computed.get());
+        }
+    }
+
+    @Test
+    void separatesSampleSizesAndAlgorithms() throws IOException {
+        try (var cache = new HashCache(directory.resolve("cache"), ENTRIES)) {
+            digest(cache, "a", 10, 100);
+            cache.digest("a", 10, 100, 4096, FingerprintAlgorithms.SHA_256, () -> compute("a"));
+            cache.digest("a", 10, 100, 0, FingerprintAlgorithms.MURMUR3_128, () -> compute("a"));
+
+            assertEquals(3, computed.get());
+        }
+    }
+
+    @Test
+    void keepsDigestsAfterReopening() throws IOException {
+        Path path = directory.resolve("cache");
+        try (var cache = new HashCache(path, ENTRIES)) {
+            digest(cache, "a", 10, 100);
+        }
+
+        try (var cache = new HashCache(path, ENTRIES)) {
+            assertArrayEquals(digestOf("a"), digest(cache, "a", 10, 100));
+        }
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void recomputesDigestWhenFileChanges() throws IOException {
+        try (var cache = new HashCache(directory.resolve("cache"), ENTRIES)) {
+            digest(cache, "a", 10, 100);
+
+            digest(cache, "a", 10, 200);
+            assertEquals(2, computed.get());
+            digest(cache, "a", 11, 200);
+            assertEquals(3, computed.get());
+            // Новая запись заменила прежнюю запись о том же файле
+            digest(cache, "a", 11, 200);
+            assertEquals(3, computed.get());
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryOfFullGroup() throws IOException {
+        try (var cache = new HashCache(directory.resolve("cache"), ENTRIES)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                digest(cache, "file" + i, 10, 100);
+            }
+            // Группа заполнена: стрелка снимает все отметки и вытесняет первую запись (file0)
+            digest(cache, "file8", 10, 100);
+            // Обращение к file1 ставит ему отметку, поэтому следующей вытесняется запись file2
+            digest(cache, "file1", 10, 100);
+            digest(cache, "file9", 10, 100);
+            assertEquals(ENTRIES + 2, computed.get());
+
+            for (String name : new String[] {"file1", "file3", "file4", "file5", "file6", "file7", "file8", "file9"}) {
+                digest(cache, name, 10, 100);
+            }
+            assertEquals(ENTRIES + 2, computed.get());
+            digest(cache, "file2", 10, 100);
+            assertEquals(ENTRIES + 3, computed.get());
+            digest(cache, "file0", 10, 100);
+            assertEquals(ENTRIES + 4, computed.get());
+        }
+    }
+
+    @Test
+    void treatsCorruptedEntryAsMiss() throws IOException {
+        Path path = directory.resolve("cache");
+        try (var cache = new HashCache(path, ENTRIES)) {
+            digest(cache, "a", 10, 100);
+        }
+        // Хэш-сумма записи изменена, а контрольная сумма - нет (как при прерванной записи)
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, FIRST_SLOT_DIGEST);
+            value.put(0, (byte) (value.get(0) ^ 0xff)).rewind();
+            channel.write(value, FIRST_SLOT_DIGEST);
+        }
+
+        try (var cache = new HashCache(path, ENTRIES)) {
+            assertArrayEquals(digestOf("a"), digest(cache, "a", 10, 100));
+            assertEquals(2, computed.get());
+            assertArrayEquals(digestOf("a"), digest(cache, "a", 10, 100));
+            assertEquals(2, computed.get());
+        }
+    }
+
+    @Test
+    void reinitializesCacheOfOtherFormat() throws IOException {
+        Path path = directory.resolve("cache");
+        try (var cache = new HashCache(path, ENTRIES)) {
+            digest(cache, "a", 10, 100);
+        }
+
+        // Другое количество групп: файл заполняется заново
+        try (var cache = new HashCache(path, ENTRIES * 2)) {
+            digest(cache, "a", 10, 100);
+        }
+        assertEquals(2, computed.get());
+
+        // Другая версия формата в заголовке при том же размере файла
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 0), 4);
+        }
+        try (var cache = new HashCache(path, ENTRIES * 2)) {
+            digest(cache, "a", 10, 100);
+        }
+        assertEquals(3, computed.get());
+    }
+
+    @Test
+    void refusesFileLockedByAnotherCache() throws IOException {
+        Path path = directory.resolve("cache");
+        try (var cache = new HashCache(path, ENTRIES)) {
+            assertThrows(IOException.class, () -> new HashCache(path, ENTRIES));
+            // Первый кэш продолжает работать
+            digest(cache, "a", 10, 100);
+            digest(cache, "a", 10, 100);
+            assertEquals(1, computed.get());
+        }
+        // После закрытия файл снова можно открыть
+        new HashCache(path, ENTRIES).close();
+    }
+
+    @Test
+    void computesDigestAfterClosing() throws IOException {
+        var cache = new HashCache(directory.resolve("cache"), ENTRIES);
+        digest(cache, "a", 10, 100);
+        cache.close();
+
+        digest(cache, "a", 10, 100);
+        assertEquals(2, computed.get());
+    }
+
+    private byte[] digest(HashCache cache, String file, long size, long modifiedMillis) throws IOException {
+        return cache.digest(file, size, modifiedMillis, 0, FingerprintAlgorithms.SHA_256, () -> compute(file));
+    }
+
+    private byte[] compute(String file) {
+        computed.incrementAndGet();
+        return digestOf(file);
+    }
+
+    private static byte[] digestOf(String file) {
+        Fingerprint fingerprint = FingerprintAlgorithms.SHA_256.newFingerprint();
+        fingerprint.update(ByteBuffer.wrap(file.getBytes()));
+        return fingerprint.finish();
+    }
+}
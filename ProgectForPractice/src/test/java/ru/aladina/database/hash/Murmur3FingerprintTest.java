@@ -0,0 +1,67 @@
+package ru.aladina.database.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Отпечаток MurmurHash3 x64_128 совпадает с эталонными значениями Guava {@code Hashing.murmur3_128()}.
+ */
+class Murmur3FingerprintTest {
+    /** Строка из 43 байт: два полных блока и неполный блок длиннее 8 байт. */
+    private static final String QUICK_BROWN_FOX = "The quick brown fox jumps over the lazy dog";
+
+    @Test
+    void matchesReferenceValues() {
+        assertEquals("00000000000000000000000000000000", murmur3(""));
+        assertEquals("029bbd41b3a7d8cb191dae486a901e5b", murmur3("hello"));
+        assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", murmur3(QUICK_BROWN_FOX));
+    }
+
+    @Test
+    void handlesTailAroundBlockSize() {
+        // 15 байт - только неполный блок, 16 - один полный блок, 17 - полный блок и один байт
+        assertEquals("fb2f0c895124be8a612a969c2d8c546a", murmur3("abcdefghijklmno"));
+        assertEquals("23b74c22a33ccac41aeb31b395d63343", murmur3("abcdefghijklmnop"));
+        assertEquals("57a6bd887f746475e40d11a19d49daec", murmur3("abcdefghijklmnopq"));
+    }
+
+    @Test
+    void givesSameResultForSplitUpdates() {
+        byte[] bytes = QUICK_BROWN_FOX.getBytes(StandardCharsets.UTF_8);
+        for (int first = 0; first <= bytes.length; first++) {
+            for (int second = first; second <= bytes.length; second++) {
+                var fingerprint = new Murmur3Fingerprint();
+                fingerprint.update(ByteBuffer.wrap(bytes, 0, first));
+                fingerprint.update(ByteBuffer.wrap(bytes, first, second - first));
+                fingerprint.update(ByteBuffer.wrap(bytes, second, bytes.length - second));
+                assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", FileHasher.toHex(fingerprint.finish()),
+                        "части " + first + ", " + (second - first) + ", " + (bytes.length - second));
+            }
+        }
+    }
+
+    @Test
+    void keepsByteOrderOfInputAndResetsAfterFinish() {
+        var data = ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)).order(ByteOrder.BIG_ENDIAN);
+        var fingerprint = new Murmur3Fingerprint();
+
+        fingerprint.update(data);
+
+        assertEquals(ByteOrder.BIG_ENDIAN, data.order());
+        assertEquals("029bbd41b3a7d8cb191dae486a901e5b", FileHasher.toHex(fingerprint.finish()));
+        // После finish вычисление начинается заново
+        fingerprint.update(ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("029bbd41b3a7d8cb191dae486a901e5b", FileHasher.toHex(fingerprint.finish()));
+    }
+
+    private static String murmur3(String text) {
+        var fingerprint = new Murmur3Fingerprint();
+        fingerprint.update(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        return FileHasher.toHex(fingerprint.finish());
+    }
+}
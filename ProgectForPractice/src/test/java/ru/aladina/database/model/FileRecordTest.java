@@ -0,0 +1,50 @@
+package ru.aladina.database.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка, что файл на диске не менялся с момента занесения записи в таблицу.
+ */
+class FileRecordTest {
+    /** Время последнего изменения файла. */
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @Test
+    void comparesFileKeySizeAndModificationTime() {
+        FileRecord record = record("/d/a.txt", "(dev=801,ino=42)");
+
+        assertTrue(record.isUnchanged(file("/d/a.txt", "(dev=801,ino=42)", 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", "(dev=801,ino=43)", 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", null, 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", "(dev=801,ino=42)", 11, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", "(dev=801,ino=42)", 10, MODIFIED + 1)));
+    }
+
+    @Test
+    void usesPathWhenFileSystemHasNoFileKey() {
+        FileRecord record = record("/d/a.txt", null);
+
+        assertTrue(record.isUnchanged(file("/d/a.txt", null, 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/b.txt", null, 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", "(dev=801,ino=42)", 10, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", null, 11, MODIFIED)));
+        assertFalse(record.isUnchanged(file("/d/a.txt", null, 10, MODIFIED + 1)));
+    }
+
+    private static FileRecord record(String path, String fileKey) {
+        return new FileRecord(UUID.randomUUID(), "a.txt", path, 10, null, MyFile.UNIQUE_HASH_SUM, null, null, null,
+                fileKey, MODIFIED);
+    }
+
+    private static MyFile file(String path, String fileKey, long size, long modifiedMillis) {
+        var file = new MyFile(UUID.randomUUID(), path.substring(path.lastIndexOf('/') + 1), path, size, null,
+                MyFile.UNIQUE_HASH_SUM, null);
+        file.setFileState(fileKey, modifiedMillis);
+        return file;
+    }
+}
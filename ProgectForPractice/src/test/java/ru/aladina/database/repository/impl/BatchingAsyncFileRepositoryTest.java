@@ -0,0 +1,227 @@
+package ru.aladina.database.repository.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.FileSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Асинхронная запись пачками: объединение изменений, порядок удалений и добавлений одного пути,
+ * распространение первой ошибки и закрытие после завершения потока записи.
+ */
+class BatchingAsyncFileRepositoryTest {
+    /** Путь, добавление которого завершается ошибкой. */
+    private static final String FAILING_PATH = "/d/failing.txt";
+
+    /** Изменения, выполненные сеансом потока записи. */
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+    /** Поток записи ждёт этой отметки перед первым добавлением. */
+    private final CountDownLatch firstWriteReleased = new CountDownLatch(1);
+    /** Поток записи начал первое добавление. */
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    /** Таблица в памяти, сеанс которой записывает выполненные изменения. */
+    private final InMemoryFileRepository repository = new RecordingRepository();
+
+    @Test
+    void coalescesQueuedWritesIntoOneBatch() {
+        try (var async = new BatchingAsyncFileRepository(repository, 100, 16, ExecutionMode.PLATFORM)) {
+            var first = async.createAll(List.of(file("/d/a.txt")));
+            awaitFirstWrite();
+            // Пока поток записи занят, изменения накапливаются в очереди
+            var results = List.of(
+                    async.createAll(List.of(file("/d/b.txt"))),
+                    async.deleteByPaths(List.of("/d/old.txt")),
+                    async.createAll(List.of(file("/d/c.txt"))),
+                    async.createChunks(List.of(chunk(), chunk())));
+            firstWriteReleased.countDown();
+            first.join();
+            results.forEach(CompletableFuture::join);
+            async.commit().join();
+        }
+
+        assertEquals(List.of("create [/d/a.txt]", "delete [/d/old.txt]", "create [/d/b.txt, /d/c.txt]", "chunks 2",
+                "commit"), writes);
+    }
+
+    @Test
+    void splitsBatchAtBatchSize() {
+        try (var async = new BatchingAsyncFileRepository(repository, 2, 16, ExecutionMode.PLATFORM)) {
+            var first = async.createAll(List.of(file("/d/a.txt")));
+            awaitFirstWrite();
+            var results = List.of(
+                    async.createAll(List.of(file("/d/b.txt"))),
+                    async.createAll(List.of(file("/d/c.txt"))),
+                    async.createAll(List.of(file("/d/d.txt"))));
+            firstWriteReleased.countDown();
+            first.join();
+            results.forEach(CompletableFuture::join);
+        }
+
+        assertEquals(List.of("create [/d/a.txt]", "create [/d/b.txt, /d/c.txt]", "create [/d/d.txt]"), writes);
+    }
+
+    @Test
+    void neverMovesDeleteAheadOfCreateOfSamePath() {
+        try (var async = new BatchingAsyncFileRepository(repository, 100, 16, ExecutionMode.PLATFORM)) {
+            var first = async.createAll(List.of(file("/d/first.txt")));
+            awaitFirstWrite();
+            var results = List.of(
+                    async.createAll(List.of(file("/d/a.txt"))),
+                    async.deleteByPaths(List.of("/d/a.txt")),
+                    async.createAll(List.of(file("/d/b.txt"))));
+            firstWriteReleased.countDown();
+            first.join();
+            results.forEach(CompletableFuture::join);
+        }
+
+        assertEquals(List.of("create [/d/first.txt]", "create [/d/a.txt]", "delete [/d/a.txt]", "create [/d/b.txt]"),
+                writes);
+        assertEquals(List.of("/d/b.txt", "/d/first.txt"),
+                repository.findAll().stream().map(FileRecord::getFilePath).sorted().toList());
+    }
+
+    @Test
+    void failsEveryWriteAfterFirstError() {
+        firstWriteReleased.countDown();
+        try (var async = new BatchingAsyncFileRepository(repository, 100, 16, ExecutionMode.PLATFORM)) {
+            var failed = async.createAll(List.of(file(FAILING_PATH)));
+            var error = assertThrows(CompletionException.class, failed::join).getCause();
+
+            var later = async.createAll(List.of(file("/d/b.txt")));
+            assertSame(error, assertThrows(CompletionException.class, later::join).getCause());
+            assertSame(error, assertThrows(CompletionException.class, () -> async.commit().join()).getCause());
+        }
+
+        assertEquals(List.of(), writes);
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    @Test
+    void closesAfterWriterThreadStopped() {
+        firstWriteReleased.countDown();
+        var async = new BatchingAsyncFileRepository(repository, 100, 1, ExecutionMode.PLATFORM);
+        async.createAll(List.of(file("/d/a.txt"))).join();
+        Thread writer = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("repository-writer") && thread.isAlive())
+                .findFirst()
+                .orElseThrow();
+        writer.interrupt();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            writer.join();
+            // Изменения после завершения потока записи не выполняются
+            assertThrows(CompletionException.class, () -> async.createAll(List.of(file("/d/b.txt"))).join());
+            assertThrows(CompletionException.class, () -> async.commit().join());
+            async.close();
+        });
+        assertEquals(List.of("create [/d/a.txt]"), writes);
+    }
+
+    private void awaitFirstWrite() {
+        try {
+            firstWriteStarted.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MyFile file(String path) {
+        return new MyFile(null, path.substring(path.lastIndexOf('/') + 1), path, 10L, null, MyFile.UNIQUE_HASH_SUM,
+                null);
+    }
+
+    private static FileChunk chunk() {
+        return new FileChunk(UUID.randomUUID().toString(), 0, 10, new byte[] {1});
+    }
+
+    /**
+     * Таблица в памяти, сеанс которой записывает выполненные изменения и задерживает первое добавление.
+     */
+    private class RecordingRepository extends InMemoryFileRepository {
+        @Override
+        public FileSession openSession() {
+            FileSession session = super.openSession();
+            return new FileSession() {
+                @Override
+                public void createAll(Collection<MyFile> files) {
+                    if (files.isEmpty()) {
+                        return;
+                    }
+                    firstWriteStarted.countDown();
+                    try {
+                        firstWriteReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                    if (files.stream().anyMatch(file -> FAILING_PATH.equals(file.getFilePath()))) {
+                        throw new IllegalStateException("Ошибка записи " + FAILING_PATH);
+                    }
+                    writes.add("create " + files.stream().map(MyFile::getFilePath).toList());
+                    session.createAll(files);
+                }
+
+                @Override
+                public void createChunks(Collection<FileChunk> chunks) {
+                    if (!chunks.isEmpty()) {
+                        writes.add("chunks " + chunks.size());
+                        session.createChunks(chunks);
+                    }
+                }
+
+                @Override
+                public FileRecord findById(String id) {
+                    return session.findById(id);
+                }
+
+                @Override
+                public List<FileRecord> findByHashSum(String hashSum) {
+                    return session.findByHashSum(hashSum);
+                }
+
+                @Override
+                public void updateFilesMothersIdInfo(String id, String motherID) {
+                    session.updateFilesMothersIdInfo(id, motherID);
+                }
+
+                @Override
+                public void deleteByPaths(Collection<String> filePaths) {
+                    if (!filePaths.isEmpty()) {
+                        writes.add("delete " + filePaths);
+                        session.deleteByPaths(filePaths);
+                    }
+                }
+
+                @Override
+                public void commit() {
+                    writes.add("commit");
+                    session.commit();
+                }
+
+                @Override
+                public void close() {
+                    session.close();
+                }
+            };
+        }
+    }
+}
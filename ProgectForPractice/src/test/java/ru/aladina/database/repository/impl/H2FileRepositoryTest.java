@@ -0,0 +1,248 @@
+package ru.aladina.database.repository.impl;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.aladina.database.model.CatalogSummary;
+import ru.aladina.database.model.ChunkedFile;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.model.FileChunk;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Репозиторий во встроенной базе данных H2 (в памяти) и общие запросы {@link JdbcFileRepository}.
+ */
+class H2FileRepositoryTest {
+    /** Хэш-сумма первой группы. */
+    private static final String HASH_SUM = "00112233445566778899aabbccddeeff";
+    /** Хэш-сумма второй группы. */
+    private static final String OTHER_HASH_SUM = "ffeeddccbbaa99887766554433221100";
+
+    private JdbcConnectionPool dataSource;
+    private H2FileRepository repository;
+
+    @BeforeEach
+    void openDatabase() {
+        dataSource = JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+        repository = new H2FileRepository(dataSource);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        try (var connection = dataSource.getConnection();
+             var statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        dataSource.dispose();
+    }
+
+    @Test
+    void createsAndReadsFiles() {
+        MyFile first = file("/d/a.txt", HASH_SUM, "murmur3-128");
+        first.setPartialHashSum(OTHER_HASH_SUM);
+        first.setFileState("(dev=801,ino=42)", 1_700_000_000_000L);
+        MyFile unique = file("/d/u.txt", MyFile.UNIQUE_HASH_SUM, null);
+
+        repository.createAll(List.of(first, unique));
+
+        assertEquals(List.of("/d/a.txt", "/d/u.txt"), paths(repository.findAll()));
+        FileRecord record = repository.findById(first.getId().toString());
+        assertEquals("a.txt", record.getTitle());
+        assertEquals(10, record.getSize());
+        assertEquals(HASH_SUM, record.getHashSum());
+        assertEquals(OTHER_HASH_SUM, record.getPartialHashSum());
+        assertEquals("murmur3-128", record.getHashAlgorithm());
+        assertEquals("(dev=801,ino=42)", record.getFileKey());
+        assertEquals(1_700_000_000_000L, record.getModifiedMillis());
+        assertEquals(MyFile.UNIQUE_HASH_SUM, repository.findById(unique.getId().toString()).getHashSum());
+        assertEquals(List.of("/d/a.txt"), paths(repository.findByHashSum(HASH_SUM)));
+    }
+
+    @Test
+    void storesUnknownModificationTimeAsNull() throws SQLException {
+        MyFile file = file("/d/a.txt", HASH_SUM, "sha-256");
+
+        repository.createAll(List.of(file));
+
+        try (var connection = dataSource.getConnection();
+             var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT dateTime_of_creation FROM " + MyFile.TABLE_NAME)) {
+            resultSet.next();
+            assertNull(resultSet.getTimestamp(1));
+        }
+        FileRecord record = repository.findById(file.getId().toString());
+        assertNull(record.getDateTime());
+        assertEquals(MyFile.UNKNOWN_MODIFIED_MILLIS, record.getModifiedMillis());
+    }
+
+    @Test
+    void rejectsSecondRecordForSamePath() {
+        repository.createAll(List.of(file("/d/a.txt", HASH_SUM, "sha-256")));
+
+        try (var session = repository.openSession()) {
+            assertThrows(RuntimeException.class, () -> session.createAll(List.of(file("/d/a.txt", HASH_SUM, "sha-256"))));
+        }
+    }
+
+    @Test
+    void assignsMothersWithinAlgorithmAndHashSum() {
+        MyFile mother = file("/d/a.txt", HASH_SUM, "sha-256");
+        MyFile duplicate = file("/d/c.txt", HASH_SUM, "sha-256");
+        MyFile otherAlgorithm = file("/d/b.txt", HASH_SUM, "murmur3-128");
+        MyFile unique = file("/d/0.txt", MyFile.UNIQUE_HASH_SUM, null);
+        MyFile secondUnique = file("/d/1.txt", MyFile.UNIQUE_HASH_SUM, null);
+        repository.createAll(List.of(duplicate, otherAlgorithm, mother, unique, secondUnique));
+
+        repository.assignMotherIds();
+        // Повторное назначение (MERGE изменяет только строки с другим исходным файлом) ничего не меняет
+        repository.assignMotherIds();
+
+        assertEquals(mother.getId().toString(), motherOf(mother));
+        assertEquals(mother.getId().toString(), motherOf(duplicate));
+        assertEquals(otherAlgorithm.getId().toString(), motherOf(otherAlgorithm));
+        assertEquals(unique.getId().toString(), motherOf(unique));
+        assertEquals(secondUnique.getId().toString(), motherOf(secondUnique));
+    }
+
+    @Test
+    void summarizesDuplicates() {
+        repository.createAll(List.of(file("/d/a.txt", HASH_SUM, "sha-256"), file("/d/b.txt", HASH_SUM, "sha-256"),
+                file("/d/c.txt", HASH_SUM, "sha-256"), file("/d/d.txt", OTHER_HASH_SUM, "sha-256")));
+        repository.assignMotherIds();
+
+        CatalogSummary summary = repository.summarize();
+
+        assertEquals(4, summary.getFileCount());
+        assertEquals(40, summary.getTotalSize());
+        assertEquals(2, summary.getDuplicateCount());
+        assertEquals(20, summary.getDuplicateSize());
+    }
+
+    @Test
+    void listsDuplicatesWithMothers() {
+        MyFile mother = file("/d/a.txt", HASH_SUM, "murmur3-128");
+        repository.createAll(List.of(file("/d/c.txt", HASH_SUM, "murmur3-128"), mother,
+                file("/d/b.txt", HASH_SUM, "murmur3-128"), file("/d/u.txt", MyFile.UNIQUE_HASH_SUM, null)));
+        repository.assignMotherIds();
+
+        List<DuplicateFile> duplicates = new ArrayList<>();
+        repository.forEachDuplicate(duplicates::add);
+
+        assertEquals(List.of("/d/b.txt", "/d/c.txt"), duplicates.stream().map(DuplicateFile::getFilePath).toList());
+        for (DuplicateFile duplicate : duplicates) {
+            assertEquals("/d/a.txt", duplicate.getMotherFilePath());
+            assertEquals(mother.getId().toString(), duplicate.getMotherID());
+            assertEquals(10, duplicate.getSize());
+            assertEquals("murmur3-128", duplicate.getHashAlgorithm());
+        }
+    }
+
+    @Test
+    void deletesFilesByPath() {
+        MyFile kept = file("/d/b.txt", HASH_SUM, "sha-256");
+        repository.createAll(List.of(file("/d/a.txt", HASH_SUM, "sha-256"), kept,
+                file("/d/c.txt", OTHER_HASH_SUM, "sha-256")));
+
+        repository.deleteByPaths(List.of("/d/a.txt", "/d/c.txt", "/d/missing.txt"));
+
+        assertEquals(List.of("/d/b.txt"), paths(repository.findAll()));
+        repository.assignMotherIds();
+        assertEquals(kept.getId().toString(), motherOf(kept));
+        assertEquals(0, repository.summarize().getDuplicateCount());
+    }
+
+    @Test
+    void countsFirstOccurrenceOfChunkAsOriginal() {
+        MyFile first = file("/d/a.txt", HASH_SUM, "sha-256");
+        MyFile second = file("/d/b.txt", OTHER_HASH_SUM, "sha-256");
+        repository.createAll(List.of(second, first));
+        byte[] shared = {1, 2, 3};
+        byte[] own = {4, 5, 6};
+        try (var session = repository.openSession()) {
+            // Блок shared встречается дважды в b.txt и один раз в a.txt: первым считается вхождение в a.txt
+            session.createChunks(List.of(
+                    new FileChunk(second.getId().toString(), 0, 100, shared),
+                    new FileChunk(second.getId().toString(), 100, 100, shared),
+                    new FileChunk(first.getId().toString(), 0, 100, own),
+                    new FileChunk(first.getId().toString(), 100, 100, shared)));
+            session.commit();
+        }
+
+        List<ChunkedFile> chunkedFiles = new ArrayList<>();
+        repository.forEachChunkedFile(chunkedFiles::add);
+
+        assertEquals(2, chunkedFiles.size());
+        assertEquals("/d/a.txt", chunkedFiles.get(0).getFilePath());
+        assertEquals(200, chunkedFiles.get(0).getChunkedSize());
+        assertEquals(0, chunkedFiles.get(0).getSharedSize());
+        assertEquals("/d/b.txt", chunkedFiles.get(1).getFilePath());
+        assertEquals(200, chunkedFiles.get(1).getChunkedSize());
+        assertEquals(200, chunkedFiles.get(1).getSharedSize());
+
+        // Блоки удалённых файлов не учитываются
+        repository.deleteByPaths(List.of("/d/a.txt"));
+        chunkedFiles.clear();
+        repository.forEachChunkedFile(chunkedFiles::add);
+        assertEquals(1, chunkedFiles.size());
+        assertEquals(100, chunkedFiles.get(0).getSharedSize());
+    }
+
+    @Test
+    void replacesNonUniquePathIndexOfOlderVersion() throws SQLException {
+        UUID older = UUID.randomUUID();
+        UUID newer = UUID.randomUUID();
+        try (var connection = dataSource.getConnection();
+             var statement = connection.createStatement()) {
+            statement.executeUpdate("DROP INDEX " + MyFile.TABLE_NAME + "_filePath_idx");
+            statement.executeUpdate("CREATE INDEX " + MyFile.TABLE_NAME + "_filePath_idx ON "
+                    + MyFile.TABLE_NAME + " (filePath)");
+            statement.executeUpdate("INSERT INTO " + MyFile.TABLE_NAME + " (id, title, filePath, size) VALUES ('"
+                    + older + "', 'a.txt', '/d/a.txt', 1), ('" + newer + "', 'a.txt', '/d/a.txt', 2)");
+        }
+
+        repository = new H2FileRepository(dataSource);
+
+        List<FileRecord> records = repository.findAll();
+        assertEquals(1, records.size());
+        assertEquals(newer, records.get(0).getId());
+        try (var session = repository.openSession()) {
+            assertThrows(RuntimeException.class, () -> session.createAll(List.of(file("/d/a.txt", HASH_SUM, null))));
+        }
+    }
+
+    @Test
+    void clearsTable() {
+        repository.createAll(List.of(file("/d/a.txt", HASH_SUM, "sha-256")));
+
+        repository.deleteTableInfo(MyFile.TABLE_NAME);
+
+        assertEquals(List.of(), repository.findAll());
+        assertNull(repository.findById(UUID.randomUUID().toString()));
+    }
+
+    private String motherOf(MyFile file) {
+        return repository.findById(file.getId().toString()).getMotherID();
+    }
+
+    private static MyFile file(String path, String hashSum, String hashAlgorithm) {
+        var file = new MyFile(UUID.randomUUID(), path.substring(path.lastIndexOf('/') + 1), path, 10L, null,
+                hashSum, null);
+        file.setHashAlgorithm(hashAlgorithm);
+        return file;
+    }
+
+    private static List<String> paths(List<FileRecord> records) {
+        return records.stream().map(FileRecord::getFilePath).sorted().toList();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.aladina.database.repository.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.aladina.database.model.DuplicateFile;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Удаление строк таблицы в памяти, её уплотнение и назначение исходных файлов.
+ */
+class InMemoryFileRepositoryTest {
+    /** Хэш-сумма SHA-256. */
+    private static final String SHA_256_HASH_SUM =
+            "00112233445566778899aabbccddeeff00000000000000000000000000000000";
+    /** Хэш-сумма murmur3-128, совпадающая с началом хэш-суммы SHA-256. */
+    private static final String MURMUR_HASH_SUM = "00112233445566778899aabbccddeeff";
+
+    @Test
+    void deletesRowsByPath() {
+        var repository = new InMemoryFileRepository();
+        MyFile mother = file("/d/a.txt", SHA_256_HASH_SUM, "sha-256");
+        MyFile duplicate = file("/d/b.txt", SHA_256_HASH_SUM, "sha-256");
+        repository.createAll(List.of(mother, duplicate));
+        repository.assignMotherIds();
+
+        repository.deleteByPaths(List.of("/d/a.txt"));
+
+        assertEquals(List.of("/d/b.txt"), paths(repository.findAll()));
+        assertNull(repository.findById(mother.getId().toString()));
+        assertEquals(List.of("/d/b.txt"), paths(repository.findByHashSum(SHA_256_HASH_SUM)));
+        assertEquals(1, repository.summarize().getFileCount());
+        // Дубликаты удалённого исходного файла не заменяются
+        List<DuplicateFile> duplicates = new ArrayList<>();
+        repository.forEachDuplicate(duplicates::add);
+        assertTrue(duplicates.isEmpty());
+
+        repository.assignMotherIds();
+        assertEquals(duplicate.getId().toString(), repository.findById(duplicate.getId().toString()).getMotherID());
+    }
+
+    @Test
+    void deletesEveryRowWithSamePath() {
+        var repository = new InMemoryFileRepository();
+        repository.createAll(List.of(file("/d/a.txt", SHA_256_HASH_SUM, "sha-256"),
+                file("/d/a.txt", SHA_256_HASH_SUM, "sha-256")));
+
+        repository.deleteByPaths(List.of("/d/a.txt"));
+
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    @Test
+    void compactsTableAfterDeletingMostRows() {
+        var repository = new InMemoryFileRepository();
+        List<MyFile> files = new ArrayList<>();
+        List<String> deletedPaths = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Каждые три файла - одна группа дубликатов; исходным остаётся файл с наименьшим путём
+            String path = String.format("/d/%04d.txt", i);
+            files.add(file(path, String.format("%064x", i / 3), "sha-256"));
+            if (i % 3 != 2) {
+                deletedPaths.add(path);
+            }
+        }
+        repository.createAll(files);
+        repository.assignMotherIds();
+        // Сначала удаляется меньше строк, чем остаётся, - уплотнения нет
+        repository.deleteByPaths(deletedPaths.subList(0, 1000));
+        repository.deleteByPaths(deletedPaths.subList(1000, deletedPaths.size()));
+
+        List<FileRecord> records = repository.findAll();
+        assertEquals(1000, records.size());
+        for (int i = 2; i < 3000; i += 3) {
+            FileRecord record = repository.findById(files.get(i).getId().toString());
+            assertEquals(files.get(i).getFilePath(), record.getFilePath());
+            assertEquals(List.of(record.getFilePath()), paths(repository.findByHashSum(record.getHashSum())));
+            // Исходный файл удалён, поэтому ссылка на него сброшена
+            assertNull(record.getMotherID());
+        }
+
+        repository.deleteByPaths(List.of("/d/0002.txt"));
+        assertEquals(999, repository.findAll().size());
+        assertNull(repository.findById(files.get(2).getId().toString()));
+    }
+
+    @Test
+    void keepsMothersWhenCompacting() {
+        var repository = new InMemoryFileRepository();
+        List<MyFile> files = new ArrayList<>();
+        List<String> deletedPaths = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String path = String.format("/d/%04d.txt", i);
+            files.add(file(path, String.format("%064x", i % 10), "sha-256"));
+            if (i >= 20) {
+                deletedPaths.add(path);
+            }
+        }
+        repository.createAll(files);
+        repository.assignMotherIds();
+
+        repository.deleteByPaths(deletedPaths);
+
+        assertEquals(20, repository.findAll().size());
+        for (int i = 10; i < 20; i++) {
+            FileRecord record = repository.findById(files.get(i).getId().toString());
+            assertEquals(files.get(i - 10).getId().toString(), record.getMotherID());
+        }
+        List<String> duplicates = new ArrayList<>();
+        repository.forEachDuplicate(duplicate -> duplicates.add(duplicate.getFilePath()));
+        assertEquals(10, duplicates.size());
+
+        // После уплотнения индексы построены заново: новый файл попадает в ту же группу
+        MyFile added = file("/c/new.txt", String.format("%064x", 3), "sha-256");
+        repository.create(added);
+        repository.assignMotherIds();
+        assertEquals(added.getId().toString(), repository.findById(files.get(3).getId().toString()).getMotherID());
+        assertEquals(added.getId().toString(), repository.findById(files.get(13).getId().toString()).getMotherID());
+    }
+
+    @Test
+    void separatesGroupsByHashAlgorithm() {
+        var repository = new InMemoryFileRepository();
+        MyFile murmur = file("/d/a.txt", MURMUR_HASH_SUM, "murmur3-128");
+        MyFile sha256 = file("/d/b.txt", SHA_256_HASH_SUM, "sha-256");
+        MyFile unknown = file("/d/c.txt", MURMUR_HASH_SUM, null);
+        MyFile murmurDuplicate = file("/d/d.txt", MURMUR_HASH_SUM, "murmur3-128");
+        repository.createAll(List.of(murmur, sha256, unknown, murmurDuplicate));
+
+        repository.assignMotherIds();
+
+        assertEquals(murmur.getId().toString(), repository.findById(murmur.getId().toString()).getMotherID());
+        assertEquals(sha256.getId().toString(), repository.findById(sha256.getId().toString()).getMotherID());
+        assertEquals(unknown.getId().toString(), repository.findById(unknown.getId().toString()).getMotherID());
+        assertEquals(murmur.getId().toString(),
+                repository.findById(murmurDuplicate.getId().toString()).getMotherID());
+        assertEquals(1, repository.summarize().getDuplicateCount());
+        assertEquals(List.of("/d/a.txt", "/d/c.txt", "/d/d.txt"),
+                paths(repository.findByHashSum(MURMUR_HASH_SUM)).stream().sorted().toList());
+    }
+
+    private static MyFile file(String path, String hashSum, String hashAlgorithm) {
+        var file = new MyFile(null, path.substring(path.lastIndexOf('/') + 1), path, 10L, null, hashSum, null);
+        file.setHashAlgorithm(hashAlgorithm);
+        return file;
+    }
+
+    private static List<String> paths(List<FileRecord> records) {
+        return records.stream().map(FileRecord::getFilePath).toList();
+    }
+}
@@ -0,0 +1,111 @@
+package ru.aladina.database.service.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Замена дубликатов жёсткими и символическими ссылками.
+ */
+class DedupActionsTest {
+    /** Содержимое исходного файла и дубликата. */
+    private static final byte[] CONTENT = "одинаковое содержимое".getBytes();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hardlinkMakesDuplicateAnotherNameOfMother() throws IOException {
+        Path mother = write(directory.resolve("mother.txt"));
+        Path duplicate = write(directory.resolve("duplicate.txt"));
+
+        assertTrue(DedupActions.HARDLINK.replace(duplicate, mother));
+
+        assertFalse(Files.isSymbolicLink(duplicate));
+        assertTrue(Files.isSameFile(duplicate, mother));
+        assertEquals(List.of("duplicate.txt", "mother.txt"), list(directory));
+    }
+
+    @Test
+    void hardlinkSkipsFileThatIsAlreadyLinked() throws IOException {
+        Path mother = write(directory.resolve("mother.txt"));
+        Path duplicate = Files.createLink(directory.resolve("duplicate.txt"), mother);
+
+        assertFalse(DedupActions.HARDLINK.replace(duplicate, mother));
+    }
+
+    @Test
+    void symlinkPointsToMotherByRelativePath() throws IOException {
+        Path mother = write(directory.resolve("mother.txt"));
+        Path duplicate = write(Files.createDirectory(directory.resolve("nested")).resolve("duplicate.txt"));
+
+        assertTrue(DedupActions.SYMLINK.replace(duplicate, mother));
+
+        assertTrue(Files.isSymbolicLink(duplicate));
+        assertEquals(Paths.get("..", "mother.txt"), Files.readSymbolicLink(duplicate));
+        assertArrayEquals(CONTENT, Files.readAllBytes(duplicate));
+        assertEquals(List.of("duplicate.txt"), list(duplicate.getParent()));
+    }
+
+    @Test
+    void replacementKeepsFileNamedLikeTemporaryLink() throws IOException {
+        Path mother = write(directory.resolve("mother.txt"));
+        Path duplicate = write(directory.resolve("duplicate.txt"));
+        // Файл пользователя с именем, которое раньше использовалось для временной ссылки
+        Path leftover = Files.write(directory.resolve(".duplicate.txt.dedup-tmp"), "чужой файл".getBytes());
+
+        assertTrue(DedupActions.SYMLINK.replace(duplicate, mother));
+
+        assertTrue(Files.isSymbolicLink(duplicate));
+        assertFalse(Files.isSymbolicLink(leftover));
+        assertArrayEquals("чужой файл".getBytes(), Files.readAllBytes(leftover));
+        assertEquals(List.of(".duplicate.txt.dedup-tmp", "duplicate.txt", "mother.txt"), list(directory));
+    }
+
+    @Test
+    void hardlinkFallsBackToSymlinkAcrossFileSystems() throws IOException {
+        Path otherFileSystem = Paths.get("/dev/shm");
+        assumeTrue(Files.isDirectory(otherFileSystem) && Files.isWritable(otherFileSystem));
+        Path otherDirectory = Files.createTempDirectory(otherFileSystem, "dedup-actions-test");
+        try {
+            assumeTrue(!Files.getFileStore(otherDirectory).equals(Files.getFileStore(directory)));
+            Path mother = write(directory.resolve("mother.txt"));
+            Path duplicate = write(otherDirectory.resolve("duplicate.txt"));
+
+            assertTrue(DedupActions.HARDLINK.replace(duplicate, mother));
+
+            assertTrue(Files.isSymbolicLink(duplicate));
+            assertTrue(Files.isSameFile(duplicate, mother));
+            assertEquals(List.of("duplicate.txt"), list(otherDirectory));
+        } finally {
+            try (Stream<Path> files = Files.list(otherDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(otherDirectory);
+        }
+    }
+
+    private static Path write(Path file) throws IOException {
+        return Files.write(file, CONTENT);
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
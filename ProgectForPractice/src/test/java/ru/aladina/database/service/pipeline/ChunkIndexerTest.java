@@ -0,0 +1,102 @@
+package ru.aladina.database.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.hash.ContentChunker;
+import ru.aladina.database.hash.FingerprintAlgorithms;
+import ru.aladina.database.model.ChunkedFile;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Разбиение исходных файлов на блоки и подсчёт повторяющихся блоков.
+ */
+class ChunkIndexerTest {
+    /** Размер блока: наименьший, средний и наибольший размеры равны, поэтому блоки имеют постоянный размер. */
+    private static final int BLOCK_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void countsFirstOccurrenceOfChunkAsOriginal() throws IOException {
+        byte[] a = block(1);
+        byte[] b = block(2);
+        byte[] c = block(3);
+        var repository = new InMemoryFileRepository();
+        // Блок b впервые встречается в a.txt (наименьший путь), блок a - в начале b.txt
+        repository.createAll(List.of(
+                file(write("b.txt", a, a, b), "02"),
+                file(write("a.txt", b, c), "01"),
+                // Дубликат a.txt повторяет его блоки и не разбивается
+                file(write("c.txt", b, c), "01"),
+                // Файл меньше наименьшего размера разбиваемого файла
+                file(write("small.txt", new byte[10]), "03")));
+        repository.assignMotherIds();
+
+        long chunkCount = new ChunkIndexer(repository,
+                new ContentChunker(BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE, FingerprintAlgorithms.SHA_256),
+                BLOCK_SIZE, 2, 16, 2, ExecutionMode.PLATFORM).run();
+
+        assertEquals(5, chunkCount);
+        List<ChunkedFile> chunkedFiles = new ArrayList<>();
+        repository.forEachChunkedFile(chunkedFiles::add);
+        assertEquals(List.of(directory.resolve("a.txt").toString(), directory.resolve("b.txt").toString()),
+                chunkedFiles.stream().map(ChunkedFile::getFilePath).toList());
+        assertEquals(2 * BLOCK_SIZE, chunkedFiles.get(0).getChunkedSize());
+        assertEquals(0, chunkedFiles.get(0).getSharedSize());
+        assertEquals(3 * BLOCK_SIZE, chunkedFiles.get(1).getChunkedSize());
+        assertEquals(2 * BLOCK_SIZE, chunkedFiles.get(1).getSharedSize());
+    }
+
+    @Test
+    void replacesChunksOfPreviousRun() throws IOException {
+        var repository = new InMemoryFileRepository();
+        repository.createAll(List.of(file(write("a.txt", block(1), block(1)), "01")));
+        repository.assignMotherIds();
+        var indexer = new ChunkIndexer(repository,
+                new ContentChunker(BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE, FingerprintAlgorithms.SHA_256),
+                BLOCK_SIZE, 1, 16, 16, ExecutionMode.PLATFORM);
+
+        indexer.run();
+        indexer.run();
+
+        List<ChunkedFile> chunkedFiles = new ArrayList<>();
+        repository.forEachChunkedFile(chunkedFiles::add);
+        assertEquals(1, chunkedFiles.size());
+        assertEquals(2 * BLOCK_SIZE, chunkedFiles.get(0).getChunkedSize());
+        assertEquals(BLOCK_SIZE, chunkedFiles.get(0).getSharedSize());
+    }
+
+    private Path write(String name, byte[]... blocks) throws IOException {
+        var content = new ByteArrayOutputStream();
+        for (byte[] block : blocks) {
+            content.write(block);
+        }
+        return Files.write(directory.resolve(name), content.toByteArray());
+    }
+
+    private static byte[] block(int value) {
+        byte[] block = new byte[BLOCK_SIZE];
+        Arrays.fill(block, (byte) value);
+        return block;
+    }
+
+    private static MyFile file(Path path, String hashSum) throws IOException {
+        var file = new MyFile(null, path.getFileName().toString(), path.toString(), Files.size(path), null,
+                hashSum, null);
+        file.setHashAlgorithm(FingerprintAlgorithms.SHA_256.getName());
+        return file;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.aladina.database.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
+import ru.aladina.database.service.dedup.DedupActions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Замена дубликатов ссылками: подтверждение совпадения содержимого, если хэш-суммы вычислены
+ * некриптографическим алгоритмом, и итоги замены по директориям.
+ */
+class DuplicateReplacerTest {
+    /** Хэш-сумма, записанная в таблицу для обоих файлов (как при коллизии некриптографического алгоритма). */
+    private static final String HASH_SUM = "00112233445566778899aabbccddeeff";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replacesDuplicateWithSameContent() throws IOException {
+        Path mother = Files.writeString(directory.resolve("a.txt"), "одинаковое содержимое");
+        Path duplicate = Files.writeString(directory.resolve("b.txt"), "одинаковое содержимое");
+
+        long reclaimedSize = replace(mother, duplicate, "murmur3-128");
+
+        assertEquals(Files.size(mother), reclaimedSize);
+        assertTrue(Files.isSymbolicLink(duplicate));
+    }
+
+    @Test
+    void keepsDuplicateWhoseContentDiffers() throws IOException {
+        Path mother = Files.writeString(directory.resolve("a.txt"), "первое содержимое");
+        Path duplicate = Files.writeString(directory.resolve("b.txt"), "второе содержимое");
+
+        long reclaimedSize = replace(mother, duplicate, "murmur3-128");
+
+        assertEquals(0, reclaimedSize);
+        assertFalse(Files.isSymbolicLink(duplicate));
+        assertEquals("второе содержимое", Files.readString(duplicate));
+    }
+
+    @Test
+    void trustsCryptographicHashSum() throws IOException {
+        Path mother = Files.writeString(directory.resolve("a.txt"), "первое содержимое");
+        Path duplicate = Files.writeString(directory.resolve("b.txt"), "второе содержимое");
+
+        // Для SHA-256 совпадение хэш-сумм считается достаточным, файлы повторно не читаются
+        replace(mother, duplicate, "sha-256");
+
+        assertTrue(Files.isSymbolicLink(duplicate));
+    }
+
+    @Test
+    void summarizesDirectoryOnceAroundSubdirectory() throws IOException {
+        Path nested = Files.createDirectories(directory.resolve("b").resolve("c"));
+        List<Path> paths = List.of(directory.resolve("a.txt"), directory.resolve("b").resolve("a.txt"),
+                nested.resolve("d.txt"), directory.resolve("b").resolve("x.txt"));
+        var repository = new InMemoryFileRepository();
+        for (Path path : paths) {
+            Files.writeString(path, "одинаковое содержимое");
+            repository.create(record(path, "sha-256"));
+        }
+        repository.assignMotherIds();
+
+        // В порядке полных путей файлы директории b оказываются по обе стороны от её поддиректории c
+        var output = new ByteArrayOutputStream();
+        PrintStream standardOutput = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            new DuplicateReplacer(repository, DedupActions.SYMLINK, 2, 16, ExecutionMode.PLATFORM).run();
+        } finally {
+            System.setOut(standardOutput);
+        }
+
+        List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(List.of(
+                "Директория " + directory.resolve("b") + ": заменено 2, пропущено 0",
+                "Директория " + nested + ": заменено 1, пропущено 0"), lines);
+    }
+
+    private static long replace(Path mother, Path duplicate, String hashAlgorithm) throws IOException {
+        var repository = new InMemoryFileRepository();
+        repository.createAll(List.of(record(mother, hashAlgorithm), record(duplicate, hashAlgorithm)));
+        repository.assignMotherIds();
+        return new DuplicateReplacer(repository, DedupActions.SYMLINK, 2, 16, ExecutionMode.PLATFORM).run();
+    }
+
+    private static MyFile record(Path path, String hashAlgorithm) throws IOException {
+        var file = new MyFile(null, path.getFileName().toString(), path.toString(), Files.size(path), null,
+                HASH_SUM, null);
+        file.setHashAlgorithm(hashAlgorithm);
+        return file;
+    }
+}
@@ -0,0 +1,116 @@
+package ru.aladina.database.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.aladina.database.concurrent.ExecutionMode;
+import ru.aladina.database.model.FileRecord;
+import ru.aladina.database.model.MyFile;
+import ru.aladina.database.repository.impl.InMemoryFileRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Заполнение таблицы конвейером {@link IngestPipeline}.
+ */
+class IngestPipelineTest {
+    /** Размер фрагмента частичной хэш-суммы (в байтах). */
+    private static final int SAMPLE_SIZE = 16;
+    /** Размер файлов, у которых совпадают частичные хэш-суммы. */
+    private static final int FILE_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void separatesFilesWithSamePartialHashSum() throws IOException {
+        byte[] content = content('x');
+        byte[] sameEnds = content('x');
+        // Начало и конец совпадают, поэтому файлы различаются только по полной хэш-сумме
+        sameEnds[FILE_SIZE / 2] = 'y';
+        Files.write(directory.resolve("a"), content);
+        Files.write(directory.resolve("b"), content);
+        Files.write(directory.resolve("c"), sameEnds);
+        Files.write(directory.resolve("d"), new byte[FILE_SIZE + 1]);
+
+        var repository = new InMemoryFileRepository();
+        newPipeline(repository, ExecutionMode.PLATFORM).run(directory);
+
+        Map<String, FileRecord> records = recordsByName(repository);
+        assertEquals(List.of("a", "b", "c", "d"), records.keySet().stream().sorted().toList());
+        assertEquals(records.get("a").getPartialHashSum(), records.get("c").getPartialHashSum());
+        assertEquals(records.get("a").getHashSum(), records.get("b").getHashSum());
+        assertNotEquals(records.get("a").getHashSum(), records.get("c").getHashSum());
+        assertEquals(MyFile.UNIQUE_HASH_SUM, records.get("d").getHashSum());
+    }
+
+    @Test
+    void incrementalScanReplacesChangedAndRemovesMissingFiles() throws IOException {
+        Path a = Files.write(directory.resolve("a"), content('x'));
+        Files.write(directory.resolve("b"), content('x'));
+        Path c = Files.write(directory.resolve("c"), content('z'));
+        Path d = Files.write(directory.resolve("d"), content('z'));
+        var repository = new InMemoryFileRepository();
+        newPipeline(repository, ExecutionMode.PLATFORM).run(directory);
+        String oldHashSumOfC = recordsByName(repository).get("c").getHashSum();
+
+        Files.write(c, content('x'));
+        Files.setLastModifiedTime(c, FileTime.fromMillis(Files.getLastModifiedTime(c).toMillis() + 10_000));
+        Files.delete(d);
+        Files.write(directory.resolve("e"), content('x'));
+        Map<String, FileRecord> previousFiles = new ConcurrentHashMap<>();
+        repository.forEachFile(record -> previousFiles.put(record.getFilePath(), record));
+        newPipeline(repository, ExecutionMode.PLATFORM).run(directory, previousFiles);
+
+        List<FileRecord> records = repository.findAll();
+        assertEquals(List.of("a", "b", "c", "e"), records.stream().map(FileRecord::getTitle).sorted().toList());
+        Map<String, FileRecord> recordsByName = recordsByName(repository);
+        assertNotEquals(oldHashSumOfC, recordsByName.get("c").getHashSum());
+        assertEquals(recordsByName.get("a").getHashSum(), recordsByName.get("c").getHashSum());
+        assertEquals(recordsByName.get("a").getHashSum(), recordsByName.get("e").getHashSum());
+
+        repository.assignMotherIds();
+        assertEquals(3, repository.summarize().getDuplicateCount());
+        assertEquals(a.toString(), repository.findById(recordsByName(repository).get("e").getMotherID()).getFilePath());
+    }
+
+    @Test
+    void scansOnVirtualThreads() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            Files.write(directory.resolve("file" + i), content((char) ('a' + i % 4)));
+        }
+
+        var repository = new InMemoryFileRepository();
+        newPipeline(repository, ExecutionMode.VIRTUAL).run(directory);
+        repository.assignMotherIds();
+
+        assertEquals(200, repository.summarize().getFileCount());
+        assertEquals(196, repository.summarize().getDuplicateCount());
+    }
+
+    private static IngestPipeline newPipeline(InMemoryFileRepository repository, ExecutionMode executionMode) {
+        return new IngestPipeline(repository, executionMode.concurrency(2), executionMode.concurrency(2), 16, 8,
+                SAMPLE_SIZE, executionMode);
+    }
+
+    private static byte[] content(char filler) {
+        byte[] content = new byte[FILE_SIZE];
+        Arrays.fill(content, (byte) filler);
+        return content;
+    }
+
+    private static Map<String, FileRecord> recordsByName(InMemoryFileRepository repository) {
+        return repository.findAll().stream().collect(Collectors.toMap(FileRecord::getTitle, Function.identity()));
+    }
+}